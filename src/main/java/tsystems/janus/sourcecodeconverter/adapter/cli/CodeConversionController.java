@@ -4,6 +4,8 @@ import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ReadinessState;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -13,6 +15,12 @@ import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import tsystems.janus.sourcecodeconverter.application.service.*;
 import tsystems.janus.sourcecodeconverter.domain.model.*;
 import tsystems.janus.sourcecodeconverter.infrastructure.codeQL.CodeQLResultProcessor;
+import tsystems.janus.sourcecodeconverter.infrastructure.codeQL.DatabaseCache;
+import tsystems.janus.sourcecodeconverter.infrastructure.codeQL.ExtractionModes;
+import tsystems.janus.sourcecodeconverter.infrastructure.codeQL.QueryProfiler;
+import tsystems.janus.sourcecodeconverter.infrastructure.docker.CommandMetrics;
+import tsystems.janus.sourcecodeconverter.infrastructure.docker.ResourceProfile;
+import tsystems.janus.sourcecodeconverter.infrastructure.docker.ResourceProfiles;
 
 @RestController
 @RequestMapping("/api")
@@ -22,36 +30,88 @@ public class CodeConversionController {
     private final AnalysisResultService analysisResultService;
     private final LlmConversionService llmConversionService;
     private final PatchService patchService;
+    private final CommandMetrics commandMetrics;
+    private final ResourceProfiles resourceProfiles;
+    private final DatabaseCache databaseCache;
+    private final ExtractionModes extractionModes;
+    private final QueryProfiler queryProfiler;
+    private final ApplicationAvailability applicationAvailability;
 
     public CodeConversionController(CodeConversionService codeConversionService,
                                     AnalysisResultService analysisResultService,
                                     LlmConversionService llmConversionService,
-                                    PatchService patchService) {
+                                    PatchService patchService,
+                                    CommandMetrics commandMetrics,
+                                    ResourceProfiles resourceProfiles,
+                                    DatabaseCache databaseCache,
+                                    ExtractionModes extractionModes,
+                                    QueryProfiler queryProfiler,
+                                    ApplicationAvailability applicationAvailability) {
         this.codeConversionService = codeConversionService;
         this.analysisResultService = analysisResultService;
         this.llmConversionService = llmConversionService;
         this.patchService = patchService;
+        this.commandMetrics = commandMetrics;
+        this.resourceProfiles = resourceProfiles;
+        this.databaseCache = databaseCache;
+        this.extractionModes = extractionModes;
+        this.queryProfiler = queryProfiler;
+        this.applicationAvailability = applicationAvailability;
     }
 
-    // 1 starta o container
+    // fica pronto só depois do warmup do ambiente (codeql.warmup.enabled)
+    @GetMapping("/readiness")
+    public ResponseEntity<Map<String, String>> getReadiness() {
+        ReadinessState state = applicationAvailability.getReadinessState();
+        int status = state == ReadinessState.ACCEPTING_TRAFFIC ? 200 : 503;
+        return ResponseEntity.status(status).body(Map.of("readiness", state.name()));
+    }
+
+    // 1 starta o container (profile opcional: small, large, monorepo...)
+    // incremental=true reanalisa só os arquivos alterados desde a última análise do mesmo repositório
+    // include/exclude limitam o escopo: globs de caminho, module:<dir> ou pkg:<pacote> (target/ e build/ ficam fora por padrão)
+    // extraction escolhe a extração do banco: autobuild, none (sem build, mais rápido) ou custom-build
+    // sharded=true cria um banco por módulo Maven, em vários containers em paralelo (monorepos)
+    // profileQueries=true roda as queries com o log do avaliador e gera tempos e tuplas por predicado (/query-profile)
     @GetMapping(value = "/conversion-logs", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public SseEmitter convertRepository(@RequestParam String repoUrl) {
-        return codeConversionService.convertRepositoryWithSse(repoUrl);
+    public SseEmitter convertRepository(@RequestParam String repoUrl,
+                                        @RequestParam(required = false) String profile,
+                                        @RequestParam(defaultValue = "false") boolean incremental,
+                                        @RequestParam(defaultValue = "false") boolean sharded,
+                                        @RequestParam(required = false) String extraction,
+                                        @RequestParam(required = false) String include,
+                                        @RequestParam(required = false) String exclude,
+                                        @RequestParam(defaultValue = "false") boolean profileQueries) {
+        return codeConversionService.convertRepositoryWithSse(repoUrl, profile, incremental, sharded, extraction, include, exclude, profileQueries);
     }
 
     // 1 starta o container e usa ZIP file ao invés de URL
     @PostMapping(value = "/conversion-logs-zip", consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<Map<String, Object>> convertRepositoryFromZip(@RequestParam("file") MultipartFile projectZip) {
+    public ResponseEntity<Map<String, Object>> convertRepositoryFromZip(@RequestParam("file") MultipartFile projectZip,
+                                                                        @RequestParam(required = false) String profile,
+                                                                        @RequestParam(defaultValue = "false") boolean sharded,
+                                                                        @RequestParam(required = false) String extraction,
+                                                                        @RequestParam(required = false) String include,
+                                                                        @RequestParam(required = false) String exclude,
+                                                                        @RequestParam(defaultValue = "false") boolean profileQueries) {
         try {
             System.out.println("Received file: " + projectZip.getOriginalFilename());
-            Map<String, Object> result = codeConversionService.convertRepository(projectZip);
+            Map<String, Object> result = codeConversionService.convertRepository(projectZip, profile, sharded, extraction, include, exclude, profileQueries);
             System.out.println("Conversion result: " + result);
             return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(500).body(Map.of("error", e.getMessage()));
         }
     }
 
+    // perfis de recursos disponíveis para a análise (limites do container, threads e RAM do CodeQL)
+    @GetMapping("/resource-profiles")
+    public ResponseEntity<List<ResourceProfile>> getResourceProfiles() {
+        return ResponseEntity.ok(resourceProfiles.getAll());
+    }
+
     // 2 gera estruturar o arquivo gerado pelo primeiro request
     @GetMapping("/results")
     public ResponseEntity<List<ConversionTask>> getConversionResults() throws IOException {
@@ -66,6 +126,32 @@ public class CodeConversionController {
         return ResponseEntity.ok(stats);
     }
 
+    // duração e volume de saída dos comandos executados (docker e dentro do container)
+    @GetMapping("/command-metrics")
+    public ResponseEntity<List<CommandMetrics.CommandStats>> getCommandMetrics() {
+        return ResponseEntity.ok(commandMetrics.snapshot());
+    }
+
+    // modos de extração com tempos médios de criação do banco e das queries e quantidade de findings por modo
+    @GetMapping("/extraction-modes")
+    public ResponseEntity<List<ExtractionModes.ModeStats>> getExtractionModes() {
+        return ResponseEntity.ok(extractionModes.snapshot());
+    }
+
+    // tempos e contagem de tuplas por predicado da última análise com profileQueries=true
+    @GetMapping("/query-profile")
+    public ResponseEntity<QueryProfiler.QueryProfile> getQueryProfile() throws IOException {
+        return queryProfiler.latest()
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    // cache de bancos CodeQL por revisão do projeto: hits, misses, evições e tamanho ocupado
+    @GetMapping("/db-cache")
+    public ResponseEntity<DatabaseCache.CacheStats> getDatabaseCacheStats() {
+        return ResponseEntity.ok(databaseCache.stats());
+    }
+
     // 4 precisa do primeiro e segundo request para gerar o arquivo converted_sql.json
     @PostMapping("/convert")
     public ResponseEntity<List<LlmReplacementsResponse>> convertSql() throws IOException {
@@ -0,0 +1,128 @@
+package tsystems.janus.sourcecodeconverter.application.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import tsystems.janus.sourcecodeconverter.domain.model.ConversionTask;
+import tsystems.janus.sourcecodeconverter.domain.model.LlmReplacementsResponse;
+import tsystems.janus.sourcecodeconverter.infrastructure.codeQL.CodeQLResultProcessor;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the parsed outputs of the current analysis run (statistics, conversion tasks and LLM replacements) in
+ * memory, so repeat API calls do not parse the files under {@code conversion.output.directory} again. A new
+ * analysis starts a new run and drops everything. Entries older than the maximum age are reloaded, and the least
+ * recently used ones are dropped when their files add up to more than the maximum size. A miss falls back to disk.
+ * Lists are kept as unmodifiable copies, because every caller gets the same instance until the run ends.
+ */
+@Component
+public class AnalysisResultRepository {
+
+    public static final Key<CodeQLResultProcessor.ProcessingStats> STATS = new Key<>("stats");
+    public static final Key<List<ConversionTask>> TASKS = new Key<>("tasks");
+    public static final Key<List<LlmReplacementsResponse>> REPLACEMENTS = new Key<>("replacements");
+
+    private final long maxSizeBytes;
+    private final Duration maxAge;
+    // Access order, the first entry is the least recently used
+    private final Map<Key<?>, Entry> entries = new LinkedHashMap<>(8, 0.75f, true);
+    private long run;
+
+    public AnalysisResultRepository(@Value("${conversion.cache.max-size:256MB}") DataSize maxSize,
+                                    @Value("${conversion.cache.max-age:1h}") Duration maxAge) {
+        this.maxSizeBytes = maxSize.toBytes();
+        this.maxAge = maxAge;
+    }
+
+    @FunctionalInterface
+    public interface Loader<T> {
+        T load() throws IOException;
+    }
+
+    /**
+     * Returns the value of the current run, loading it from disk on a miss. A value loaded while a new analysis
+     * started is returned but not kept.
+     */
+    public <T> T get(Key<T> key, long sizeBytes, Loader<T> loader) throws IOException {
+        long loadingRun;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.loadedAt() + maxAge.toMillis() > System.currentTimeMillis()) {
+                @SuppressWarnings("unchecked")
+                T value = (T) entry.value();
+                return value;
+            }
+            if (entry != null) {
+                entries.remove(key);
+            }
+            loadingRun = run;
+        }
+
+        T value = unmodifiable(loader.load());
+        synchronized (this) {
+            if (loadingRun == run) {
+                store(key, value, sizeBytes);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Keeps a value the current run produced.
+     *
+     * @param sizeBytes size of the file the value is stored in, counted against the maximum size
+     */
+    public synchronized <T> void put(Key<T> key, T value, long sizeBytes) {
+        store(key, unmodifiable(value), sizeBytes);
+    }
+
+    /**
+     * Starts a new run, called when a new analysis replaces the results.
+     */
+    public synchronized void invalidate() {
+        run++;
+        entries.clear();
+    }
+
+    private void store(Key<?> key, Object value, long sizeBytes) {
+        if (sizeBytes > maxSizeBytes) {
+            entries.remove(key);
+            System.out.println("⚠️ Not keeping analysis " + key.name() + " in memory, " + sizeBytes / (1024 * 1024) + " MB exceeds the cache size.");
+            return;
+        }
+        entries.put(key, new Entry(value, sizeBytes, System.currentTimeMillis()));
+
+        long total = entries.values().stream().mapToLong(Entry::sizeBytes).sum();
+        var iterator = entries.entrySet().iterator();
+        while (total > maxSizeBytes && iterator.hasNext()) {
+            Map.Entry<Key<?>, Entry> eldest = iterator.next();
+            if (eldest.getKey().equals(key)) {
+                continue;
+            }
+            total -= eldest.getValue().sizeBytes();
+            iterator.remove();
+            System.out.println("🧹 Dropped analysis " + eldest.getKey().name() + " from memory to stay under the cache size.");
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T unmodifiable(T value) {
+        if (value instanceof List<?> list) {
+            return (T) Collections.unmodifiableList(new ArrayList<>(list));
+        }
+        return value;
+    }
+
+    public record Key<T>(String name) {
+    }
+
+    private record Entry(Object value, long sizeBytes, long loadedAt) {
+    }
+}
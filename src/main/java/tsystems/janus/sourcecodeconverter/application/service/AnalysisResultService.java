@@ -3,7 +3,6 @@ package tsystems.janus.sourcecodeconverter.application.service;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import tsystems.janus.sourcecodeconverter.domain.model.CodeQLResult;
 import tsystems.janus.sourcecodeconverter.domain.model.ConversionTask;
 import tsystems.janus.sourcecodeconverter.infrastructure.codeQL.CodeQLResultProcessor;
 import tsystems.janus.sourcecodeconverter.infrastructure.codeQL.CodeQLTraceProcessor;
@@ -15,8 +14,12 @@ import java.util.List;
 @Service
 public class AnalysisResultService {
 
+    // A handful of counters, next to nothing against the cache size
+    private static final long STATS_SIZE_BYTES = 1024;
+
     private final CodeQLTraceProcessor sqlTraceProcessor;
     private final CodeQLResultProcessor codeQLResultProcessor;
+    private final AnalysisResultRepository resultRepository;
     private final ObjectMapper objectMapper;
     private final File outputDir;
     private final String resultsJsonFile;
@@ -25,31 +28,56 @@ public class AnalysisResultService {
 
     public AnalysisResultService(CodeQLTraceProcessor sqlTraceProcessor,
                                  CodeQLResultProcessor codeQLResultProcessor,
+                                 AnalysisResultRepository resultRepository,
                                  ObjectMapper objectMapper,
                                  @Value("${conversion.output.directory}") String outputDir,
                                  @Value("${conversion.output.results-json}") String resultsJsonFile,
                                  @Value("${conversion.output.structured-tasks-json}") String structuredTasksJsonFile) {
         this.sqlTraceProcessor = sqlTraceProcessor;
         this.codeQLResultProcessor = codeQLResultProcessor;
+        this.resultRepository = resultRepository;
         this.objectMapper = objectMapper;
         this.outputDir = new File(outputDir);
         this.resultsJsonFile = resultsJsonFile;
         this.structuredTasksJsonFile = structuredTasksJsonFile;
     }
 
+    /**
+     * The conversion tasks of the current results. The analysis groups them while it writes the results, so they
+     * are only regrouped from {@code results.json} when that file is newer than the stored tasks. The tasks of the
+     * current run are served from memory.
+     */
     public List<ConversionTask> structureConversionTasks() throws IOException {
         File resultsFile = new File(outputDir, resultsJsonFile);
-        List<CodeQLResult> initialResults = sqlTraceProcessor.loadResultsFromFile(resultsFile);
-        List<ConversionTask> conversionTasks = sqlTraceProcessor.processResults(initialResults);
-
         File structuredTasksFile = new File(outputDir, structuredTasksJsonFile);
-        objectMapper.writerWithDefaultPrettyPrinter().writeValue(structuredTasksFile, conversionTasks);
+        if (structuredTasksFile.exists() && structuredTasksFile.lastModified() >= resultsFile.lastModified()) {
+            return resultRepository.get(AnalysisResultRepository.TASKS, structuredTasksFile.length(),
+                    () -> codeQLResultProcessor.loadConversionTasks(structuredTasksFile));
+        }
 
+        CodeQLTraceProcessor.TaskGrouper grouper = sqlTraceProcessor.newTaskGrouper();
+        codeQLResultProcessor.streamResults(resultsFile, grouper);
+        List<ConversionTask> conversionTasks = grouper.finish();
+        saveConversionTasks(conversionTasks);
         return conversionTasks;
     }
 
+    public void saveConversionTasks(List<ConversionTask> conversionTasks) throws IOException {
+        File structuredTasksFile = new File(outputDir, structuredTasksJsonFile);
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(structuredTasksFile, conversionTasks);
+        resultRepository.put(AnalysisResultRepository.TASKS, conversionTasks, structuredTasksFile.length());
+    }
+
     public CodeQLResultProcessor.ProcessingStats getProcessingStats() throws IOException {
         File resultsFile = new File(outputDir, resultsJsonFile);
-        return codeQLResultProcessor.analyzeResults(resultsFile);
+        return resultRepository.get(AnalysisResultRepository.STATS, STATS_SIZE_BYTES,
+                () -> codeQLResultProcessor.analyzeResults(resultsFile));
+    }
+
+    /**
+     * Keeps the statistics the analysis counted while writing {@code results.json}.
+     */
+    public void saveProcessingStats(CodeQLResultProcessor.ProcessingStats stats) {
+        resultRepository.put(AnalysisResultRepository.STATS, stats, STATS_SIZE_BYTES);
     }
 }
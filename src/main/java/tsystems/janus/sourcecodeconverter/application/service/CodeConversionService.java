@@ -1,25 +1,49 @@
 package tsystems.janus.sourcecodeconverter.application.service;
 
 import java.io.File;
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.function.Consumer;
 
 import org.springframework.stereotype.Service;
 
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import tsystems.janus.sourcecodeconverter.domain.model.CodeQLResult;
+import tsystems.janus.sourcecodeconverter.domain.model.ConversionTask;
+import tsystems.janus.sourcecodeconverter.infrastructure.codeQL.AnalysisScope;
+import tsystems.janus.sourcecodeconverter.infrastructure.codeQL.AnalysisScopes;
 import tsystems.janus.sourcecodeconverter.infrastructure.codeQL.CodeQLResultProcessor;
 import tsystems.janus.sourcecodeconverter.infrastructure.codeQL.CodeQLRunner;
+import tsystems.janus.sourcecodeconverter.infrastructure.codeQL.CodeQLTraceProcessor;
+import tsystems.janus.sourcecodeconverter.infrastructure.codeQL.DatabaseBundles;
+import tsystems.janus.sourcecodeconverter.infrastructure.codeQL.DatabaseCache;
+import tsystems.janus.sourcecodeconverter.infrastructure.codeQL.ExtractionMode;
+import tsystems.janus.sourcecodeconverter.infrastructure.codeQL.ExtractionModes;
+import tsystems.janus.sourcecodeconverter.infrastructure.codeQL.IncrementalAnalysis;
+import tsystems.janus.sourcecodeconverter.infrastructure.codeQL.MavenModules;
+import tsystems.janus.sourcecodeconverter.infrastructure.codeQL.PagedBqrsDecoder;
+import tsystems.janus.sourcecodeconverter.infrastructure.codeQL.QueryCompilationCache;
+import tsystems.janus.sourcecodeconverter.infrastructure.codeQL.QueryProfiler;
+import tsystems.janus.sourcecodeconverter.infrastructure.codeQL.ShardedAnalysis;
+import tsystems.janus.sourcecodeconverter.infrastructure.docker.AnalysisContainerPool;
 import tsystems.janus.sourcecodeconverter.infrastructure.docker.AnalysisPathProvider;
 import tsystems.janus.sourcecodeconverter.infrastructure.docker.CodeQLDockerAnalysisRunner;
 import tsystems.janus.sourcecodeconverter.infrastructure.docker.CodeQLDockerConfig;
+import tsystems.janus.sourcecodeconverter.infrastructure.docker.ContainerLease;
 import tsystems.janus.sourcecodeconverter.infrastructure.docker.DockerContainerManager;
+import tsystems.janus.sourcecodeconverter.infrastructure.docker.ResourceProfile;
+import tsystems.janus.sourcecodeconverter.infrastructure.docker.ResourceProfiles;
 import tsystems.janus.sourcecodeconverter.infrastructure.git.GitCloner;
+import tsystems.janus.sourcecodeconverter.infrastructure.git.ProjectFingerprint;
+import tsystems.janus.sourcecodeconverter.infrastructure.sse.CancellationToken;
 import tsystems.janus.sourcecodeconverter.infrastructure.sse.LoggableTask;
 import tsystems.janus.sourcecodeconverter.infrastructure.sse.SseLogExecutor;
 import tsystems.janus.sourcecodeconverter.infrastructure.util.ZipExtractor;
@@ -27,32 +51,78 @@ import tsystems.janus.sourcecodeconverter.infrastructure.util.ZipExtractor;
 @Service
 public class CodeConversionService {
 
+    private static final String LANGUAGE = "java";
+    private static final String SCOPE_CONFIG_FILENAME = "codeql-config.yml";
+
     private final GitCloner repositoryCloner;
     private final CodeQLDockerAnalysisRunner codeQLDockerAnalysisRunner;
     private final CodeQLRunner codeQLCliExecutor;
     private final DockerContainerManager dockerContainerManager;
     private final CodeQLResultProcessor resultProcessor;
+    private final CodeQLTraceProcessor traceProcessor;
+    private final AnalysisResultService analysisResultService;
+    private final AnalysisResultRepository resultRepository;
     private final AnalysisPathProvider pathProvider;
     private final CodeQLDockerConfig dockerConfig;
+    private final AnalysisContainerPool containerPool;
+    private final ResourceProfiles resourceProfiles;
+    private final AnalysisScopes analysisScopes;
+    private final ExtractionModes extractionModes;
+    private final DatabaseCache databaseCache;
+    private final DatabaseBundles databaseBundles;
+    private final ProjectFingerprint projectFingerprint;
+    private final IncrementalAnalysis incrementalAnalysis;
+    private final QueryCompilationCache queryCompilationCache;
+    private final PagedBqrsDecoder pagedBqrsDecoder;
+    private final MavenModules mavenModules;
+    private final ShardedAnalysis shardedAnalysis;
+    private final QueryProfiler queryProfiler;
     private final SseLogExecutor sseLogExecutor;
     private final ZipExtractor zipExtractor;
+    private final Object publishLock = new Object();
 
     public CodeConversionService(GitCloner repositoryCloner, CodeQLDockerAnalysisRunner codeQLDockerAnalysisRunner,
                                  CodeQLRunner codeQLCliExecutor, DockerContainerManager dockerContainerManager,
-                                 CodeQLResultProcessor resultProcessor, AnalysisPathProvider pathProvider, CodeQLDockerConfig dockerConfig,
-                                 SseLogExecutor sseLogExecutor, ZipExtractor zipExtractor) {
+                                 CodeQLResultProcessor resultProcessor, CodeQLTraceProcessor traceProcessor,
+                                 AnalysisResultService analysisResultService, AnalysisResultRepository resultRepository,
+                                 AnalysisPathProvider pathProvider, CodeQLDockerConfig dockerConfig,
+                                 AnalysisContainerPool containerPool, ResourceProfiles resourceProfiles, AnalysisScopes analysisScopes,
+                                 ExtractionModes extractionModes,
+                                 DatabaseCache databaseCache, DatabaseBundles databaseBundles, ProjectFingerprint projectFingerprint,
+                                 IncrementalAnalysis incrementalAnalysis, QueryCompilationCache queryCompilationCache,
+                                 PagedBqrsDecoder pagedBqrsDecoder, MavenModules mavenModules, ShardedAnalysis shardedAnalysis,
+                                 QueryProfiler queryProfiler, SseLogExecutor sseLogExecutor, ZipExtractor zipExtractor) {
         this.repositoryCloner = repositoryCloner;
         this.codeQLDockerAnalysisRunner = codeQLDockerAnalysisRunner;
         this.codeQLCliExecutor = codeQLCliExecutor;
         this.dockerContainerManager = dockerContainerManager;
         this.resultProcessor = resultProcessor;
+        this.traceProcessor = traceProcessor;
+        this.analysisResultService = analysisResultService;
+        this.resultRepository = resultRepository;
         this.pathProvider = pathProvider;
         this.dockerConfig = dockerConfig;
+        this.containerPool = containerPool;
+        this.resourceProfiles = resourceProfiles;
+        this.analysisScopes = analysisScopes;
+        this.extractionModes = extractionModes;
+        this.databaseCache = databaseCache;
+        this.databaseBundles = databaseBundles;
+        this.projectFingerprint = projectFingerprint;
+        this.incrementalAnalysis = incrementalAnalysis;
+        this.queryCompilationCache = queryCompilationCache;
+        this.pagedBqrsDecoder = pagedBqrsDecoder;
+        this.mavenModules = mavenModules;
+        this.shardedAnalysis = shardedAnalysis;
+        this.queryProfiler = queryProfiler;
         this.sseLogExecutor = sseLogExecutor;
         this.zipExtractor = zipExtractor;
     }
 
-    private void startConversion(File projectDir, Consumer<String> logConsumer) throws Exception {
+    /**
+     * @return the query profile of the analysis when it was profiled, otherwise {@code null}
+     */
+    private QueryProfiler.QueryProfile startConversion(File projectDir, ConversionOptions options, Consumer<String> logConsumer, CancellationToken cancellation) throws Exception {
         System.out.println("I am at startConversion method");
         File qlFile = pathProvider.getQueryFile();
         logConsumer.accept("Found CodeQL query file: " + qlFile.getAbsolutePath());
@@ -60,94 +130,288 @@ public class CodeConversionService {
         File outputDir = pathProvider.getOutputDirectory();
         logConsumer.accept("Output directory: " + outputDir.getAbsolutePath());
 
-        String containerName = null;
+        AnalysisScope scope = analysisScopes.withGradleBuildOutputs(options.scope(), projectDir);
+        logConsumer.accept("Analysis scope: include " + (scope.include().isEmpty() ? "everything" : scope.include())
+                + ", exclude " + scope.exclude());
+
+        // Fingerprint and diff before staging, the workspace gets an extra .gitattributes commit
+        ExtractionMode extraction = options.extraction();
+        String databaseKey = LANGUAGE + "-" + extraction.id() + "-" + projectFingerprint.of(projectDir) + "-scope-" + scope.id();
+        String historyId = options.projectId() == null ? null : options.projectId() + "#scope-" + scope.id();
+        String headCommit = historyId == null ? null : incrementalAnalysis.headCommit(projectDir);
+        Optional<IncrementalAnalysis.Plan> plan = options.incremental() && historyId != null
+                ? incrementalAnalysis.plan(historyId, headCommit, projectDir, scope, logConsumer)
+                : Optional.empty();
+
+        cancellation.throwIfCancelled();
+        ResourceProfile profile = options.profile();
+        logConsumer.accept("Resource profile: " + profile.name() + " (CodeQL " + profile.codeqlOptions() + ")");
+        logConsumer.accept("Extraction mode: " + extraction.id() + " (" + extraction.description() + ")");
+        ContainerLease lease = containerPool.acquire(profile, logConsumer);
+        CancellationToken.Registration killOnCancel = cancellation.onCancel(
+                () -> dockerContainerManager.killContainerProcesses(lease.getContainerName()));
+        boolean keepLease = false;
         try {
             logConsumer.accept("Preparing Docker environment for CodeQL analysis...");
             System.out.println("Preparing Docker environment for CodeQL analysis...");
-            containerName = codeQLDockerAnalysisRunner.prepareAnalysisEnvironment(projectDir, qlFile, outputDir, logConsumer);
+            String containerName = codeQLDockerAnalysisRunner.prepareAnalysisEnvironment(lease, projectDir, logConsumer);
             logConsumer.accept("✅ Docker environment ready. Container: " + containerName);
             System.out.println("✅ Docker environment ready. Container: " + containerName);
+            String scopeConfigPath = writeScopeConfig(lease, scope);
 
-            logConsumer.accept("🔍 Checking if CodeQL database already exists in volume...");
-
-            if (dockerContainerManager.isMountedVolumeInContainerEmpty(dockerConfig.getContainerName(), dockerConfig.getContainerBasePath(), dockerConfig.getContainerDbPath())) {
-                logConsumer.accept("📦 No existing database found. Creating new CodeQL database...");
-                codeQLCliExecutor.createDatabase(
-                        containerName,
-                        dockerConfig.getContainerProjectPath(),
-                        dockerConfig.getContainerDbPath(),
-                        "java",
-                        System.out::println);
-                logConsumer.accept("✅ CodeQL database created successfully.");
-                System.out.println("✅ CodeQL database created successfully.");
-            } else {
-                logConsumer.accept("✅ CodeQL database already exists: " + dockerConfig.getDbVolumeName());
-                System.out.println("✅ CodeQL database already exists: " + dockerConfig.getDbVolumeName());
+            cancellation.throwIfCancelled();
+            if (plan.isPresent() && databaseCache.contains(containerName, databaseKey)) {
+                logConsumer.accept("✅ A database of this exact revision is cached, running the full query instead of an incremental one.");
+                plan = Optional.empty();
             }
 
-            System.out.println("Running CodeQL query inside Docker container...");
-            logConsumer.accept("Running CodeQL query inside Docker container...");
-            System.out.println("Running CodeQL query inside Docker container...");
-            codeQLCliExecutor.runQuery(
-                    containerName,
-                    dockerConfig.getContainerQueryPath(),
-                    dockerConfig.getContainerDbPath(),
-                    dockerConfig.getContainerResultPath(),
-                    dockerConfig.getContainerQueryDir(),
-                    System.out::println);
+            List<String> modules = plan.isEmpty() && options.sharded()
+                    ? mavenModules.detect(lease.getProjectDir(), scope)
+                    : List.of();
+            if (options.sharded() && plan.isEmpty() && modules.size() < 2) {
+                logConsumer.accept("🧩 Found " + modules.size() + " Maven module(s) with sources, analysing the project as one database.");
+            }
 
-            File bqrsFile = pathProvider.getBQRSFile(outputDir);
-            logConsumer.accept("CodeQL analysis complete. BQRS file generated: " + bqrsFile.getAbsolutePath());
+            // Findings are counted and grouped into tasks while they are written, in the same pass
+            CodeQLResultProcessor.StatsCollector statsCollector = resultProcessor.newStatsCollector();
+            CodeQLTraceProcessor.TaskGrouper taskGrouper = traceProcessor.newTaskGrouper();
+            List<Consumer<CodeQLResult>> resultConsumers = List.of(statsCollector, taskGrouper);
 
-            File rawJsonFile = pathProvider.getRawJsonFile(outputDir);
-            if (rawJsonFile.exists()) {
-                Files.delete(rawJsonFile.toPath());
-                logConsumer.accept("Deleted existing raw JSON file: " + rawJsonFile.getAbsolutePath());
+            String evaluatorLogPath = options.profiling() ? queryProfiler.evaluatorLogPath() : null;
+            QueryProfiler.QueryProfile queryProfile = null;
+            File cleanJsonFile;
+            if (modules.size() > 1) {
+                if (options.profiling()) {
+                    logConsumer.accept("⚠️ Query profiling covers single-database analyses, the modules are analysed without it.");
+                }
+                cleanJsonFile = runShardedQuery(lease, modules, extraction, scope, profile, resultConsumers, logConsumer, cancellation);
+            } else if (plan.isEmpty()) {
+                List<String> bqrsFiles = runFullQuery(lease, databaseKey, extraction, scopeConfigPath, evaluatorLogPath, profile, logConsumer, cancellation);
+                queryProfile = profileQueries(lease, evaluatorLogPath, logConsumer);
+                cleanJsonFile = decodeResults(lease, bqrsFiles, scope, resultConsumers, logConsumer, cancellation);
+            } else {
+                IncrementalAnalysis.Plan incrementalPlan = plan.get();
+                File partialJsonFile = null;
+                if (!incrementalPlan.changed().isEmpty()) {
+                    List<String> bqrsFiles = runIncrementalQuery(lease, incrementalPlan, scope, scopeConfigPath, evaluatorLogPath, profile, logConsumer, cancellation);
+                    queryProfile = profileQueries(lease, evaluatorLogPath, logConsumer);
+                    partialJsonFile = decodeResults(lease, bqrsFiles, scope, List.of(), logConsumer, cancellation);
+                } else {
+                    logConsumer.accept("✅ No source file changed since " + incrementalPlan.baseCommit() + ", reusing its findings.");
+                }
+                cleanJsonFile = incrementalAnalysis.merge(incrementalPlan, partialJsonFile,
+                        new File(lease.getOutputDir().toFile(), "merged-results.json"));
+                logConsumer.accept("Merged new findings with the retained findings of untouched files.");
+                resultProcessor.streamResults(cleanJsonFile, statsCollector.andThen(taskGrouper));
             }
 
-            logConsumer.accept("Decoding BQRS results to raw JSON...");
-            codeQLCliExecutor.decodeResultsInContainer(
-                    containerName,
-                    dockerConfig.getContainerResultPath(),
-                    pathProvider.getContainerRawJsonPath(),
-                    System.out::println);
-            logConsumer.accept("✅ Raw CodeQL JSON: " + rawJsonFile.getAbsolutePath());
+            CodeQLResultProcessor.ProcessingStats stats = statsCollector.getStats();
+            List<ConversionTask> conversionTasks = taskGrouper.finish();
 
-            logConsumer.accept("Processing raw JSON to clean JSON...");
-            System.out.println("Processing raw JSON to clean JSON...");
-            File cleanJsonFile = resultProcessor.extractCleanJsonFromTuples(rawJsonFile);
-            logConsumer.accept("Extracted clean JSON objects.");
+            // Jobs run in parallel but share one set of output files and one active workspace, so a job publishes
+            // its results, tasks and workspace as a whole, never interleaved with another job's
+            synchronized (publishLock) {
+                File finalJsonFile = pathProvider.getFinalJsonFile(outputDir);
+                if (finalJsonFile.exists()) {
+                    Files.delete(finalJsonFile.toPath());
+                    logConsumer.accept("Deleted existing final JSON file: " + finalJsonFile.getAbsolutePath());
+                }
 
-            File finalJsonFile = pathProvider.getFinalJsonFile(outputDir);
-            if (finalJsonFile.exists()) {
-                Files.delete(finalJsonFile.toPath());
-                logConsumer.accept("Deleted existing final JSON file: " + finalJsonFile.getAbsolutePath());
-            }
+                Files.move(cleanJsonFile.toPath(), finalJsonFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                logConsumer.accept("✅ Final clean JSON output: " + finalJsonFile.getAbsolutePath());
+                incrementalAnalysis.record(historyId, headCommit, finalJsonFile);
 
-            Files.move(cleanJsonFile.toPath(), finalJsonFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
-            logConsumer.accept("✅ Final clean JSON output: " + finalJsonFile.getAbsolutePath());
+                // The findings of the previous analysis are gone, so are their tasks and conversions held in memory
+                resultRepository.invalidate();
+                analysisResultService.saveProcessingStats(stats);
+                analysisResultService.saveConversionTasks(conversionTasks);
 
-            logConsumer.accept("Analyzing results and generating statistics...");
-            CodeQLResultProcessor.ProcessingStats stats = resultProcessor.analyzeResults(finalJsonFile);
+                // Patch generation runs later against this workspace
+                containerPool.activate(lease);
+                keepLease = true;
+            }
+
+            if (plan.isEmpty()) {
+                extractionModes.recordFindings(extraction, stats.totalQueries);
+            }
             logConsumer.accept("✅ Analysis complete. Statistics:" + stats.toString());
             logConsumer.accept("✅ Code conversion process completed.");
+            return queryProfile;
         } catch (Exception e) {
             logConsumer.accept("❌ Error during code conversion: " + e.getMessage());
             throw e;
+        } finally {
+            killOnCancel.close();
+            if (!keepLease) {
+                containerPool.release(lease);
+            }
+        }
+    }
+
+    /**
+     * Writes the scope as a code scanning configuration into the workspace's output directory and returns its
+     * path inside the container.
+     */
+    private String writeScopeConfig(ContainerLease lease, AnalysisScope scope) throws IOException {
+        Files.writeString(lease.getOutputDir().resolve(SCOPE_CONFIG_FILENAME), scope.toCodeScanningConfig());
+        return dockerConfig.getContainerOutputDir() + "/" + SCOPE_CONFIG_FILENAME;
+    }
+
+    private QueryProfiler.QueryProfile profileQueries(ContainerLease lease, String evaluatorLogPath, Consumer<String> logConsumer) throws Exception {
+        if (evaluatorLogPath == null) {
+            return null;
+        }
+        return queryProfiler.summarize(lease.getContainerName(), lease.getResourceProfile(), lease.getOutputDir(), logConsumer);
+    }
+
+    private List<String> runFullQuery(ContainerLease lease, String databaseKey, ExtractionMode extraction, String scopeConfigPath,
+                                      String evaluatorLogPath, ResourceProfile profile, Consumer<String> logConsumer, CancellationToken cancellation) throws Exception {
+        String containerName = lease.getContainerName();
+        logConsumer.accept("🔍 Looking up CodeQL database for " + databaseKey + "...");
+        try (DatabaseCache.Handle database = databaseCache.open(containerName, databaseKey, databaseBundles.sharing(lease, databaseKey,
+                dbPath -> {
+                    long startedAt = System.nanoTime();
+                    codeQLCliExecutor.createDatabase(
+                            containerName,
+                            dockerConfig.getContainerProjectPath(),
+                            dbPath,
+                            LANGUAGE,
+                            extraction,
+                            scopeConfigPath,
+                            profile,
+                            System.out::println);
+                    Duration duration = Duration.ofNanos(System.nanoTime() - startedAt);
+                    extractionModes.recordDatabase(extraction, duration);
+                    logConsumer.accept("⏱️ Database extracted (" + extraction.id() + ") in " + duration.toMillis() + " ms");
+                },
+                logConsumer), logConsumer)) {
+            System.out.println("CodeQL database " + database.getKey() + (database.isHit() ? " reused" : " created") + ": " + database.getPath());
+
+            cancellation.throwIfCancelled();
+            System.out.println("Running CodeQL queries inside Docker container...");
+            logConsumer.accept("Running CodeQL queries inside Docker container...");
+            String compilationCacheDir = queryCompilationCache.prepare(containerName, profile, logConsumer);
+            long startedAt = System.nanoTime();
+            List<String> bqrsFiles = codeQLCliExecutor.runQueries(
+                    containerName,
+                    dockerConfig.getContainerQueryPath(),
+                    database.getPath(),
+                    dockerConfig.getContainerResultsDir(),
+                    dockerConfig.getContainerQueryDir(),
+                    compilationCacheDir,
+                    evaluatorLogPath,
+                    profile,
+                    System.out::println);
+            extractionModes.recordQueries(extraction, Duration.ofNanos(System.nanoTime() - startedAt));
+            return bqrsFiles;
         }
     }
 
-    public SseEmitter convertRepositoryWithSse(String repoUrl) {
-        LoggableTask conversionTask = logger -> {
+    private List<String> runIncrementalQuery(ContainerLease lease, IncrementalAnalysis.Plan plan, AnalysisScope scope,
+                                             String scopeConfigPath, String evaluatorLogPath, ResourceProfile profile, Consumer<String> logConsumer, CancellationToken cancellation) throws Exception {
+        String containerName = lease.getContainerName();
+        logConsumer.accept("📦 Creating a partial CodeQL database for " + plan.changed().size() + " changed files...");
+        incrementalAnalysis.stageSources(plan, lease.getProjectDir(), lease.getOutputDir(), scope);
+        codeQLCliExecutor.createDatabaseWithoutBuild(
+                containerName,
+                incrementalAnalysis.containerSourcesDir(),
+                incrementalAnalysis.containerDatabaseDir(),
+                LANGUAGE,
+                scopeConfigPath,
+                profile,
+                System.out::println);
+
+        cancellation.throwIfCancelled();
+        logConsumer.accept("Running CodeQL queries on the changed files...");
+        return codeQLCliExecutor.runQueries(
+                containerName,
+                dockerConfig.getContainerQueryPath(),
+                incrementalAnalysis.containerDatabaseDir(),
+                dockerConfig.getContainerResultsDir(),
+                dockerConfig.getContainerQueryDir(),
+                queryCompilationCache.prepare(containerName, profile, logConsumer),
+                evaluatorLogPath,
+                profile,
+                System.out::println);
+    }
+
+    private File runShardedQuery(ContainerLease lease, List<String> modules, ExtractionMode extraction, AnalysisScope scope,
+                                 ResourceProfile profile, List<Consumer<CodeQLResult>> resultConsumers,
+                                 Consumer<String> logConsumer, CancellationToken cancellation) throws Exception {
+        File cleanJsonFile = new File(lease.getOutputDir().toFile(), "clean-results.json");
+        try (CodeQLResultProcessor.CleanResultsWriter writer = openScopedResults(cleanJsonFile, scope, resultConsumers)) {
+            shardedAnalysis.run(lease, modules, extraction, scope, profile,
+                    (shardLease, module, bqrsFiles) -> decodeInto(writer, shardLease, bqrsFiles, logConsumer, cancellation),
+                    logConsumer, cancellation);
+            logConsumer.accept("Extracted " + writer.getResults() + " clean JSON objects from " + modules.size() + " modules.");
+        }
+        return cleanJsonFile;
+    }
+
+    private File decodeResults(ContainerLease lease, List<String> bqrsFiles, AnalysisScope scope, List<Consumer<CodeQLResult>> resultConsumers,
+                               Consumer<String> logConsumer, CancellationToken cancellation) throws Exception {
+        File cleanJsonFile = new File(lease.getOutputDir().toFile(), "clean-results.json");
+        try (CodeQLResultProcessor.CleanResultsWriter writer = openScopedResults(cleanJsonFile, scope, resultConsumers)) {
+            decodeInto(writer, lease, bqrsFiles, logConsumer, cancellation);
+            logConsumer.accept("Extracted " + writer.getResults() + " clean JSON objects.");
+        }
+        return cleanJsonFile;
+    }
+
+    private CodeQLResultProcessor.CleanResultsWriter openScopedResults(File cleanJsonFile, AnalysisScope scope,
+                                                                      List<Consumer<CodeQLResult>> resultConsumers) throws IOException {
+        // The build compiles every Java file whatever the path filters say, so findings are scoped here as well
+        List<String> rootPrefixes = List.of(dockerConfig.getContainerProjectPath() + "/", incrementalAnalysis.containerSourcesDir() + "/");
+        CodeQLResultProcessor.CleanResultsWriter writer = resultProcessor.openCleanResults(cleanJsonFile,
+                result -> inScope(scope, rootPrefixes, result.getPath()));
+        resultConsumers.forEach(writer::subscribe);
+        return writer;
+    }
+
+    private void decodeInto(CodeQLResultProcessor.CleanResultsWriter writer, ContainerLease lease, List<String> bqrsFiles,
+                            Consumer<String> logConsumer, CancellationToken cancellation) throws Exception {
+        File resultsDir = pathProvider.getResultsDirectory(lease.getOutputDir().toFile());
+        logConsumer.accept("CodeQL analysis complete. " + bqrsFiles.size() + " BQRS files generated in: " + resultsDir.getAbsolutePath());
+        for (String bqrsFile : bqrsFiles) {
+            cancellation.throwIfCancelled();
+            logConsumer.accept("Decoding BQRS results " + bqrsFile + " page by page to clean JSON...");
+            int pages = pagedBqrsDecoder.decode(lease.getContainerName(), lease.getResourceProfile(), bqrsFile, resultsDir, page -> {
+                cancellation.throwIfCancelled();
+                writer.append(page);
+            });
+            logConsumer.accept("✅ Decoded " + pages + " result pages of " + bqrsFile);
+        }
+    }
+
+    private static boolean inScope(AnalysisScope scope, List<String> rootPrefixes, String path) {
+        if (path == null) {
+            return true;
+        }
+        for (String prefix : rootPrefixes) {
+            if (path.startsWith(prefix)) {
+                return scope.includes(path.substring(prefix.length()));
+            }
+        }
+        return true;
+    }
+
+    public SseEmitter convertRepositoryWithSse(String repoUrl, String profileName, boolean incremental, boolean sharded,
+                                               String extraction, String include, String exclude, boolean profileQueries) {
+        ConversionOptions options = new ConversionOptions(repoUrl, resourceProfiles.resolve(profileName), incremental,
+                sharded, analysisScopes.resolve(include, exclude), extractionModes.resolve(extraction), profileQueries);
+        LoggableTask conversionTask = (logger, cancellation) -> {
             logger.accept("Starting code conversion for repository: " + repoUrl);
             File projectDir = repositoryCloner.cloneRepository(repoUrl);
             logger.accept("✅ Repository cloned to: " + projectDir.getAbsolutePath());
-            startConversion(projectDir, logger);
+            startConversion(projectDir, options, logger, cancellation);
         };
         return sseLogExecutor.streamConversionLogs(conversionTask);
     }
 
-    public Map<String, Object> convertRepository(MultipartFile projectZip) throws Exception {
+    public Map<String, Object> convertRepository(MultipartFile projectZip, String profileName, boolean sharded,
+                                                 String extraction, String include, String exclude, boolean profileQueries) throws Exception {
+        ConversionOptions options = new ConversionOptions(null, resourceProfiles.resolve(profileName), false,
+                sharded, analysisScopes.resolve(include, exclude), extractionModes.resolve(extraction), profileQueries);
         final List<String> logs = new ArrayList<>();
 
         Consumer<String> logConsumer = logs::add;
@@ -158,12 +422,15 @@ public class CodeConversionService {
         File projectDir = zipExtractor.unzip(projectZip);
         logConsumer.accept("✅ ZIP file extracted to: " + projectDir.getAbsolutePath());
 
-        startConversion(projectDir, logConsumer);
+        QueryProfiler.QueryProfile queryProfile = startConversion(projectDir, options, logConsumer, new CancellationToken());
 
         Map<String, Object> result = new HashMap<>();
         result.put("status", "Completed");
         result.put("message", "Conversion finished successfully.");
         result.put("logs", logs);
+        if (queryProfile != null) {
+            result.put("queryProfile", queryProfile);
+        }
 
         return result;
     }
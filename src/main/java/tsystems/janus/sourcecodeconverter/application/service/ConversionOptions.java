@@ -0,0 +1,20 @@
+package tsystems.janus.sourcecodeconverter.application.service;
+
+import tsystems.janus.sourcecodeconverter.infrastructure.codeQL.AnalysisScope;
+import tsystems.janus.sourcecodeconverter.infrastructure.codeQL.ExtractionMode;
+import tsystems.janus.sourcecodeconverter.infrastructure.docker.ResourceProfile;
+
+/**
+ * Per-job settings of a conversion.
+ *
+ * @param projectId   identity of the analysed repository across runs (its URL), {@code null} for uploads
+ * @param profile     the resource profile the analysis container runs with
+ * @param incremental re-analyse only what changed since the last analysed revision of {@code projectId}
+ * @param sharded     analyse each Maven module in its own database, spread over several containers
+ * @param scope       the paths, modules and packages to extract and report
+ * @param extraction  how the full database is extracted: traced build or buildless
+ * @param profiling   run the queries with an evaluator log and report per-predicate time and tuple counts
+ */
+public record ConversionOptions(String projectId, ResourceProfile profile, boolean incremental, boolean sharded,
+                                AnalysisScope scope, ExtractionMode extraction, boolean profiling) {
+}
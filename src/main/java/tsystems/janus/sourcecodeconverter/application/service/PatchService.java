@@ -6,8 +6,12 @@ import tsystems.janus.sourcecodeconverter.domain.model.ConversionTask;
 import tsystems.janus.sourcecodeconverter.domain.model.LlmReplacementsResponse;
 import tsystems.janus.sourcecodeconverter.infrastructure.buildTesting.BuildTestService;
 import tsystems.janus.sourcecodeconverter.infrastructure.codeQL.CodeQLResultProcessor;
+import tsystems.janus.sourcecodeconverter.infrastructure.codeQL.FindingDeduplicator;
+import tsystems.janus.sourcecodeconverter.infrastructure.docker.AnalysisContainerPool;
 import tsystems.janus.sourcecodeconverter.infrastructure.docker.CodeQLDockerConfig;
+import tsystems.janus.sourcecodeconverter.infrastructure.docker.ContainerLease;
 import tsystems.janus.sourcecodeconverter.infrastructure.docker.DockerContainerManager;
+import tsystems.janus.sourcecodeconverter.infrastructure.git.GitPatchTransaction;
 import tsystems.janus.sourcecodeconverter.infrastructure.git.PatchApplierService;
 
 import java.io.File;
@@ -15,7 +19,9 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 
 import static tsystems.janus.sourcecodeconverter.infrastructure.llm.LlmParser.parseLlmResponse;
@@ -24,28 +30,34 @@ import static tsystems.janus.sourcecodeconverter.infrastructure.llm.LlmParser.pa
 public class PatchService {
 
     private final CodeQLResultProcessor codeQLResultProcessor;
+    private final AnalysisResultRepository resultRepository;
     private final PatchApplierService patchApplierService;
     private final BuildTestService buildTestService;
     private final DockerContainerManager dockerContainerManager;
     private final CodeQLDockerConfig dockerConfig;
+    private final AnalysisContainerPool containerPool;
     private final Path patchesDir;
     private final String convertedSqlJsonFile;
     private final String structuredTasksJsonFile;
 
     public PatchService(CodeQLResultProcessor codeQLResultProcessor,
+                        AnalysisResultRepository resultRepository,
                         PatchApplierService patchApplierService,
                         BuildTestService buildTestService,
                         DockerContainerManager dockerContainerManager,
                         CodeQLDockerConfig dockerConfig,
+                        AnalysisContainerPool containerPool,
                         @Value("${conversion.output.patches-directory}") String patchesDir,
                         @Value("${conversion.output.directory}") String outputDir,
                         @Value("${conversion.output.converted-sql-json}") String convertedSqlJsonFile,
                         @Value("${conversion.output.structured-tasks-json}") String structuredTasksJsonFile) {
         this.codeQLResultProcessor = codeQLResultProcessor;
+        this.resultRepository = resultRepository;
         this.patchApplierService = patchApplierService;
         this.buildTestService = buildTestService;
         this.dockerContainerManager = dockerContainerManager;
         this.dockerConfig = dockerConfig;
+        this.containerPool = containerPool;
         this.patchesDir = Paths.get(patchesDir);
         this.convertedSqlJsonFile = outputDir + "/" + convertedSqlJsonFile;
         this.structuredTasksJsonFile = outputDir + "/" + structuredTasksJsonFile;
@@ -55,8 +67,10 @@ public class PatchService {
         File llmResultsFile = new File(convertedSqlJsonFile);
         File structuredTasksFile = new File(structuredTasksJsonFile);
 
-        List<LlmReplacementsResponse> replacements = parseLlmResponse(llmResultsFile);
-        List<ConversionTask> originalTasks = codeQLResultProcessor.loadConversionTasks(structuredTasksFile);
+        List<LlmReplacementsResponse> replacements = resultRepository.get(AnalysisResultRepository.REPLACEMENTS,
+                llmResultsFile.length(), () -> parseLlmResponse(llmResultsFile));
+        List<ConversionTask> originalTasks = resultRepository.get(AnalysisResultRepository.TASKS,
+                structuredTasksFile.length(), () -> codeQLResultProcessor.loadConversionTasks(structuredTasksFile));
 
         if (replacements.isEmpty()) {
             throw new NoSuchElementException("No replacements found in the converted SQL file.");
@@ -69,64 +83,82 @@ public class PatchService {
         int appliedPatches = 0;
         int patchCounter = 1;
 
-
+        List<LlmReplacementsResponse> sourceResponses = new ArrayList<>();
         for (LlmReplacementsResponse response : replacements) {
             if (response.getFile().toLowerCase().endsWith(".xml")) {
                 System.out.println("⚠️ Skipping patch for XML file as requested: " + response.getFile());
                 continue;
             }
 
-            String branchName = "patch-branch-" + patchCounter++;
+            // The cached responses are shared with later requests, so the canonical path goes on a copy
+            sourceResponses.add(withFile(response, FindingDeduplicator.canonicalPath(response.getFile())));
+        }
+
+        ContainerLease lease = containerPool.activeLease();
+        System.out.println("Generating patches in container: " + lease.getContainerName());
 
-            patchApplierService.createAndCheckoutBranch(branchName);
+        Map<String, String> originalContents = patchApplierService.readSourceFiles(lease,
+                sourceResponses.stream().map(LlmReplacementsResponse::getFile).distinct().toList());
 
+        List<PreparedPatch> preparedPatches = new ArrayList<>();
+        for (LlmReplacementsResponse response : sourceResponses) {
+            int patchNumber = patchCounter++;
             String filePath = response.getFile();
-            if (filePath.contains("/target/classes/")) {
-                filePath = filePath.replace("/target/classes/", "/src/main/resources/");
-                response.setFile(filePath);
-            }
 
-            final String finalSourcePath = filePath;
             ConversionTask originalTask = originalTasks.stream()
-                    .filter(task -> {
-                        String taskPath = task.getSink().getFilePath();
-                        String normalizedTaskPath = taskPath.contains("/target/classes/")
-                                ? taskPath.replace("/target/classes/", "/src/main/resources/")
-                                : taskPath;
-                        return normalizedTaskPath.equals(finalSourcePath);
-                    })
+                    .filter(task -> FindingDeduplicator.canonicalPath(task.getSink().getFilePath()).equals(filePath))
                     .findFirst()
-                    .orElseThrow(() -> new NoSuchElementException("Original task not found for file: " + finalSourcePath));
-
-            boolean changesApplied = patchApplierService.applyPatch(response, originalTask);
-
-            if (changesApplied) {
-                if (buildTestService.testSingleFile(filePath)) {
-                    patchApplierService.commitChanges(filePath, response.getExplanation());
-                    String patchFileNameInContainer = patchApplierService.formatPatch();
-
-                    if (patchFileNameInContainer != null && !patchFileNameInContainer.isBlank()) {
-                        String containerSrcPath = dockerConfig.getContainerProjectPath() + "/" + patchFileNameInContainer;
-                        String uniquePatchName = String.format("%04d-%s", (patchCounter - 1), patchFileNameInContainer.substring(5));
-                        String hostDestPath = patchesDir.resolve(uniquePatchName).toString();
-
-                        dockerContainerManager.copyFileFromContainer(dockerConfig.getContainerName(), containerSrcPath, hostDestPath);
-                        System.out.println("✅ Successfully created patch: " + uniquePatchName);
-                        appliedPatches++;
-                    }
-                } else {
-                    System.err.println("Compilation failed for: " + filePath + ". Reverting changes.");
-                    patchApplierService.revertChanges(filePath);
-                }
+                    .orElseThrow(() -> new NoSuchElementException("Original task not found for file: " + filePath));
+
+            String originalContent = originalContents.get(filePath);
+            if (originalContent == null) {
+                System.err.println("Could not read " + filePath + " from the container. Skipping.");
+                continue;
+            }
+
+            patchApplierService.applyReplacements(response, originalTask, originalContent).ifPresentOrElse(
+                    content -> preparedPatches.add(new PreparedPatch(patchNumber, response, content)),
+                    () -> System.out.println("Skipping build and commit for " + filePath + " as no changes were detected."));
+        }
+
+        // Each file goes into the working tree right before its own build. The previous file is back at its original
+        // content by then (committed on a temporary branch or reverted), so a broken patch cannot fail the others
+        for (PreparedPatch patch : preparedPatches) {
+            LlmReplacementsResponse response = patch.response();
+            String filePath = response.getFile();
+            String branchName = "patch-branch-" + patch.number();
+            patchApplierService.writeSourceFiles(lease, Map.of(filePath, patch.content()));
+
+            String relativePath = patchApplierService.toRelativePath(filePath);
+            GitPatchTransaction transaction = new GitPatchTransaction();
+            boolean buildSucceeded = buildTestService.testSingleFile(lease, filePath);
+
+            if (buildSucceeded) {
+                transaction.onTemporaryBranch(branchName)
+                        .add(relativePath)
+                        .commit(PatchApplierService.COMMIT_SUBJECT, response.getExplanation())
+                        .formatPatch();
             } else {
-                System.out.println("Skipping build and commit for " + filePath + " as no changes were detected.");
+                System.err.println("Compilation failed for: " + filePath + ". Reverting changes.");
+                transaction.revert(relativePath);
             }
 
-            patchApplierService.resetAndCleanBranch(branchName);
+            GitPatchTransaction.Result result = patchApplierService.execute(lease, transaction);
+            String patchFileNameInContainer = result.patchFileName();
+
+            if (buildSucceeded && patchFileNameInContainer != null) {
+                String containerSrcPath = dockerConfig.getContainerProjectPath() + "/" + patchFileNameInContainer;
+                String uniquePatchName = String.format("%04d-%s", patch.number(), patchFileNameInContainer.substring(5));
+                String hostDestPath = patchesDir.resolve(uniquePatchName).toString();
+
+                dockerContainerManager.copyFileFromContainer(lease.getContainerName(), containerSrcPath, hostDestPath);
+                System.out.println("✅ Successfully created patch: " + uniquePatchName);
+                appliedPatches++;
+            }
         }
 
         // Uncomment the following lines if you want to perform a full project build after applying all patches
-//        if (appliedPatches > 0 && buildTestService.testFullBuild()) {
+//        if (appliedPatches > 0 && buildTestService.testFullBuild(lease)) {
 //            System.out.println("✅ Full project build successful after all patches.");
 //        } else if (appliedPatches > 0) {
 //            System.err.println("❌ Full project build failed. The generated patches may be unstable.");
@@ -139,4 +171,15 @@ public class PatchService {
         System.out.println(summary);
         return summary;
     }
+
+    private static LlmReplacementsResponse withFile(LlmReplacementsResponse response, String file) {
+        LlmReplacementsResponse copy = new LlmReplacementsResponse();
+        copy.setFile(file);
+        copy.setExplanation(response.getExplanation());
+        copy.setReplacements(response.getReplacements());
+        return copy;
+    }
+
+    private record PreparedPatch(int number, LlmReplacementsResponse response, String content) {
+    }
 }
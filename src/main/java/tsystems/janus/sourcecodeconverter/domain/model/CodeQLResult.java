@@ -12,6 +12,7 @@ public class CodeQLResult {
     private String sourceExpressionType;
     private String className;
     private String type;
+    private String callerPath;
 
     public String getId() {
         return id;
@@ -100,4 +101,12 @@ public class CodeQLResult {
     public void setType(String type) {
         this.type = type;
     }
+
+    public String getCallerPath() {
+        return callerPath;
+    }
+
+    public void setCallerPath(String callerPath) {
+        this.callerPath = callerPath;
+    }
 }
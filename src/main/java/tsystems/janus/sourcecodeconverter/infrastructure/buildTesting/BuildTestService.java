@@ -2,7 +2,9 @@ package tsystems.janus.sourcecodeconverter.infrastructure.buildTesting;
 
 import org.springframework.stereotype.Service;
 import tsystems.janus.sourcecodeconverter.infrastructure.docker.CodeQLDockerConfig;
+import tsystems.janus.sourcecodeconverter.infrastructure.docker.ContainerLease;
 import tsystems.janus.sourcecodeconverter.infrastructure.docker.DockerContainerManager;
+import tsystems.janus.sourcecodeconverter.infrastructure.docker.ResourceProfile;
 
 import java.util.List;
 
@@ -17,14 +19,14 @@ public class BuildTestService {
         this.dockerConfig = dockerConfig;
     }
 
-    public boolean testSingleFile(String filePath) {
-        String containerName = dockerConfig.getContainerName();
+    public boolean testSingleFile(ContainerLease lease, String filePath) {
+        String containerName = lease.getContainerName();
         String workDir = dockerConfig.getContainerProjectPath();
         String relativePath = filePath.replace(workDir + "/", "");
 
         try {
             System.out.println("🧪 Starting Maven compilation test for: " + relativePath);
-            String mavenCommand = String.format("mvn compiler:compile -Dmaven.compiler.includes=%s", relativePath);
+            String mavenCommand = String.format("mvn -T %d compiler:compile -Dmaven.compiler.includes=%s", mavenThreads(lease), relativePath);
 
             System.out.println("Executing command: " + mavenCommand + " for file: " + relativePath);
 
@@ -37,12 +39,12 @@ public class BuildTestService {
         }
     }
 
-    public boolean testFullBuild() {
-        String containerName = dockerConfig.getContainerName();
+    public boolean testFullBuild(ContainerLease lease) {
+        String containerName = lease.getContainerName();
         String workDir = dockerConfig.getContainerProjectPath();
         try {
             System.out.println("🧪 Starting full Maven project compilation...");
-            containerManager.executeCommandInContainer(containerName, workDir, List.of("mvn", "clean", "compile"), System.out::println);
+            containerManager.executeCommandInContainer(containerName, workDir, List.of("mvn", "-T", String.valueOf(mavenThreads(lease)), "clean", "compile"), System.out::println);
             System.out.println("✅ Full Maven compilation successful.");
             return true;
         } catch (Exception e) {
@@ -50,4 +52,9 @@ public class BuildTestService {
             return false;
         }
     }
+
+    private static int mavenThreads(ContainerLease lease) {
+        ResourceProfile profile = lease.getResourceProfile();
+        return profile == null ? 1 : profile.mavenThreads();
+    }
 }
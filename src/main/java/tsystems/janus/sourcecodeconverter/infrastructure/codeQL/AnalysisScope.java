@@ -0,0 +1,170 @@
+package tsystems.janus.sourcecodeconverter.infrastructure.codeQL;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * The part of a project a job analyses, as path globs relative to the project root. An empty include list means
+ * the whole project; excludes win over includes. {@code **} matches any number of directories, {@code *} and
+ * {@code ?} stay within one path segment.
+ *
+ * @param include path globs to analyse
+ * @param exclude path globs to leave out, e.g. build outputs
+ */
+public record AnalysisScope(List<String> include, List<String> exclude) {
+
+    private static final int ID_LENGTH = 12;
+
+    public AnalysisScope {
+        include = List.copyOf(include);
+        exclude = List.copyOf(exclude);
+    }
+
+    /**
+     * Whether an exclude glob matches the path, regardless of the includes.
+     */
+    public boolean excludes(String relativePath) {
+        String path = relativePath.replace('\\', '/');
+        return exclude.stream().anyMatch(glob -> matches(glob, path));
+    }
+
+    public boolean includes(String relativePath) {
+        if (excludes(relativePath)) {
+            return false;
+        }
+        String path = relativePath.replace('\\', '/');
+        return include.isEmpty() || include.stream().anyMatch(glob -> matches(glob, path));
+    }
+
+    /**
+     * The scope seen from a module directory, for extracting the module with the module as source root. Globs
+     * under the module lose the module prefix, {@code **}/ globs apply as they are, and globs for other
+     * directories are dropped. An include that cannot be moved exactly, because a {@code **} spans the module
+     * directory, includes the whole module. Empty when the includes do not reach the module.
+     *
+     * @param module module directory relative to the project root, {@code ""} for the root
+     */
+    public Optional<AnalysisScope> withinModule(String module) {
+        if (module.isEmpty()) {
+            return Optional.of(this);
+        }
+        List<String> moduleExclude = new ArrayList<>();
+        for (String glob : exclude) {
+            // An exclude that cannot be moved only costs extraction time, findings are filtered afterwards
+            rebase(glob, module).filter(rebased -> !rebased.isEmpty()).ifPresent(moduleExclude::add);
+        }
+
+        List<String> moduleInclude = new ArrayList<>();
+        boolean wholeModule = include.isEmpty();
+        for (String glob : include) {
+            Optional<String> rebased = rebase(glob, module);
+            if (rebased.isEmpty()) {
+                continue;
+            }
+            if (rebased.get().isEmpty()) {
+                wholeModule = true;
+            } else {
+                moduleInclude.add(rebased.get());
+            }
+        }
+        if (!wholeModule && moduleInclude.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(new AnalysisScope(wholeModule ? List.of() : moduleInclude, moduleExclude));
+    }
+
+    /**
+     * Moves a glob to the module directory. Empty when it cannot match inside the module, an empty string when it
+     * can but has no exact equivalent relative to the module.
+     */
+    private static Optional<String> rebase(String glob, String module) {
+        if (glob.equals("**") || glob.startsWith("**/")) {
+            return Optional.of(glob);
+        }
+        String[] globSegments = glob.split("/");
+        String[] moduleSegments = module.split("/");
+        for (int i = 0; i < moduleSegments.length; i++) {
+            if (i >= globSegments.length) {
+                return Optional.empty();
+            }
+            if (globSegments[i].contains("**")) {
+                return Optional.of("");
+            }
+            if (!matches(globSegments[i], moduleSegments[i])) {
+                return Optional.empty();
+            }
+        }
+        if (globSegments.length == moduleSegments.length) {
+            return Optional.empty();
+        }
+        return Optional.of(String.join("/", List.of(globSegments).subList(moduleSegments.length, globSegments.length)));
+    }
+
+    /**
+     * The scope as a code scanning configuration, which {@code codeql database create --codescanning-config} turns
+     * into the extractors' path filters.
+     */
+    public String toCodeScanningConfig() {
+        StringBuilder config = new StringBuilder("name: source-code-converter analysis scope\n");
+        appendList(config, "paths", include);
+        appendList(config, "paths-ignore", exclude);
+        return config.toString();
+    }
+
+    /**
+     * Short stable identifier of the scope, part of the database cache key.
+     */
+    public String id() {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(toCodeScanningConfig().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash).substring(0, ID_LENGTH);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static void appendList(StringBuilder config, String key, List<String> globs) {
+        if (globs.isEmpty()) {
+            return;
+        }
+        config.append(key).append(":\n");
+        for (String glob : globs) {
+            config.append("  - '").append(glob.replace("'", "''")).append("'\n");
+        }
+    }
+
+    static boolean matches(String glob, String path) {
+        return toRegex(glob).matcher(path).matches();
+    }
+
+    private static Pattern toRegex(String glob) {
+        StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (glob.startsWith("**/", i)) {
+                regex.append("(?:.*/)?");
+                i += 2;
+            } else if (glob.startsWith("/**", i) && i + 3 == glob.length()) {
+                regex.append("(?:/.*)?");
+                i += 2;
+            } else if (glob.startsWith("**", i)) {
+                regex.append(".*");
+                i++;
+            } else if (c == '*') {
+                regex.append("[^/]*");
+            } else if (c == '?') {
+                regex.append("[^/]");
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return Pattern.compile(regex.toString());
+    }
+}
@@ -0,0 +1,120 @@
+package tsystems.janus.sourcecodeconverter.infrastructure.codeQL;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Builds the analysis scope of a job from comma separated include/exclude entries. An entry is a path glob, a
+ * {@code module:<dir>} for a Maven module, or a {@code pkg:<java.package>} for a package and its subpackages, e.g.
+ * {@code module:billing,pkg:com.acme.dao}. Build outputs are excluded unless the defaults are overridden: Maven's
+ * {@code target} by glob, and Gradle's {@code build} only next to a Gradle build file, because a glob would also
+ * drop source packages named {@code build}.
+ */
+@Component
+public class AnalysisScopes {
+
+    private static final String MODULE_PREFIX = "module:";
+    private static final String PACKAGE_PREFIX = "pkg:";
+    private static final Set<String> GRADLE_BUILD_FILES = Set.of("build.gradle", "build.gradle.kts",
+            "settings.gradle", "settings.gradle.kts");
+    private static final Set<String> SKIPPED_DIRS = Set.of(".git", "node_modules", "target", "build");
+
+    private final List<String> defaultExcludes;
+
+    public AnalysisScopes(@Value("${codeql.scope.default-excludes:**/target/**,**/node_modules/**}") String defaultExcludes) {
+        this.defaultExcludes = toGlobs(defaultExcludes);
+    }
+
+    public AnalysisScope resolve(String include, String exclude) {
+        List<String> excludes = new ArrayList<>(defaultExcludes);
+        toGlobs(exclude).stream().filter(glob -> !excludes.contains(glob)).forEach(excludes::add);
+        return new AnalysisScope(toGlobs(include), excludes);
+    }
+
+    public AnalysisScope getDefault() {
+        return resolve(null, null);
+    }
+
+    /**
+     * Adds the {@code build/} output directory of every Gradle project in the checkout to the excludes.
+     */
+    public AnalysisScope withGradleBuildOutputs(AnalysisScope scope, File projectDir) throws IOException {
+        Path root = projectDir.toPath();
+        Set<String> buildOutputs = new TreeSet<>();
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                return !dir.equals(root) && SKIPPED_DIRS.contains(dir.getFileName().toString())
+                        ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (GRADLE_BUILD_FILES.contains(file.getFileName().toString())) {
+                    String dir = root.relativize(file.getParent()).toString().replace('\\', '/');
+                    buildOutputs.add(dir.isEmpty() ? "build/**" : dir + "/build/**");
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        List<String> excludes = new ArrayList<>(scope.exclude());
+        buildOutputs.stream().filter(glob -> !excludes.contains(glob)).forEach(excludes::add);
+        return excludes.size() == scope.exclude().size() ? scope : new AnalysisScope(scope.include(), excludes);
+    }
+
+    private static List<String> toGlobs(String entries) {
+        if (entries == null || entries.isBlank()) {
+            return List.of();
+        }
+        return Arrays.stream(entries.split(","))
+                .map(String::trim)
+                .filter(entry -> !entry.isEmpty())
+                .map(AnalysisScopes::toGlob)
+                .toList();
+    }
+
+    private static String toGlob(String entry) {
+        if (entry.startsWith(MODULE_PREFIX)) {
+            String module = trimSlashes(entry.substring(MODULE_PREFIX.length()).trim());
+            requireValue(entry, module);
+            return module + "/**";
+        }
+        if (entry.startsWith(PACKAGE_PREFIX)) {
+            String javaPackage = entry.substring(PACKAGE_PREFIX.length()).trim();
+            if (!javaPackage.matches("[A-Za-z_$][\\w$]*(\\.[A-Za-z_$][\\w$]*)*")) {
+                throw new IllegalArgumentException("Invalid package in analysis scope: '" + entry + "'");
+            }
+            return "**/" + javaPackage.replace('.', '/') + "/**";
+        }
+        String glob = trimSlashes(entry);
+        requireValue(entry, glob);
+        if (glob.startsWith("..") || glob.contains("/../")) {
+            throw new IllegalArgumentException("Analysis scope paths must stay inside the project: '" + entry + "'");
+        }
+        return glob;
+    }
+
+    private static String trimSlashes(String path) {
+        return path.replace('\\', '/').replaceAll("^/+|/+$", "");
+    }
+
+    private static void requireValue(String entry, String value) {
+        if (value.isEmpty()) {
+            throw new IllegalArgumentException("Empty entry in analysis scope: '" + entry + "'");
+        }
+    }
+}
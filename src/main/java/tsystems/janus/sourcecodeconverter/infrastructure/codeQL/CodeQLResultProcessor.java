@@ -1,118 +1,203 @@
 package tsystems.janus.sourcecodeconverter.infrastructure.codeQL;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
 import org.springframework.stereotype.Component;
 import tsystems.janus.sourcecodeconverter.domain.model.CodeQLResult;
 import tsystems.janus.sourcecodeconverter.domain.model.ConversionTask;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 @Component
 public class CodeQLResultProcessor {
 
     private final ObjectMapper objectMapper;
+    private final FindingDeduplicator findingDeduplicator;
+    private final FindingColumnDecoder findingColumnDecoder;
 
-    public CodeQLResultProcessor(ObjectMapper objectMapper) {
+    public CodeQLResultProcessor(ObjectMapper objectMapper, FindingDeduplicator findingDeduplicator,
+                                 FindingColumnDecoder findingColumnDecoder) {
         this.objectMapper = objectMapper;
+        this.findingDeduplicator = findingDeduplicator;
+        this.findingColumnDecoder = findingColumnDecoder;
     }
 
-    public File extractCleanJsonFromTuples(File rawJsonFile) throws IOException {
-        JsonNode rootNode = objectMapper.readTree(rawJsonFile);
-
-        JsonNode selectNode = rootNode.get("#select");
-        if (selectNode == null) {
-            throw new IllegalArgumentException("Expected CodeQL tuple format not found");
-        }
+    /**
+     * Opens a clean results file that decoded result pages are streamed into one at a time. Only the current row
+     * is held in memory.
+     */
+    public CleanResultsWriter openCleanResults(File outputFile) throws IOException {
+        return openCleanResults(outputFile, result -> true);
+    }
 
-        JsonNode tuplesNode = selectNode.get("tuples");
-        if (tuplesNode == null || !tuplesNode.isArray()) {
-            throw new IllegalArgumentException("Tuples array not found in CodeQL output");
-        }
+    /**
+     * Like {@link #openCleanResults(File)}, dropping the findings the filter rejects.
+     */
+    public CleanResultsWriter openCleanResults(File outputFile, Predicate<CodeQLResult> filter) throws IOException {
+        return new CleanResultsWriter(outputFile, filter);
+    }
 
-        List<JsonNode> cleanResults = new ArrayList<>();
+    public ProcessingStats analyzeResults(File cleanJsonFile) throws IOException {
+        StatsCollector collector = newStatsCollector();
+        streamResults(cleanJsonFile, collector);
+        return collector.getStats();
+    }
 
-        for (JsonNode tuple : tuplesNode) {
-            if (tuple.isArray() && !tuple.isEmpty()) {
-                String jsonString = tuple.get(0).asText();
+    public List<CodeQLResult> loadResults(File resultsFile) throws IOException {
+        List<CodeQLResult> results = new ArrayList<>();
+        streamResults(resultsFile, results::add);
+        return results;
+    }
 
-                try {
-                    JsonNode jsonObject = objectMapper.readTree(jsonString);
-                    cleanResults.add(jsonObject);
-                } catch (Exception e) {
-                    System.err.println("Error parsing JSON from tuple: " + e.getMessage());
-                    System.err.println("Problematic JSON string: " + jsonString);
-                }
+    /**
+     * Reads a results file one finding at a time and hands each to the consumer, so only the current finding is
+     * held in memory.
+     */
+    public void streamResults(File resultsFile, Consumer<CodeQLResult> consumer) throws IOException {
+        if (!resultsFile.exists()) {
+            throw new FileNotFoundException("Results file not found in path: " + resultsFile.getAbsolutePath());
+        }
+        try (JsonParser parser = objectMapper.getFactory().createParser(resultsFile)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IllegalArgumentException("Results file must hold a JSON array: " + resultsFile.getAbsolutePath());
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                consumer.accept(objectMapper.readValue(parser, CodeQLResult.class));
             }
         }
+    }
 
-        File outputFile = new File(rawJsonFile.getParent(), "clean-results.json");
-
-        ArrayNode arrayNode = objectMapper.createArrayNode();
-        cleanResults.forEach(arrayNode::add);
-
-        objectMapper.writerWithDefaultPrettyPrinter().writeValue(outputFile, arrayNode);
-
-        System.out.println("✅ Extracted " + cleanResults.size() + " clean JSON objects");
-        System.out.println("📄 Clean results written to: " + outputFile.getAbsolutePath());
+    /**
+     * Aggregates {@link ProcessingStats} from findings as they are streamed in.
+     */
+    public StatsCollector newStatsCollector() {
+        return new StatsCollector();
+    }
 
-        return outputFile;
+    public List<ConversionTask> loadConversionTasks(File tasksFile) throws IOException {
+        if (!tasksFile.exists()) {
+            throw new FileNotFoundException("Tasks file not found in path: " + tasksFile.getAbsolutePath());
+        }
+        return objectMapper.readValue(tasksFile, new TypeReference<List<ConversionTask>>() {});
     }
 
-    public ProcessingStats analyzeResults(File cleanJsonFile) throws IOException {
-        JsonNode rootNode = objectMapper.readTree(cleanJsonFile);
+    public class CleanResultsWriter implements Closeable {
+        private final File outputFile;
+        private final JsonGenerator generator;
+        private final Predicate<CodeQLResult> filter;
+        private final List<Consumer<CodeQLResult>> subscribers = new ArrayList<>();
+        private int results;
+        private int filtered;
+        private int sources;
+
+        private CleanResultsWriter(File outputFile, Predicate<CodeQLResult> filter) throws IOException {
+            this.outputFile = outputFile;
+            this.filter = filter;
+            this.generator = objectMapper.getFactory().createGenerator(outputFile, JsonEncoding.UTF8);
+            generator.useDefaultPrettyPrinter();
+            generator.writeStartArray();
+        }
 
-        ProcessingStats stats = new ProcessingStats();
+        /**
+         * Registers a consumer that sees every finding written to the file, right after it is written.
+         */
+        public synchronized CleanResultsWriter subscribe(Consumer<CodeQLResult> subscriber) {
+            subscribers.add(subscriber);
+            return this;
+        }
 
-        if (rootNode.isArray()) {
-            stats.totalQueries = rootNode.size();
+        /**
+         * Appends the findings of one decoded result set, or one page of it. Safe to call from several threads.
+         */
+        public synchronized void append(File rawJsonFile) throws IOException {
+            try {
+                findingColumnDecoder.decode(rawJsonFile, result -> {
+                    if (!filter.test(result)) {
+                        filtered++;
+                        return;
+                    }
+                    try {
+                        generator.writeObject(result);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    subscribers.forEach(subscriber -> subscriber.accept(result));
+                    results++;
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            sources++;
+        }
 
-            for (JsonNode result : rootNode) {
-                String queryType = result.path("type").asText();
+        public synchronized int getResults() {
+            return results;
+        }
 
-                switch (queryType.toLowerCase()) {
-                    case "static":
-                        stats.staticQueries++;
-                        break;
-                    case "dynamic":
-                        stats.dynamicQueries++;
-                        break;
-                    case "parameterized":
-                        stats.parameterizedQueries++;
-                        break;
-                }
+        @Override
+        public synchronized void close() throws IOException {
+            generator.writeEndArray();
+            generator.close();
+            System.out.println("✅ Extracted " + results + " clean JSON objects from " + sources + " result files"
+                    + (filtered > 0 ? " (" + filtered + " outside the analysis scope dropped)" : ""));
+            System.out.println("📄 Clean results written to: " + outputFile.getAbsolutePath());
+        }
+    }
 
-                String fileName = result.path("path").asText();
-                stats.fileCount.merge(fileName, 1, Integer::sum);
+    public class StatsCollector implements Consumer<CodeQLResult> {
+        private final ProcessingStats stats = new ProcessingStats();
+        private final Set<String> seen = new HashSet<>();
 
-                String className = result.path("className").asText();
-                stats.classCount.merge(className, 1, Integer::sum);
+        @Override
+        public synchronized void accept(CodeQLResult result) {
+            String key = findingDeduplicator.keyOf(result.getPath(), result.getStartLine(), result.getStartColumn(),
+                    result.getEndLine(), result.getEndColumn(), result.getCode());
+            if (!seen.add(key)) {
+                stats.duplicateFindings++;
+                return;
+            }
+            stats.totalQueries++;
+
+            String queryType = result.getType() == null ? "" : result.getType();
+
+            switch (queryType.toLowerCase()) {
+                case "static":
+                    stats.staticQueries++;
+                    break;
+                case "dynamic":
+                    stats.dynamicQueries++;
+                    break;
+                case "parameterized":
+                    stats.parameterizedQueries++;
+                    break;
             }
-        }
 
-        return stats;
-    }
+            String fileName = FindingDeduplicator.canonicalPath(result.getPath() == null ? "" : result.getPath());
+            stats.fileCount.merge(fileName, 1, Integer::sum);
 
-    public List<CodeQLResult> loadResults(File resultsFile) throws IOException {
-        if (!resultsFile.exists()) {
-            throw new FileNotFoundException("Results file not found in path: " + resultsFile.getAbsolutePath());
+            String className = result.getClassName() == null ? "" : result.getClassName();
+            stats.classCount.merge(className, 1, Integer::sum);
         }
-        return objectMapper.readValue(resultsFile, new TypeReference<List<CodeQLResult>>() {});
-    }
 
-    public List<ConversionTask> loadConversionTasks(File tasksFile) throws IOException {
-        if (!tasksFile.exists()) {
-            throw new FileNotFoundException("Tasks file not found in path: " + tasksFile.getAbsolutePath());
+        public synchronized ProcessingStats getStats() {
+            return stats;
         }
-        return objectMapper.readValue(tasksFile, new TypeReference<List<ConversionTask>>() {});
     }
 
     public static class ProcessingStats {
@@ -120,6 +205,7 @@ public class CodeQLResultProcessor {
         public int staticQueries = 0;
         public int dynamicQueries = 0;
         public int parameterizedQueries = 0;
+        public int duplicateFindings = 0;
         public Map<String, Integer> fileCount = new HashMap<>();
         public Map<String, Integer> classCount = new HashMap<>();
 
@@ -132,9 +218,10 @@ public class CodeQLResultProcessor {
                             "  Dynamic: %d\n" +
                             "  Parameterized: %d\n" +
                             "  Files: %d\n" +
-                            "  Classes: %d",
+                            "  Classes: %d\n" +
+                            "  Duplicates removed: %d",
                     totalQueries, staticQueries, dynamicQueries, parameterizedQueries,
-                    fileCount.size(), classCount.size()
+                    fileCount.size(), classCount.size(), duplicateFindings
             );
         }
     }
@@ -1,69 +1,198 @@
 package tsystems.janus.sourcecodeconverter.infrastructure.codeQL;
 
 import org.springframework.stereotype.Component;
+import tsystems.janus.sourcecodeconverter.infrastructure.docker.CodeQLDockerConfig;
+import tsystems.janus.sourcecodeconverter.infrastructure.docker.CommandMetrics;
 import tsystems.janus.sourcecodeconverter.infrastructure.docker.DockerContainerManager;
+import tsystems.janus.sourcecodeconverter.infrastructure.docker.ResourceProfile;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @Component
 public class CodeQLRunner {
 
+    // e.g. "[1/2 eval 1m4.2s] Evaluation done; writing results to janus/sql-finder/tainted-sql.bqrs."
+    private static final Pattern QUERY_DONE = Pattern.compile("\\[\\d+/\\d+ eval ([0-9.hms]+)] Evaluation done; writing results to (\\S+\\.bqrs)");
+    private static final Pattern DURATION_PART = Pattern.compile("(\\d+(?:\\.\\d+)?)(ms|h|m|s)");
+
     private final DockerContainerManager containerManager;
+    private final CodeQLDockerConfig dockerConfig;
+    private final CommandMetrics metrics;
 
-    public CodeQLRunner(DockerContainerManager containerManager) {
+    public CodeQLRunner(DockerContainerManager containerManager, CodeQLDockerConfig dockerConfig, CommandMetrics metrics) {
         this.containerManager = containerManager;
+        this.dockerConfig = dockerConfig;
+        this.metrics = metrics;
+    }
+
+    /**
+     * @param codeScanningConfigPath container path of the code scanning configuration whose {@code paths} and
+     *                               {@code paths-ignore} limit what is extracted, or {@code null} for everything
+     */
+    public void createDatabase(String containerName, String projectPathInContainer, String dbPathInContainer, String language, ExtractionMode extractionMode, String codeScanningConfigPath, ResourceProfile profile, Consumer<String> logConsumer) throws IOException, InterruptedException {
+        logConsumer.accept("Running CodeQL database creation for language " + language + " (" + extractionMode.id() + ") in container " + containerName + "...");
+
+        List<String> arguments = new ArrayList<>(List.of("database", "create", dbPathInContainer,
+                "--language=" + language,
+                "--source-root=" + projectPathInContainer));
+        arguments.addAll(options(extractionMode.createOptions()));
+        arguments.addAll(codeScanningConfigArguments(codeScanningConfigPath));
+        arguments.addAll(options(profile.codeqlOptions()));
+        arguments.add("--overwrite");
+        containerManager.executeCodeQLInContainer(containerName, dockerConfig.getContainerQueryDir(), arguments, profile, logConsumer);
+        logConsumer.accept("✅ CodeQL database created at " + dbPathInContainer + " in container " + containerName);
     }
 
-    public void createDatabase(String containerName, String projectPathInContainer, String dbPathInContainer, String language, Consumer<String> logConsumer) throws IOException, InterruptedException {
-        logConsumer.accept("Running CodeQL database creation for language " + language + " in container " + containerName + "...");
-        containerManager.executeCommandInContainer(
-                containerName,
-                null,
-                List.of("bash", "-c",
-                        "rm -rf ~/.codeql/packages/codeql/java-all/7.3.0/ext/ && " +
-                                "codeql database create " + dbPathInContainer +
-                                " --language=" + language +
-                                " --source-root=" + projectPathInContainer +
-//                                " --command=/opt/custom_build.sh" +
-                                " --overwrite"
-                ),
-                logConsumer
-        );
+    /**
+     * Extracts the sources under the given root without running the project's build, as needed for a partial
+     * source tree that cannot be built on its own.
+     */
+    public void createDatabaseWithoutBuild(String containerName, String sourceRootInContainer, String dbPathInContainer, String language, String codeScanningConfigPath, ResourceProfile profile, Consumer<String> logConsumer) throws IOException, InterruptedException {
+        logConsumer.accept("Running CodeQL database creation without build for " + sourceRootInContainer + " in container " + containerName + "...");
+        List<String> arguments = new ArrayList<>(List.of("database", "create", dbPathInContainer,
+                "--language=" + language,
+                "--build-mode=none",
+                "--source-root=" + sourceRootInContainer));
+        arguments.addAll(codeScanningConfigArguments(codeScanningConfigPath));
+        arguments.addAll(options(profile.codeqlOptions()));
+        arguments.add("--overwrite");
+        containerManager.executeCodeQLInContainer(containerName, dockerConfig.getContainerQueryDir(), arguments, profile, logConsumer);
         logConsumer.accept("✅ CodeQL database created at " + dbPathInContainer + " in container " + containerName);
     }
 
-    public void runQuery(String containerName, String qlFilePathInContainer, String dbPathInContainer, String resultPathInContainer, String queryDirInContainer, Consumer<String> logConsumer) throws IOException, InterruptedException {
-        logConsumer.accept("✅ CodeQL query executed successfully in container " + containerName + ". Results at " + resultPathInContainer + ".");
-        containerManager.executeCommandInContainer(
-                containerName,
-                null,
-                List.of("bash", "-c",
-                        "cd " + queryDirInContainer + " && " +
-                                "codeql pack install && " +
-                                "codeql query run " + qlFilePathInContainer +
-                                " --database=" + dbPathInContainer +
-                                " --output=" + resultPathInContainer
-                ),
-                logConsumer
-        );
-        logConsumer.accept("✅ CodeQL query executed successfully in container " + containerName + ". Results at " + resultPathInContainer + ".");
+    /**
+     * Evaluates every query of the suite in one {@code codeql database run-queries} call, which schedules the
+     * queries concurrently on the profile's threads. Each query's BQRS file is copied into the results directory
+     * and its evaluation time is recorded as {@code query <name>} in the command metrics.
+     *
+     * @param evaluatorLogPath container path to write the evaluator log with tuple counts to, or {@code null} to
+     *                         run without profiling
+     * @return container paths of the BQRS files, one per query
+     */
+    public List<String> runQueries(String containerName, String suitePathInContainer, String dbPathInContainer, String resultsDirInContainer, String queryDirInContainer, String compilationCacheDir, String evaluatorLogPath, ResourceProfile profile, Consumer<String> logConsumer) throws IOException, InterruptedException {
+        logConsumer.accept("Running CodeQL query suite " + suitePathInContainer + " in container " + containerName + "...");
+        containerManager.executeCommandInContainer(containerName, null, List.of("bash", "-c",
+                "rm -rf " + dbPathInContainer + "/results && " +
+                        "mkdir -p " + resultsDirInContainer + " && " +
+                        "find " + resultsDirInContainer + " -mindepth 1 -delete" +
+                        (evaluatorLogPath == null ? "" : " && rm -f " + evaluatorLogPath)), logConsumer);
+
+        List<String> arguments = new ArrayList<>(List.of("database", "run-queries", dbPathInContainer, suitePathInContainer,
+                "--compilation-cache=" + compilationCacheDir));
+        if (evaluatorLogPath != null) {
+            arguments.addAll(List.of("--evaluator-log=" + evaluatorLogPath, "--tuple-counting"));
+        }
+        arguments.addAll(options(profile.codeqlOptions()));
+        containerManager.executeCodeQLInContainer(containerName, queryDirInContainer, arguments, profile, line -> {
+            logConsumer.accept(line);
+            recordQueryTiming(line, logConsumer);
+        });
+
+        String listing = containerManager.executeCommandInContainerAndCaptureOutput(containerName, null, List.of("bash", "-c",
+                "find " + dbPathInContainer + "/results -name '*.bqrs' -exec cp {} " + resultsDirInContainer + "/ ';' && " +
+                        "find " + resultsDirInContainer + " -name '*.bqrs' | sort"));
+        List<String> bqrsFiles = listing.lines().map(String::trim).filter(line -> !line.isEmpty()).toList();
+        logConsumer.accept("✅ CodeQL query suite executed in container " + containerName + ". " + bqrsFiles.size() + " result files in " + resultsDirInContainer + ".");
+        return bqrsFiles;
+    }
+
+    /**
+     * Compiles every query of the suite into the compilation cache, through the same CodeQL command path and with
+     * the same resource options as the query runs that use the cache.
+     */
+    public void compileQueries(String containerName, String suitePathInContainer, String compilationCacheDir, ResourceProfile profile, Consumer<String> logConsumer) throws IOException, InterruptedException {
+        containerManager.executeCommandInContainer(containerName, null, List.of("mkdir", "-p", compilationCacheDir), logConsumer);
+        List<String> arguments = new ArrayList<>(List.of("query", "compile", "--compilation-cache=" + compilationCacheDir));
+        arguments.addAll(options(profile.codeqlOptions()));
+        arguments.add(suitePathInContainer);
+        containerManager.executeCodeQLInContainer(containerName, dockerConfig.getContainerQueryDir(), arguments, profile, logConsumer);
+    }
+
+    /**
+     * Summarises an evaluator log into one JSON object per evaluated predicate, with its time and tuple counts.
+     */
+    public void summarizeEvaluatorLog(String containerName, String evaluatorLogPath, String summaryPathInContainer, ResourceProfile profile, Consumer<String> logConsumer) throws IOException, InterruptedException {
+        containerManager.executeCodeQLInContainer(containerName, dockerConfig.getContainerQueryDir(),
+                List.of("generate", "log-summary", "--format=predicates", evaluatorLogPath, summaryPathInContainer),
+                profile, logConsumer);
+    }
+
+    /**
+     * Packs a finished database into a compressed archive, without query results and temporary files.
+     */
+    public void bundleDatabase(String containerName, String dbPathInContainer, String bundlePathInContainer, ResourceProfile profile, Consumer<String> logConsumer) throws IOException, InterruptedException {
+        containerManager.executeCommandInContainer(containerName, null, List.of("rm", "-f", bundlePathInContainer), logConsumer);
+        containerManager.executeCodeQLInContainer(containerName, dockerConfig.getContainerQueryDir(),
+                List.of("database", "bundle", dbPathInContainer, "--output=" + bundlePathInContainer),
+                profile, logConsumer);
+    }
+
+    /**
+     * Unpacks a database archive into {@code <parentDir>/<name>}, replacing whatever is there.
+     */
+    public void unbundleDatabase(String containerName, String bundlePathInContainer, String parentDirInContainer, String name, ResourceProfile profile, Consumer<String> logConsumer) throws IOException, InterruptedException {
+        containerManager.executeCommandInContainer(containerName, null, List.of("rm", "-rf", parentDirInContainer + "/" + name), logConsumer);
+        containerManager.executeCodeQLInContainer(containerName, dockerConfig.getContainerQueryDir(),
+                List.of("database", "unbundle", bundlePathInContainer, "--target=" + parentDirInContainer, "--name=" + name),
+                profile, logConsumer);
+    }
+
+    private static List<String> codeScanningConfigArguments(String codeScanningConfigPath) {
+        return codeScanningConfigPath == null ? List.of() : List.of("--codescanning-config=" + codeScanningConfigPath);
+    }
+
+    private static List<String> options(String options) {
+        return options.isBlank() ? List.of() : List.of(options.trim().split("\\s+"));
+    }
+
+
+    private void recordQueryTiming(String line, Consumer<String> logConsumer) {
+        Matcher matcher = QUERY_DONE.matcher(line);
+        if (!matcher.find()) {
+            return;
+        }
+        String result = matcher.group(2);
+        String query = result.substring(result.lastIndexOf('/') + 1).replaceFirst("\\.bqrs$", ".ql");
+        Duration duration = parseDuration(matcher.group(1));
+        metrics.record("query " + query, duration, 0, true);
+        logConsumer.accept("⏱️ " + query + " evaluated in " + duration.toMillis() + " ms");
+    }
+
+    static Duration parseDuration(String text) {
+        Duration duration = Duration.ZERO;
+        Matcher part = DURATION_PART.matcher(text);
+        while (part.find()) {
+            double value = Double.parseDouble(part.group(1));
+            duration = duration.plusMillis(Math.round(switch (part.group(2)) {
+                case "h" -> value * 3_600_000;
+                case "m" -> value * 60_000;
+                case "s" -> value * 1_000;
+                default -> value;
+            }));
+        }
+        return duration;
     }
 
-    public void decodeResultsInContainer(String containerName, String bqrsPathInContainer, String jsonOutputPathInContainer, Consumer<String> logConsumer) throws IOException, InterruptedException {
-        logConsumer.accept("Decoding BQRS results from '" + bqrsPathInContainer + "' to JSON '" + jsonOutputPathInContainer + "' in container '" + containerName + "'...");
-        containerManager.executeCommandInContainer(
-                containerName,
-                null,
-                List.of(
-                        "codeql", "bqrs", "decode",
-                        "--format=json",
-                        "--output", jsonOutputPathInContainer,
-                        bqrsPathInContainer
-                ),
-                logConsumer
-        );
-        logConsumer.accept("✅ BQRS results decoded to JSON at " + jsonOutputPathInContainer + " in container " + containerName + ".");
+    /**
+     * Decodes at most {@code rows} rows of a result set into a JSON file. {@code startAt} is the byte offset the
+     * previous page reported as {@code next}, or {@code null} for the first page.
+     */
+    public void decodeResultPageInContainer(String containerName, String bqrsPathInContainer, String resultSet, int rows, Long startAt, String jsonOutputPathInContainer, ResourceProfile profile, Consumer<String> logConsumer) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>(List.of(
+                "bqrs", "decode",
+                "--format=json",
+                "--result-set=" + resultSet,
+                "--rows=" + rows));
+        if (startAt != null) {
+            command.add("--start-at=" + startAt);
+        }
+        command.addAll(List.of("--output", jsonOutputPathInContainer, bqrsPathInContainer));
+        containerManager.executeCodeQLInContainer(containerName, dockerConfig.getContainerQueryDir(), command, profile, logConsumer);
     }
 }
@@ -1,31 +1,35 @@
 package tsystems.janus.sourcecodeconverter.infrastructure.codeQL;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.stereotype.Component;
 import tsystems.janus.sourcecodeconverter.domain.model.CodeQLResult;
 import tsystems.janus.sourcecodeconverter.domain.model.ConversionUnit;
 import tsystems.janus.sourcecodeconverter.domain.model.ConversionTask;
 import tsystems.janus.sourcecodeconverter.domain.model.Sink;
 
-import java.io.File;
-import java.io.IOException;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Component
 public class CodeQLTraceProcessor {
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final FindingDeduplicator findingDeduplicator;
 
-    public List<ConversionTask> processResults(List<CodeQLResult> results) {
-        Map<String, List<CodeQLResult>> groupedByFile = results.stream()
-                .collect(Collectors.groupingBy(CodeQLResult::getPath));
-        List<ConversionTask> conversionTasks = new ArrayList<>();
+    public CodeQLTraceProcessor(FindingDeduplicator findingDeduplicator) {
+        this.findingDeduplicator = findingDeduplicator;
+    }
 
-        for (Map.Entry<String, List<CodeQLResult>> entry : groupedByFile.entrySet()) {
-            conversionTasks.add(createTaskFromFileGroup(entry.getKey(), entry.getValue()));
-        }
+    public List<ConversionTask> processResults(List<CodeQLResult> results) {
+        TaskGrouper grouper = newTaskGrouper();
+        results.forEach(grouper);
+        return grouper.finish();
+    }
 
-        return conversionTasks;
+    /**
+     * Groups findings into conversion tasks as they are streamed in, so grouping needs no separate pass over the
+     * results file.
+     */
+    public TaskGrouper newTaskGrouper() {
+        return new TaskGrouper();
     }
 
     private ConversionTask createTaskFromFileGroup(String filePath, List<CodeQLResult> fileResults) {
@@ -60,8 +64,25 @@ public class CodeQLTraceProcessor {
         return task;
     }
 
-    public List<CodeQLResult> loadResultsFromFile(File jsonFile) throws IOException {
-        return objectMapper.readValue(jsonFile,
-                objectMapper.getTypeFactory().constructCollectionType(List.class, CodeQLResult.class));
+    public class TaskGrouper implements Consumer<CodeQLResult> {
+        // Every finding reaches the prompts and patches once, under its source path
+        private final FindingDeduplicator.UniqueFindings uniqueFindings = findingDeduplicator.uniqueFindings();
+        private final Map<String, List<CodeQLResult>> groupedByFile = new HashMap<>();
+
+        @Override
+        public synchronized void accept(CodeQLResult result) {
+            if (uniqueFindings.add(result)) {
+                groupedByFile.computeIfAbsent(result.getPath(), path -> new ArrayList<>()).add(result);
+            }
+        }
+
+        public synchronized List<ConversionTask> finish() {
+            uniqueFindings.report();
+            List<ConversionTask> conversionTasks = new ArrayList<>();
+            for (Map.Entry<String, List<CodeQLResult>> entry : groupedByFile.entrySet()) {
+                conversionTasks.add(createTaskFromFileGroup(entry.getKey(), entry.getValue()));
+            }
+            return conversionTasks;
+        }
     }
 }
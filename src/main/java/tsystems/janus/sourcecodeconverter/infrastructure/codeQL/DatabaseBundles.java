@@ -0,0 +1,202 @@
+package tsystems.janus.sourcecodeconverter.infrastructure.codeQL;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import tsystems.janus.sourcecodeconverter.infrastructure.docker.CodeQLDockerConfig;
+import tsystems.janus.sourcecodeconverter.infrastructure.docker.ContainerLease;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Shares finished CodeQL databases between nodes as {@code codeql database bundle} archives in an artifact
+ * directory, e.g. a shared filesystem mount. Bundles are stored by the SHA-256 of their content under
+ * {@code sha256/}, and {@code refs/<database key>} names the bundle of a database key. A node that misses a key in
+ * its own database volume imports the bundle instead of extracting the database again, and a node that had to
+ * extract one exports it. Bundles are streamed through the workspace's output directory, which the container
+ * mounts, and their checksum is verified on the way in.
+ */
+@Component
+public class DatabaseBundles {
+
+    private static final String BLOBS_DIR = "sha256";
+    private static final String REFS_DIR = "refs";
+    private static final String BUNDLE_FILENAME = "database-bundle.zip";
+    private static final Pattern HASH_PATTERN = Pattern.compile("[0-9a-f]{64}");
+
+    private final CodeQLRunner codeQLRunner;
+    private final CodeQLDockerConfig dockerConfig;
+    private final Path bundleDir;
+
+    public DatabaseBundles(CodeQLRunner codeQLRunner,
+                           CodeQLDockerConfig dockerConfig,
+                           @Value("${codeql.db.bundle-dir:}") String bundleDir) {
+        this.codeQLRunner = codeQLRunner;
+        this.dockerConfig = dockerConfig;
+        this.bundleDir = bundleDir.isBlank() ? null : Paths.get(bundleDir).toAbsolutePath();
+        if (this.bundleDir != null) {
+            System.out.println("Sharing CodeQL database bundles through: " + this.bundleDir);
+        }
+    }
+
+    public boolean isEnabled() {
+        return bundleDir != null;
+    }
+
+    /**
+     * Wraps a database creator so it imports the key's bundle when one exists, and exports the database it built
+     * otherwise. Without an artifact directory the creator is returned as is.
+     */
+    public DatabaseCache.DatabaseCreator sharing(ContainerLease lease, String key, DatabaseCache.DatabaseCreator creator,
+                                                 Consumer<String> logConsumer) {
+        if (!isEnabled()) {
+            return creator;
+        }
+        return dbPath -> {
+            if (importBundle(lease, key, dbPath, logConsumer)) {
+                return;
+            }
+            creator.create(dbPath);
+            exportBundle(lease, key, dbPath, logConsumer);
+        };
+    }
+
+    private boolean importBundle(ContainerLease lease, String key, String dbPath, Consumer<String> logConsumer) throws IOException, InterruptedException {
+        long startedAt = System.currentTimeMillis();
+        Path staged = lease.getOutputDir().resolve(BUNDLE_FILENAME);
+        try {
+            if (!fetch(key, staged, logConsumer)) {
+                return false;
+            }
+
+            int lastSlash = dbPath.lastIndexOf('/');
+            codeQLRunner.unbundleDatabase(lease.getContainerName(), dockerConfig.getContainerOutputDir() + "/" + BUNDLE_FILENAME,
+                    dbPath.substring(0, lastSlash), dbPath.substring(lastSlash + 1), lease.getResourceProfile(), System.out::println);
+            logConsumer.accept("✅ Imported database bundle (" + Files.size(staged) / (1024 * 1024) + " MB) in "
+                    + (System.currentTimeMillis() - startedAt) + " ms");
+            return true;
+        } catch (IOException | RuntimeException e) {
+            logConsumer.accept("⚠️ Could not import database bundle for " + key + ": " + e.getMessage() + ". Creating the database.");
+            return false;
+        } finally {
+            Files.deleteIfExists(staged);
+        }
+    }
+
+    /**
+     * Publishes the database. A failed export only costs other nodes a rebuild, so it does not fail the job.
+     */
+    private void exportBundle(ContainerLease lease, String key, String dbPath, Consumer<String> logConsumer) throws InterruptedException {
+        Path staged = lease.getOutputDir().resolve(BUNDLE_FILENAME);
+        try {
+            logConsumer.accept("📤 Exporting CodeQL database " + key + " as a shared bundle...");
+            codeQLRunner.bundleDatabase(lease.getContainerName(), dbPath, dockerConfig.getContainerOutputDir() + "/" + BUNDLE_FILENAME,
+                    lease.getResourceProfile(), System.out::println);
+
+            String hash = publish(key, staged);
+            logConsumer.accept("✅ Exported database bundle " + hash.substring(0, 12) + " (" + Files.size(staged) / (1024 * 1024) + " MB)");
+        } catch (IOException | RuntimeException e) {
+            logConsumer.accept("⚠️ Could not export database bundle for " + key + ": " + e.getMessage());
+        } finally {
+            try {
+                Files.deleteIfExists(staged);
+            } catch (IOException e) {
+                System.err.println("⚠️ Could not delete " + staged + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Copies the key's bundle to the target. Returns {@code false} when there is none, or when its content does not
+     * match the checksum it is stored under.
+     */
+    boolean fetch(String key, Path target, Consumer<String> logConsumer) throws IOException {
+        Path ref = bundleDir.resolve(REFS_DIR).resolve(key);
+        if (!Files.exists(ref)) {
+            return false;
+        }
+        String hash = Files.readString(ref).trim();
+        Path blob = bundleDir.resolve(BLOBS_DIR).resolve(hash + ".zip");
+        if (!HASH_PATTERN.matcher(hash).matches() || !Files.exists(blob)) {
+            logConsumer.accept("⚠️ Database bundle reference " + key + " points to a missing bundle, creating the database.");
+            return false;
+        }
+
+        logConsumer.accept("📥 Importing shared CodeQL database bundle " + hash.substring(0, 12) + " for " + key + "...");
+        String actual = copyHashing(blob, target);
+        if (!actual.equals(hash)) {
+            logConsumer.accept("⚠️ Database bundle " + hash.substring(0, 12) + " is corrupt (checksum " + actual.substring(0, 12)
+                    + "), creating the database.");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Stores the bundle under its checksum and then points the key's reference at it. Both are moved into place,
+     * so a node reading concurrently sees either the previous reference or a complete bundle.
+     *
+     * @return the checksum of the bundle
+     */
+    String publish(String key, Path bundle) throws IOException {
+        Path blobs = Files.createDirectories(bundleDir.resolve(BLOBS_DIR));
+        Path refs = Files.createDirectories(bundleDir.resolve(REFS_DIR));
+        Path temp = blobs.resolve(BUNDLE_FILENAME + ".tmp-" + UUID.randomUUID());
+        String hash;
+        try {
+            hash = copyHashing(bundle, temp);
+            Path blob = blobs.resolve(hash + ".zip");
+            if (Files.exists(blob)) {
+                Files.delete(temp);
+            } else {
+                moveAtomically(temp, blob);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+
+        Path tempRef = refs.resolve(key + ".tmp-" + UUID.randomUUID());
+        Files.writeString(tempRef, hash, StandardCharsets.UTF_8);
+        moveAtomically(tempRef, refs.resolve(key));
+        return hash;
+    }
+
+    /**
+     * Streams the file to the target and returns the SHA-256 of what was copied.
+     */
+    static String copyHashing(Path source, Path target) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        try (InputStream in = new DigestInputStream(Files.newInputStream(source), digest);
+             OutputStream out = Files.newOutputStream(target)) {
+            in.transferTo(out);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
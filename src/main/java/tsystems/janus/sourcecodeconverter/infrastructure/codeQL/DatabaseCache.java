@@ -0,0 +1,281 @@
+package tsystems.janus.sourcecodeconverter.infrastructure.codeQL;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import tsystems.janus.sourcecodeconverter.infrastructure.docker.CodeQLDockerConfig;
+import tsystems.janus.sourcecodeconverter.infrastructure.docker.DockerContainerManager;
+import tsystems.janus.sourcecodeconverter.infrastructure.util.Uninterruptibles;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * CodeQL databases keyed by the source they were built from, one directory per key in the database volume that
+ * every pooled container mounts. A repeat analysis of the same revision reuses the database instead of running
+ * {@code codeql database create}. When the cache grows past its size limit, the least recently used databases
+ * that no job is reading are deleted.
+ */
+@Component
+public class DatabaseCache {
+
+    private static final String TEMP_SUFFIX = ".tmp-";
+    private static final Pattern KEY_PATTERN = Pattern.compile("[A-Za-z0-9._-]+");
+
+    private final DockerContainerManager containerManager;
+    private final CodeQLDockerConfig dockerConfig;
+    private final long maxSizeBytes;
+
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Map<String, Integer> inUse = new HashMap<>();
+    private final Map<String, ReentrantLock> creationLocks = new ConcurrentHashMap<>();
+    private boolean loaded;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public DatabaseCache(DockerContainerManager containerManager,
+                         CodeQLDockerConfig dockerConfig,
+                         @Value("${codeql.db.cache.max-size:20GB}") DataSize maxSize) {
+        this.containerManager = containerManager;
+        this.dockerConfig = dockerConfig;
+        this.maxSizeBytes = maxSize.toBytes();
+    }
+
+    @FunctionalInterface
+    public interface DatabaseCreator {
+        void create(String dbPathInContainer) throws IOException, InterruptedException;
+    }
+
+    /**
+     * Returns the database for the key, building it with the creator on a miss. The database is protected from
+     * eviction until the returned handle is closed. Queries write their results into the database directory, so
+     * a handle is exclusive: concurrent jobs for the same key wait for a single build and then take turns.
+     */
+    public Handle open(String containerName, String key, DatabaseCreator creator, Consumer<String> logConsumer) throws IOException, InterruptedException {
+        String dbPath = pathOf(key);
+        loadIndex(containerName);
+
+        ReentrantLock lock = creationLocks.computeIfAbsent(key, k -> new ReentrantLock());
+        lock.lockInterruptibly();
+        Handle handle = null;
+        try {
+            if (markHit(key)) {
+                handle = new Handle(key, dbPath, true, lock);
+                // The modification time carries the last use across restarts
+                containerManager.executeCommandInContainer(containerName, null, List.of("touch", dbPath), line -> {
+                });
+                logConsumer.accept("✅ Reusing cached CodeQL database " + key);
+                return handle;
+            }
+
+            logConsumer.accept("📦 No cached CodeQL database for " + key + ". Creating it...");
+            String tempPath = dbPath + TEMP_SUFFIX + containerName;
+            try {
+                creator.create(tempPath);
+                containerManager.executeCommandInContainer(containerName, null,
+                        List.of("bash", "-c", "rm -rf " + dbPath + " && mv " + tempPath + " " + dbPath), logConsumer);
+            } catch (IOException | InterruptedException | RuntimeException e) {
+                deleteQuietly(containerName, tempPath);
+                throw e;
+            }
+
+            long size = sizeOf(containerName, dbPath);
+            markCreated(key, size);
+            handle = new Handle(key, dbPath, false, lock);
+            logConsumer.accept("✅ CodeQL database cached as " + key + " (" + size / (1024 * 1024) + " MB)");
+            evictIfNeeded(containerName);
+            return handle;
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            if (handle != null) {
+                handle.close();
+            }
+            throw e;
+        } finally {
+            if (handle == null) {
+                lock.unlock();
+            }
+        }
+    }
+
+    public boolean contains(String containerName, String key) throws IOException, InterruptedException {
+        loadIndex(containerName);
+        synchronized (this) {
+            return entries.containsKey(key);
+        }
+    }
+
+    public synchronized CacheStats stats() {
+        long sizeBytes = entries.values().stream().mapToLong(Entry::sizeBytes).sum();
+        return new CacheStats(hits, misses, evictions, entries.size(), sizeBytes, maxSizeBytes);
+    }
+
+    private String pathOf(String key) {
+        if (!KEY_PATTERN.matcher(key).matches()) {
+            throw new IllegalArgumentException("Invalid database cache key: " + key);
+        }
+        return dockerConfig.getContainerDbPath() + "/" + key;
+    }
+
+    /**
+     * Rebuilds the index from the volume the first time the cache is used, so databases survive restarts. The
+     * directory modification time is the last use. Leftovers from interrupted builds, and a database stored
+     * directly in the volume root by older versions, are removed.
+     */
+    private void loadIndex(String containerName) throws IOException, InterruptedException {
+        synchronized (this) {
+            if (loaded) {
+                return;
+            }
+        }
+
+        String root = dockerConfig.getContainerDbPath();
+        String listing = containerManager.executeCommandInContainerAndCaptureOutput(containerName, null, List.of("bash", "-c",
+                "if [ -f " + root + "/codeql-database.yml ]; then find " + root + " -mindepth 1 -delete; fi; "
+                        + "find " + root + " -mindepth 1 -maxdepth 1 -name '*" + TEMP_SUFFIX + "*' -exec rm -rf {} + ; "
+                        + "cd " + root + " && for d in */; do [ -d \"$d\" ] || continue; d=${d%/}; "
+                        + "printf '%s %s %s\\n' \"$d\" \"$(stat -c %Y \"$d\")\" \"$(du -sb \"$d\" | cut -f1)\"; done"));
+
+        synchronized (this) {
+            if (loaded) {
+                return;
+            }
+            for (String line : listing.split("\n")) {
+                String[] parts = line.trim().split(" ");
+                if (parts.length == 3 && KEY_PATTERN.matcher(parts[0]).matches()) {
+                    entries.put(parts[0], new Entry(Long.parseLong(parts[2]), Long.parseLong(parts[1]) * 1000));
+                }
+            }
+            loaded = true;
+        }
+        System.out.println("CodeQL database cache holds " + entries.size() + " databases.");
+    }
+
+    private synchronized boolean markHit(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return false;
+        }
+        hits++;
+        entries.put(key, new Entry(entry.sizeBytes(), System.currentTimeMillis()));
+        inUse.merge(key, 1, Integer::sum);
+        return true;
+    }
+
+    private synchronized void markCreated(String key, long sizeBytes) {
+        entries.put(key, new Entry(sizeBytes, System.currentTimeMillis()));
+        inUse.merge(key, 1, Integer::sum);
+    }
+
+    private synchronized void markReleased(String key) {
+        inUse.computeIfPresent(key, (k, count) -> count > 1 ? count - 1 : null);
+    }
+
+    private void evictIfNeeded(String containerName) {
+        List<String> victims = new ArrayList<>();
+        synchronized (this) {
+            long total = entries.values().stream().mapToLong(Entry::sizeBytes).sum();
+            List<Map.Entry<String, Entry>> byLastUse = entries.entrySet().stream()
+                    .filter(entry -> !inUse.containsKey(entry.getKey()))
+                    .sorted(Comparator.comparingLong(entry -> entry.getValue().lastUsed()))
+                    .toList();
+            for (Map.Entry<String, Entry> candidate : byLastUse) {
+                if (total <= maxSizeBytes) {
+                    break;
+                }
+                victims.add(candidate.getKey());
+                total -= candidate.getValue().sizeBytes();
+                entries.remove(candidate.getKey());
+                evictions++;
+            }
+        }
+
+        for (String key : victims) {
+            // A job holding this key is rebuilding it, and replaces the old directory itself
+            ReentrantLock lock = creationLocks.computeIfAbsent(key, k -> new ReentrantLock());
+            if (!lock.tryLock()) {
+                continue;
+            }
+            try {
+                synchronized (this) {
+                    if (entries.containsKey(key)) {
+                        continue;
+                    }
+                }
+                System.out.println("🧹 Evicting cached CodeQL database " + key);
+                deleteQuietly(containerName, pathOf(key));
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private long sizeOf(String containerName, String path) throws IOException, InterruptedException {
+        String output = containerManager.executeCommandInContainerAndCaptureOutput(containerName, null,
+                List.of("bash", "-c", "du -sb " + path + " | cut -f1"));
+        return Long.parseLong(output.trim());
+    }
+
+    private void deleteQuietly(String containerName, String path) {
+        // Runs after a cancellation too, when the job's thread is already interrupted
+        Uninterruptibles.run("delete-" + containerName, () -> {
+            try {
+                containerManager.executeCommandInContainer(containerName, null, List.of("rm", "-rf", path), line -> {
+                });
+            } catch (Exception e) {
+                System.err.println("⚠️ Could not delete " + path + " in " + containerName + ": " + e.getMessage());
+            }
+        });
+    }
+
+    public class Handle implements AutoCloseable {
+        private final String key;
+        private final String path;
+        private final boolean hit;
+        private final ReentrantLock lock;
+        private boolean closed;
+
+        private Handle(String key, String path, boolean hit, ReentrantLock lock) {
+            this.key = key;
+            this.path = path;
+            this.hit = hit;
+            this.lock = lock;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public boolean isHit() {
+            return hit;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                markReleased(key);
+                lock.unlock();
+            }
+        }
+    }
+
+    public record CacheStats(long hits, long misses, long evictions, int databases, long sizeBytes, long maxSizeBytes) {
+    }
+
+    private record Entry(long sizeBytes, long lastUsed) {
+    }
+}
@@ -0,0 +1,49 @@
+package tsystems.janus.sourcecodeconverter.infrastructure.codeQL;
+
+import java.util.Arrays;
+
+/**
+ * How {@code codeql database create} extracts the Java sources of a job. Traced builds see exactly what the
+ * compiler sees but need a working, usually online, build; buildless extraction reads the sources directly and is
+ * much faster, at the cost of less precise types and therefore possibly fewer or different findings.
+ */
+public enum ExtractionMode {
+
+    AUTOBUILD("autobuild", "Traced build chosen by CodeQL autobuild (Maven/Gradle)", ""),
+    NONE("none", "Buildless extraction of the sources, nothing is compiled", " --build-mode=none"),
+    CUSTOM_BUILD("custom-build", "Traced build running /opt/custom_build.sh (mvn install over every pom, IBL project)",
+            " --command=/opt/custom_build.sh");
+
+    private final String id;
+    private final String description;
+    private final String createOptions;
+
+    ExtractionMode(String id, String description, String createOptions) {
+        this.id = id;
+        this.description = description;
+        this.createOptions = createOptions;
+    }
+
+    public String id() {
+        return id;
+    }
+
+    public String description() {
+        return description;
+    }
+
+    /**
+     * The options {@code codeql database create} runs with in this mode, with a leading space.
+     */
+    public String createOptions() {
+        return createOptions;
+    }
+
+    public static ExtractionMode fromId(String id) {
+        return Arrays.stream(values())
+                .filter(mode -> mode.id.equalsIgnoreCase(id.trim()))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown extraction mode '" + id + "'. Available: "
+                        + Arrays.stream(values()).map(ExtractionMode::id).toList()));
+    }
+}
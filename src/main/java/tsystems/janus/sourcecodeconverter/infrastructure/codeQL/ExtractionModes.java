@@ -0,0 +1,100 @@
+package tsystems.janus.sourcecodeconverter.infrastructure.codeQL;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolves the extraction mode of a job and keeps per-mode figures of database creation time, query time and
+ * finding count, so the cost and the yield of buildless extraction can be compared with traced builds.
+ */
+@Component
+public class ExtractionModes {
+
+    private final ExtractionMode defaultMode;
+    private final Map<ExtractionMode, Accumulator> accumulators = new EnumMap<>(ExtractionMode.class);
+
+    public ExtractionModes(@Value("${codeql.extraction.default-mode:autobuild}") String defaultMode) {
+        this.defaultMode = ExtractionMode.fromId(defaultMode);
+        for (ExtractionMode mode : ExtractionMode.values()) {
+            accumulators.put(mode, new Accumulator());
+        }
+    }
+
+    /**
+     * Resolves the mode for a job, falling back to the default one when no name is given.
+     */
+    public ExtractionMode resolve(String name) {
+        return name == null || name.isBlank() ? defaultMode : ExtractionMode.fromId(name);
+    }
+
+    public ExtractionMode getDefault() {
+        return defaultMode;
+    }
+
+    public void recordDatabase(ExtractionMode mode, Duration duration) {
+        accumulators.get(mode).addDatabase(duration);
+    }
+
+    public void recordQueries(ExtractionMode mode, Duration duration) {
+        accumulators.get(mode).addQueries(duration);
+    }
+
+    public void recordFindings(ExtractionMode mode, int findings) {
+        accumulators.get(mode).addFindings(findings);
+    }
+
+    public List<ModeStats> snapshot() {
+        return Arrays.stream(ExtractionMode.values())
+                .map(mode -> accumulators.get(mode).toStats(mode, mode == defaultMode))
+                .toList();
+    }
+
+    public record ModeStats(String mode, String description, boolean isDefault,
+                            long databaseBuilds, long avgDatabaseMillis,
+                            long queryRuns, long avgQueryMillis,
+                            long analyses, long avgFindings, int lastFindings) {
+    }
+
+    private static class Accumulator {
+        private long databaseBuilds;
+        private long databaseMillis;
+        private long queryRuns;
+        private long queryMillis;
+        private long analyses;
+        private long findings;
+        private int lastFindings;
+
+        synchronized void addDatabase(Duration duration) {
+            databaseBuilds++;
+            databaseMillis += duration.toMillis();
+        }
+
+        synchronized void addQueries(Duration duration) {
+            queryRuns++;
+            queryMillis += duration.toMillis();
+        }
+
+        synchronized void addFindings(int count) {
+            analyses++;
+            findings += count;
+            lastFindings = count;
+        }
+
+        synchronized ModeStats toStats(ExtractionMode mode, boolean isDefault) {
+            return new ModeStats(mode.id(), mode.description(), isDefault,
+                    databaseBuilds, average(databaseMillis, databaseBuilds),
+                    queryRuns, average(queryMillis, queryRuns),
+                    analyses, average(findings, analyses), lastFindings);
+        }
+
+        private static long average(long total, long count) {
+            return count == 0 ? 0 : total / count;
+        }
+    }
+}
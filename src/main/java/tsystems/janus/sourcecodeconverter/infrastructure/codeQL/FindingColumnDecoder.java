@@ -0,0 +1,162 @@
+package tsystems.janus.sourcecodeconverter.infrastructure.codeQL;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+import tsystems.janus.sourcecodeconverter.domain.model.CodeQLResult;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Maps the rows of a decoded result set straight into {@link CodeQLResult}s. The queries select one typed column
+ * per field, named after the field ({@code path}, {@code startLine}, ..., {@code type}), so a row is read value by
+ * value without an intermediate JSON string. A row that does not fit the columns fails the decoding instead of
+ * being dropped.
+ */
+@Component
+public class FindingColumnDecoder {
+
+    private static final Set<String> REQUIRED_COLUMNS = Set.of("path", "startLine", "startColumn", "endLine", "endColumn", "code");
+
+    private final JsonFactory jsonFactory;
+
+    public FindingColumnDecoder(ObjectMapper objectMapper) {
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    /**
+     * Reads a result set, or one page of it, in the {@code bqrs decode --format=json} layout.
+     *
+     * @return the number of rows decoded
+     */
+    public int decode(File rawJsonFile, Consumer<CodeQLResult> consumer) throws IOException {
+        List<String> columns = null;
+        int rows = -1;
+        try (JsonParser parser = jsonFactory.createParser(rawJsonFile)) {
+            while (parser.nextToken() != null) {
+                if (parser.currentToken() != JsonToken.FIELD_NAME) {
+                    continue;
+                }
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("columns".equals(field) && value == JsonToken.START_ARRAY) {
+                    columns = readColumns(parser, rawJsonFile);
+                } else if ("tuples".equals(field) && value == JsonToken.START_ARRAY) {
+                    if (columns == null) {
+                        throw new IllegalArgumentException("Result columns must precede the tuples in " + rawJsonFile);
+                    }
+                    rows = readRows(parser, columns, consumer, rawJsonFile);
+                } else if (value == JsonToken.START_ARRAY) {
+                    parser.skipChildren();
+                }
+            }
+        }
+        if (rows < 0) {
+            throw new IllegalArgumentException("Tuples array not found in CodeQL output " + rawJsonFile);
+        }
+        return rows;
+    }
+
+    private static List<String> readColumns(JsonParser parser, File source) throws IOException {
+        List<String> columns = new ArrayList<>();
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            String name = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                if ("name".equals(field)) {
+                    name = parser.getText();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            columns.add(name);
+        }
+        List<String> missing = REQUIRED_COLUMNS.stream().filter(column -> !columns.contains(column)).sorted().toList();
+        if (!missing.isEmpty()) {
+            throw new IllegalArgumentException("Result columns " + missing + " missing in " + source
+                    + " (found " + columns + "). The queries must select the finding fields as named columns.");
+        }
+        return columns;
+    }
+
+    private static int readRows(JsonParser parser, List<String> columns, Consumer<CodeQLResult> consumer, File source) throws IOException {
+        int rows = 0;
+        while (parser.nextToken() == JsonToken.START_ARRAY) {
+            CodeQLResult result = new CodeQLResult();
+            int column = 0;
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (column >= columns.size()) {
+                    throw new IllegalArgumentException("Row " + rows + " of " + source + " has more values than the "
+                            + columns.size() + " result columns");
+                }
+                set(result, columns.get(column++), parser, rows, source);
+            }
+            if (column != columns.size()) {
+                throw new IllegalArgumentException("Row " + rows + " of " + source + " has " + column
+                        + " values for " + columns.size() + " result columns");
+            }
+            result.setId(result.getPath() + ":" + result.getStartLine() + ":" + result.getStartColumn() + ":"
+                    + result.getEndLine() + ":" + result.getEndColumn());
+            consumer.accept(result);
+            rows++;
+        }
+        return rows;
+    }
+
+    private static void set(CodeQLResult result, String column, JsonParser parser, int row, File source) throws IOException {
+        if (column == null) {
+            parser.skipChildren();
+            return;
+        }
+        switch (column) {
+            case "path" -> result.setPath(text(parser));
+            case "startLine" -> result.setStartLine(number(parser, column, row, source));
+            case "startColumn" -> result.setStartColumn(number(parser, column, row, source));
+            case "endLine" -> result.setEndLine(number(parser, column, row, source));
+            case "endColumn" -> result.setEndColumn(number(parser, column, row, source));
+            case "methodName" -> result.setMethodName(text(parser));
+            case "className" -> result.setClassName(text(parser));
+            case "code" -> result.setCode(text(parser));
+            case "sourceExpressionType" -> result.setSourceExpressionType(text(parser));
+            case "type" -> result.setType(text(parser));
+            case "callerPath" -> result.setCallerPath(text(parser));
+            default -> parser.skipChildren();
+        }
+    }
+
+    /**
+     * A string column, or the label of an entity column.
+     */
+    private static String text(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            return parser.getValueAsString();
+        }
+        String label = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            if ("label".equals(field)) {
+                label = parser.getText();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return label;
+    }
+
+    private static int number(JsonParser parser, String column, int row, File source) throws IOException {
+        if (parser.currentToken() != JsonToken.VALUE_NUMBER_INT) {
+            throw new IllegalArgumentException("Column '" + column + "' of row " + row + " in " + source
+                    + " is not an integer: " + parser.getText());
+        }
+        return parser.getIntValue();
+    }
+}
@@ -0,0 +1,118 @@
+package tsystems.janus.sourcecodeconverter.infrastructure.codeQL;
+
+import org.springframework.stereotype.Component;
+import tsystems.janus.sourcecodeconverter.domain.model.CodeQLResult;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Collapses findings that describe the same code. A finding is identified by its canonical source path, its
+ * line/column range and a hash of its code, so the copy of a resource under {@code target/classes} and a finding
+ * reported under several ids count once.
+ */
+@Component
+public class FindingDeduplicator {
+
+    private static final String BUILD_RESOURCES_DIR = "/target/classes/";
+    private static final String SOURCE_RESOURCES_DIR = "/src/main/resources/";
+    private static final int CODE_HASH_LENGTH = 16;
+
+    /**
+     * Keeps the first finding of every key, with its path and id rewritten to the canonical source path.
+     */
+    public Result deduplicate(List<CodeQLResult> findings) {
+        UniqueFindings uniqueFindings = uniqueFindings();
+        List<CodeQLResult> unique = new ArrayList<>();
+        for (CodeQLResult finding : findings) {
+            if (uniqueFindings.add(finding)) {
+                unique.add(finding);
+            }
+        }
+        uniqueFindings.report();
+        return new Result(unique, uniqueFindings.removed());
+    }
+
+    /**
+     * Starts a deduplication that is fed one finding at a time, for findings streamed from a results file.
+     */
+    public UniqueFindings uniqueFindings() {
+        return new UniqueFindings();
+    }
+
+    public String keyOf(String path, int startLine, int startColumn, int endLine, int endColumn, String code) {
+        return canonicalPath(path) + "|" + startLine + ":" + startColumn + "-" + endLine + ":" + endColumn + "|" + codeHash(code);
+    }
+
+    /**
+     * The source file a reported path stands for: resources copied by the build are mapped back to
+     * {@code src/main/resources}.
+     */
+    public static String canonicalPath(String path) {
+        if (path == null) {
+            return null;
+        }
+        String normalized = path.replace('\\', '/');
+        return normalized.contains(BUILD_RESOURCES_DIR)
+                ? normalized.replace(BUILD_RESOURCES_DIR, SOURCE_RESOURCES_DIR)
+                : normalized;
+    }
+
+    private static String codeHash(String code) {
+        if (code == null) {
+            return "";
+        }
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256")
+                    .digest(code.replace("\r\n", "\n").strip().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash).substring(0, CODE_HASH_LENGTH);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    public class UniqueFindings {
+        private final Set<String> seen = new HashSet<>();
+        private int removed;
+
+        /**
+         * Rewrites the finding's path and id to the canonical source path and tells whether it is the first
+         * finding of its key.
+         */
+        public boolean add(CodeQLResult finding) {
+            String path = canonicalPath(finding.getPath());
+            if (!seen.add(keyOf(path, finding.getStartLine(), finding.getStartColumn(), finding.getEndLine(),
+                    finding.getEndColumn(), finding.getCode()))) {
+                removed++;
+                return false;
+            }
+            finding.setPath(path);
+            finding.setId(path + ":" + finding.getStartLine() + ":" + finding.getStartColumn() + ":"
+                    + finding.getEndLine() + ":" + finding.getEndColumn());
+            return true;
+        }
+
+        public int removed() {
+            return removed;
+        }
+
+        void report() {
+            if (removed > 0) {
+                System.out.println("🧹 Removed " + removed + " duplicate findings, " + seen.size() + " unique findings left.");
+            }
+        }
+    }
+
+    /**
+     * @param findings the unique findings, in their original order
+     * @param removed  how many duplicates were dropped
+     */
+    public record Result(List<CodeQLResult> findings, int removed) {
+    }
+}
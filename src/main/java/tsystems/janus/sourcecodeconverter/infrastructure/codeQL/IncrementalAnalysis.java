@@ -0,0 +1,329 @@
+package tsystems.janus.sourcecodeconverter.infrastructure.codeQL;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.treewalk.CanonicalTreeParser;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import tsystems.janus.sourcecodeconverter.infrastructure.docker.CodeQLDockerConfig;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Re-analyses only the files that changed since the last analysed revision of a repository. The changed Java
+ * files are extracted without a build into a small database, and their findings replace the retained findings of
+ * those files in the last {@code results.json}. Changes to build files or XML statement files, or changes that
+ * touch too large a share of the sources, fall back to a full analysis.
+ * <p>
+ * The partial database only holds the changed files, so a flow from a changed file into a sink in an untouched
+ * file is not seen until the next full analysis.
+ */
+@Component
+public class IncrementalAnalysis {
+
+    public static final String SOURCES_DIR = "incremental-src";
+    public static final String DATABASE_DIR = "incremental-db";
+    private static final String STATE_COMMIT_FILE = "commit";
+    private static final String STATE_RESULTS_FILE = "results.json";
+    private static final Set<String> BUILD_FILES = Set.of("pom.xml", "build.gradle", "build.gradle.kts",
+            "settings.gradle", "settings.gradle.kts");
+
+    private final ObjectMapper objectMapper;
+    private final CodeQLDockerConfig dockerConfig;
+    private final double maxChangedRatio;
+    private final Path stateDir;
+
+    public IncrementalAnalysis(ObjectMapper objectMapper,
+                               CodeQLDockerConfig dockerConfig,
+                               @Value("${codeql.incremental.max-changed-ratio:0.2}") double maxChangedRatio,
+                               @Value("${codeql.incremental.state-dir:${java.io.tmpdir}/source-code-converter/history}") String stateDir) {
+        this.objectMapper = objectMapper;
+        this.dockerConfig = dockerConfig;
+        this.maxChangedRatio = maxChangedRatio;
+        this.stateDir = Paths.get(stateDir).toAbsolutePath();
+    }
+
+    /**
+     * The commit checked out in the project directory, or {@code null} when it is not a git checkout.
+     */
+    public String headCommit(File projectDir) {
+        if (!new File(projectDir, ".git").isDirectory()) {
+            return null;
+        }
+        try (Git git = Git.open(projectDir)) {
+            ObjectId head = git.getRepository().resolve("HEAD");
+            return head == null ? null : head.name();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Works out what changed in the scope since the last analysed revision of the project. Empty means a full
+     * analysis is needed.
+     */
+    public Optional<Plan> plan(String projectId, String headCommit, File projectDir, AnalysisScope scope, Consumer<String> logConsumer) throws IOException {
+        Path state = stateDirOf(projectId);
+        Path commitFile = state.resolve(STATE_COMMIT_FILE);
+        Path resultsFile = state.resolve(STATE_RESULTS_FILE);
+        if (headCommit == null || !Files.exists(commitFile) || !Files.exists(resultsFile)) {
+            logConsumer.accept("🔁 No previous analysis of this repository, running a full analysis.");
+            return Optional.empty();
+        }
+
+        String baseCommit = Files.readString(commitFile).trim();
+        Set<String> changed = new TreeSet<>();
+        Set<String> deleted = new TreeSet<>();
+        int sourceFiles;
+        try (Git git = Git.open(projectDir); ObjectReader reader = git.getRepository().newObjectReader()) {
+            Repository repository = git.getRepository();
+            ObjectId baseTree = repository.resolve(baseCommit + "^{tree}");
+            ObjectId headTree = repository.resolve(headCommit + "^{tree}");
+            if (baseTree == null || headTree == null) {
+                logConsumer.accept("🔁 Last analysed commit " + baseCommit + " is not in this clone, running a full analysis.");
+                return Optional.empty();
+            }
+
+            CanonicalTreeParser oldTree = new CanonicalTreeParser();
+            oldTree.reset(reader, baseTree);
+            CanonicalTreeParser newTree = new CanonicalTreeParser();
+            newTree.reset(reader, headTree);
+            for (DiffEntry diff : git.diff().setOldTree(oldTree).setNewTree(newTree).setShowNameAndStatusOnly(true).call()) {
+                if (diff.getChangeType() != DiffEntry.ChangeType.ADD && diff.getChangeType() != DiffEntry.ChangeType.COPY) {
+                    deleted.add(diff.getOldPath());
+                }
+                if (diff.getChangeType() != DiffEntry.ChangeType.DELETE) {
+                    changed.add(diff.getNewPath());
+                    deleted.remove(diff.getNewPath());
+                }
+            }
+            sourceFiles = countSourceFiles(repository, headTree);
+        } catch (IOException | GitAPIException e) {
+            logConsumer.accept("🔁 Could not diff against " + baseCommit + " (" + e.getMessage() + "), running a full analysis.");
+            return Optional.empty();
+        }
+
+        Set<String> touched = new TreeSet<>(changed);
+        touched.addAll(deleted);
+        if (touched.stream().anyMatch(path -> BUILD_FILES.contains(fileName(path)))) {
+            logConsumer.accept("🔁 Build files changed since " + baseCommit + ", running a full analysis.");
+            return Optional.empty();
+        }
+        touched.removeIf(path -> !scope.includes(path));
+        changed.removeIf(path -> !scope.includes(path));
+        deleted.removeIf(path -> !scope.includes(path));
+        if (touched.stream().anyMatch(path -> path.endsWith(".xml"))) {
+            logConsumer.accept("🔁 XML files changed since " + baseCommit + ", running a full analysis.");
+            return Optional.empty();
+        }
+
+        changed.removeIf(path -> !path.endsWith(".java"));
+        deleted.removeIf(path -> !path.endsWith(".java"));
+        if (sourceFiles > 0 && (double) (changed.size() + deleted.size()) / sourceFiles > maxChangedRatio) {
+            logConsumer.accept("🔁 " + (changed.size() + deleted.size()) + " of " + sourceFiles
+                    + " source files changed, running a full analysis.");
+            return Optional.empty();
+        }
+
+        logConsumer.accept("⚡ Incremental analysis against " + baseCommit + ": " + changed.size() + " changed, "
+                + deleted.size() + " deleted source files.");
+        return Optional.of(new Plan(baseCommit, headCommit, changed, deleted, resultsFile));
+    }
+
+    /**
+     * Copies the changed sources and every XML file, which the query resolves SQL statement names against, in
+     * the scope into a separate source root inside the workspace's output directory.
+     */
+    public void stageSources(Plan plan, Path projectDir, Path outputDir, AnalysisScope scope) throws IOException {
+        Path sourcesDir = outputDir.resolve(SOURCES_DIR);
+        FileUtils.deleteQuietly(sourcesDir.toFile());
+        for (String path : plan.changed()) {
+            copy(projectDir, sourcesDir, path);
+        }
+        List<String> xmlFiles;
+        try (Stream<Path> walk = Files.walk(projectDir)) {
+            xmlFiles = walk.filter(Files::isRegularFile)
+                    .map(file -> projectDir.relativize(file).toString().replace('\\', '/'))
+                    .filter(relative -> relative.endsWith(".xml") && !relative.startsWith(".git/") && scope.includes(relative))
+                    .toList();
+        }
+        for (String relative : xmlFiles) {
+            copy(projectDir, sourcesDir, relative);
+        }
+    }
+
+    public String containerSourcesDir() {
+        return dockerConfig.getContainerOutputDir() + "/" + SOURCES_DIR;
+    }
+
+    public String containerDatabaseDir() {
+        return dockerConfig.getContainerOutputDir() + "/" + DATABASE_DIR;
+    }
+
+    /**
+     * Combines the findings of the partial analysis with the retained findings of every untouched file. A retained
+     * finding is dropped when its file, or the Java file it was reached from, changed or was deleted. Without
+     * partial results (only deletions), the retained findings of the remaining files are kept. Both files are
+     * streamed, so only the current finding and the ids of the partial findings are held in memory.
+     */
+    public File merge(Plan plan, File partialResults, File outputFile) throws IOException {
+        String projectPrefix = dockerConfig.getContainerProjectPath() + "/";
+        String sourcesPrefix = containerSourcesDir() + "/";
+        JsonFactory jsonFactory = objectMapper.getFactory();
+
+        // A partial finding replaces the retained finding with the same id
+        Set<String> freshIds = new HashSet<>();
+        if (partialResults != null) {
+            streamFindings(jsonFactory, partialResults, finding ->
+                    freshIds.add(rebase(finding.path("id").asText(), sourcesPrefix, projectPrefix)));
+        }
+
+        int[] counts = new int[2];
+        try (JsonGenerator generator = jsonFactory.createGenerator(outputFile, JsonEncoding.UTF8)) {
+            generator.useDefaultPrettyPrinter();
+            generator.writeStartArray();
+            streamFindings(jsonFactory, plan.retainedResults().toFile(), finding -> {
+                if (!touches(plan, finding.path("path").asText(null), projectPrefix)
+                        && !touches(plan, finding.path("callerPath").asText(null), projectPrefix)
+                        && !freshIds.contains(finding.path("id").asText())) {
+                    generator.writeTree(finding);
+                    counts[0]++;
+                }
+            });
+            if (partialResults != null) {
+                streamFindings(jsonFactory, partialResults, finding -> {
+                    String id = rebase(finding.path("id").asText(), sourcesPrefix, projectPrefix);
+                    if (!freshIds.remove(id)) {
+                        return;
+                    }
+                    finding.put("id", id);
+                    finding.put("path", rebase(finding.path("path").asText(), sourcesPrefix, projectPrefix));
+                    if (finding.hasNonNull("callerPath")) {
+                        finding.put("callerPath", rebase(finding.path("callerPath").asText(), sourcesPrefix, projectPrefix));
+                    }
+                    generator.writeTree(finding);
+                    counts[1]++;
+                });
+            }
+            generator.writeEndArray();
+        }
+        System.out.println("Merged " + counts[1] + " new findings with " + counts[0] + " retained findings into " + outputFile);
+        return outputFile;
+    }
+
+    private interface FindingHandler {
+        void accept(ObjectNode finding) throws IOException;
+    }
+
+    private static void streamFindings(JsonFactory jsonFactory, File resultsFile, FindingHandler handler) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(resultsFile)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IllegalArgumentException("Results file must hold a JSON array: " + resultsFile.getAbsolutePath());
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                handler.accept(parser.readValueAsTree());
+            }
+        }
+    }
+
+    private static boolean touches(Plan plan, String containerPath, String projectPrefix) {
+        if (containerPath == null || !containerPath.startsWith(projectPrefix)) {
+            return false;
+        }
+        String relative = containerPath.substring(projectPrefix.length());
+        return plan.changed().contains(relative) || plan.deleted().contains(relative);
+    }
+
+    /**
+     * Moves a path, or an id that starts with one, from one root to the other. Only a leading root is replaced.
+     */
+    private static String rebase(String value, String fromPrefix, String toPrefix) {
+        return value.startsWith(fromPrefix) ? toPrefix + value.substring(fromPrefix.length()) : value;
+    }
+
+    /**
+     * Keeps the results of a finished analysis as the base for the next incremental run of the project.
+     */
+    public void record(String projectId, String headCommit, File finalResults) throws IOException {
+        if (projectId == null || headCommit == null) {
+            return;
+        }
+        Path state = Files.createDirectories(stateDirOf(projectId));
+        Files.copy(finalResults.toPath(), state.resolve(STATE_RESULTS_FILE), StandardCopyOption.REPLACE_EXISTING);
+        Files.writeString(state.resolve(STATE_COMMIT_FILE), headCommit);
+    }
+
+    private Path stateDirOf(String projectId) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(projectId.getBytes(StandardCharsets.UTF_8));
+            return stateDir.resolve(HexFormat.of().formatHex(hash).substring(0, 16));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static int countSourceFiles(Repository repository, ObjectId tree) throws IOException {
+        int count = 0;
+        try (TreeWalk walk = new TreeWalk(repository)) {
+            walk.addTree(tree);
+            walk.setRecursive(true);
+            while (walk.next()) {
+                if (walk.getPathString().endsWith(".java")) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static void copy(Path fromRoot, Path toRoot, String relativePath) throws IOException {
+        Path target = toRoot.resolve(relativePath);
+        Files.createDirectories(target.getParent());
+        Files.copy(fromRoot.resolve(relativePath), target, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static String fileName(String path) {
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * @param changed         added or modified Java files, relative to the project root
+     * @param deleted         removed Java files, relative to the project root
+     * @param retainedResults the {@code results.json} of the base revision
+     */
+    public record Plan(String baseCommit, String headCommit, Set<String> changed, Set<String> deleted, Path retainedResults) {
+
+        public boolean hasChanges() {
+            return !changed.isEmpty() || !deleted.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package tsystems.janus.sourcecodeconverter.infrastructure.codeQL;
+
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Finds the Maven modules of a project that hold code: every {@code pom.xml} in the scope whose packaging is not
+ * {@code pom} and whose directory contains Java sources the scope includes. Aggregator poms are skipped, their children are found on
+ * their own.
+ */
+@Component
+public class MavenModules {
+
+    private static final Pattern POM_PACKAGING = Pattern.compile("<packaging>\\s*pom\\s*</packaging>");
+
+    /**
+     * @return module directories relative to the project root ({@code ""} for the root), largest first
+     */
+    public List<String> detect(Path projectDir, AnalysisScope scope) throws IOException {
+        List<Path> poms;
+        try (Stream<Path> walk = Files.walk(projectDir)) {
+            poms = walk.filter(path -> path.getFileName().toString().equals("pom.xml"))
+                    .filter(path -> !relative(projectDir, path).startsWith(".git/"))
+                    .filter(path -> !scope.excludes(relative(projectDir, path)))
+                    .toList();
+        }
+
+        Map<String, Long> sourceFiles = new HashMap<>();
+        for (Path pom : poms) {
+            if (POM_PACKAGING.matcher(Files.readString(pom)).find()) {
+                continue;
+            }
+            Path moduleDir = pom.getParent();
+            long count;
+            try (Stream<Path> walk = Files.walk(moduleDir)) {
+                count = walk.filter(path -> path.toString().endsWith(".java"))
+                        .filter(path -> scope.includes(relative(projectDir, path)))
+                        .count();
+            }
+            if (count > 0) {
+                sourceFiles.put(relative(projectDir, moduleDir), count);
+            }
+        }
+
+        // A module nested in another one would be extracted twice
+        List<String> modules = sourceFiles.keySet().stream()
+                .filter(module -> sourceFiles.keySet().stream().noneMatch(other -> !other.equals(module) && isAncestor(other, module)))
+                .collect(Collectors.toCollection(ArrayList::new));
+        modules.sort(Comparator.comparingLong((String module) -> sourceFiles.get(module)).reversed().thenComparing(Comparator.naturalOrder()));
+        return modules;
+    }
+
+    private static boolean isAncestor(String ancestor, String module) {
+        return ancestor.isEmpty() || module.startsWith(ancestor + "/");
+    }
+
+    private static String relative(Path root, Path path) {
+        return root.relativize(path).toString().replace('\\', '/');
+    }
+}
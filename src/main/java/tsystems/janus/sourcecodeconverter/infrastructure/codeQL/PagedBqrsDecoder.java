@@ -0,0 +1,164 @@
+package tsystems.janus.sourcecodeconverter.infrastructure.codeQL;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import tsystems.janus.sourcecodeconverter.infrastructure.docker.ResourceProfile;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Decodes a BQRS file page by page instead of into one JSON file. A producer thread decodes the next page in
+ * the container while the caller processes the current one, and at most {@code prefetch-pages} decoded pages
+ * wait in between, so memory and disk use depend on the page size rather than on the number of results.
+ */
+@Component
+public class PagedBqrsDecoder {
+
+    private static final String RESULT_SET = "#select";
+
+    private final CodeQLRunner codeQLRunner;
+    private final JsonFactory jsonFactory;
+    private final int pageSize;
+    private final int prefetchPages;
+
+    public PagedBqrsDecoder(CodeQLRunner codeQLRunner, ObjectMapper objectMapper,
+                            @Value("${codeql.bqrs.page-size:5000}") int pageSize,
+                            @Value("${codeql.bqrs.prefetch-pages:2}") int prefetchPages) {
+        this.codeQLRunner = codeQLRunner;
+        this.jsonFactory = objectMapper.getFactory();
+        this.pageSize = pageSize;
+        this.prefetchPages = Math.max(1, prefetchPages);
+    }
+
+    @FunctionalInterface
+    public interface PageConsumer {
+        void accept(File page) throws IOException;
+    }
+
+    /**
+     * Feeds the decoded pages of the BQRS file to the consumer in order. The BQRS file must lie in the container
+     * directory that {@code hostResultsDir} is mounted at; pages are written next to it and deleted once consumed.
+     *
+     * @return the number of pages decoded
+     */
+    public int decode(String containerName, ResourceProfile profile, String bqrsPathInContainer, File hostResultsDir, PageConsumer consumer) throws IOException, InterruptedException {
+        String containerDir = bqrsPathInContainer.substring(0, bqrsPathInContainer.lastIndexOf('/'));
+        String baseName = bqrsPathInContainer.substring(containerDir.length() + 1).replaceFirst("\\.bqrs$", "");
+        BlockingQueue<Page> pages = new ArrayBlockingQueue<>(prefetchPages);
+
+        Thread producer = Thread.ofVirtual().name("bqrs-decode-" + baseName).start(() -> {
+            try {
+                Long startAt = null;
+                int index = 0;
+                do {
+                    String pageName = baseName + ".page-" + index++ + ".json";
+                    codeQLRunner.decodeResultPageInContainer(containerName, bqrsPathInContainer, RESULT_SET, pageSize,
+                            startAt, containerDir + "/" + pageName, profile, System.out::println);
+                    File page = new File(hostResultsDir, pageName);
+                    startAt = nextOffset(page);
+                    try {
+                        pages.put(new Page(page, null));
+                    } catch (InterruptedException e) {
+                        // Never reached the queue, so the cleanup below would miss it
+                        Files.deleteIfExists(page.toPath());
+                        throw e;
+                    }
+                } while (startAt != null);
+                pages.put(Page.END);
+            } catch (InterruptedException e) {
+                // The consumer stopped reading
+            } catch (Exception e) {
+                try {
+                    pages.put(new Page(null, e));
+                } catch (InterruptedException ignored) {
+                }
+            }
+        });
+
+        int consumed = 0;
+        try {
+            while (true) {
+                Page page = pages.take();
+                if (page.failure() != null) {
+                    throw rethrow(page.failure());
+                }
+                if (page == Page.END) {
+                    return consumed;
+                }
+                try {
+                    consumer.accept(page.file());
+                } finally {
+                    Files.deleteIfExists(page.file().toPath());
+                }
+                consumed++;
+            }
+        } finally {
+            producer.interrupt();
+            awaitQuietly(producer);
+            for (Page page : pages) {
+                if (page.file() != null) {
+                    Files.deleteIfExists(page.file().toPath());
+                }
+            }
+        }
+    }
+
+    /**
+     * The byte offset of the next page, which {@code bqrs decode --rows} reports as {@code next} while rows remain.
+     */
+    private Long nextOffset(File page) throws IOException {
+        Long next = null;
+        try (JsonParser parser = jsonFactory.createParser(page)) {
+            while (parser.nextToken() != null) {
+                if (parser.currentToken() != JsonToken.FIELD_NAME) {
+                    continue;
+                }
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("next".equals(field) && value.isNumeric()) {
+                    next = parser.getLongValue();
+                } else if (value == JsonToken.START_ARRAY) {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return next;
+    }
+
+    private static void awaitQuietly(Thread thread) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                thread.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static IOException rethrow(Exception failure) {
+        if (failure instanceof IOException ioException) {
+            return ioException;
+        }
+        if (failure instanceof RuntimeException runtimeException) {
+            throw runtimeException;
+        }
+        return new IOException("Decoding BQRS results failed", failure);
+    }
+
+    private record Page(File file, Exception failure) {
+        static final Page END = new Page(null, null);
+    }
+}
@@ -0,0 +1,114 @@
+package tsystems.janus.sourcecodeconverter.infrastructure.codeQL;
+
+import org.springframework.stereotype.Component;
+import tsystems.janus.sourcecodeconverter.infrastructure.docker.AnalysisPathProvider;
+import tsystems.janus.sourcecodeconverter.infrastructure.docker.CodeQLDockerConfig;
+import tsystems.janus.sourcecodeconverter.infrastructure.docker.DockerContainerManager;
+import tsystems.janus.sourcecodeconverter.infrastructure.docker.ResourceProfile;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Compiles the analysis query suite once per query version into a compilation cache volume that every pooled
+ * container mounts. The cache directory is keyed by a hash of the query sources and {@code qlpack.yml}, so query
+ * runs only evaluate, and editing a query starts a fresh cache.
+ */
+@Component
+public class QueryCompilationCache {
+
+    private static final String COMPLETE_MARKER = ".compiled";
+    private static final int KEY_LENGTH = 16;
+
+    private final DockerContainerManager containerManager;
+    private final CodeQLRunner codeQLRunner;
+    private final CodeQLDockerConfig dockerConfig;
+    private final AnalysisPathProvider pathProvider;
+    private final Set<String> compiledKeys = ConcurrentHashMap.newKeySet();
+    private final ReentrantLock compileLock = new ReentrantLock();
+
+    public QueryCompilationCache(DockerContainerManager containerManager, CodeQLRunner codeQLRunner,
+                                 CodeQLDockerConfig dockerConfig, AnalysisPathProvider pathProvider) {
+        this.containerManager = containerManager;
+        this.codeQLRunner = codeQLRunner;
+        this.dockerConfig = dockerConfig;
+        this.pathProvider = pathProvider;
+    }
+
+    /**
+     * Makes sure the current query is compiled into the shared cache and returns the cache directory to pass to
+     * {@code codeql database run-queries --compilation-cache}.
+     */
+    public String prepare(String containerName, ResourceProfile profile, Consumer<String> logConsumer) throws IOException, InterruptedException {
+        String key = queryHash();
+        String cacheDir = dockerConfig.getContainerCompilationCacheDir() + "/" + key;
+        if (compiledKeys.contains(key)) {
+            return cacheDir;
+        }
+
+        compileLock.lockInterruptibly();
+        try {
+            if (compiledKeys.contains(key)) {
+                return cacheDir;
+            }
+            String marker = cacheDir + "/" + COMPLETE_MARKER;
+            String status = containerManager.executeCommandInContainerAndCaptureOutput(containerName, null,
+                    List.of("bash", "-c", "test -f " + marker + " && echo compiled || echo missing"));
+            if (!"compiled".equals(status)) {
+                logConsumer.accept("⚙️ Compiling CodeQL queries into the shared compilation cache (" + key + ")...");
+                long startedAt = System.currentTimeMillis();
+                codeQLRunner.compileQueries(containerName, dockerConfig.getContainerQueryPath(), cacheDir, profile, logConsumer);
+                containerManager.executeCommandInContainer(containerName, null, List.of("touch", marker), logConsumer);
+                logConsumer.accept("✅ CodeQL queries compiled in " + (System.currentTimeMillis() - startedAt) + " ms.");
+            }
+            compiledKeys.add(key);
+            return cacheDir;
+        } finally {
+            compileLock.unlock();
+        }
+    }
+
+    private String queryHash() throws IOException {
+        Path queryDir;
+        try {
+            queryDir = pathProvider.getQueryFile().getParentFile().toPath();
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException("Could not resolve the CodeQL query directory", e);
+        }
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(queryDir)) {
+            files = walk.filter(Files::isRegularFile)
+                    .filter(file -> file.toString().matches(".*\\.(ql|qll|qls)$")
+                            || file.getFileName().toString().equals(AnalysisPathProvider.QUERY_PACK_FILENAME))
+                    .sorted()
+                    .toList();
+        }
+        for (Path file : files) {
+            digest.update(queryDir.relativize(file).toString().replace('\\', '/').getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(Files.readAllBytes(file));
+            digest.update((byte) 0);
+        }
+        return HexFormat.of().formatHex(digest.digest()).substring(0, KEY_LENGTH);
+    }
+}
@@ -0,0 +1,174 @@
+package tsystems.janus.sourcecodeconverter.infrastructure.codeQL;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import tsystems.janus.sourcecodeconverter.infrastructure.docker.AnalysisPathProvider;
+import tsystems.janus.sourcecodeconverter.infrastructure.docker.CodeQLDockerConfig;
+import tsystems.janus.sourcecodeconverter.infrastructure.docker.ResourceProfile;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Profiles the query evaluation of a job. The queries run with an evaluator log and tuple counting, and the log
+ * summary is folded into per-predicate time and tuple counts, e.g. to tell the taint tracking flow of
+ * {@code tainted-sql.ql} from the XML join of {@code xml-sql.ql}. The profile of the last profiled analysis is
+ * kept next to {@code results.json}.
+ */
+@Component
+public class QueryProfiler {
+
+    private static final String EVALUATOR_LOG_FILENAME = "evaluator-log.jsonl";
+    private static final String SUMMARY_FILENAME = "evaluator-summary.jsonl";
+
+    private final CodeQLRunner codeQLRunner;
+    private final CodeQLDockerConfig dockerConfig;
+    private final AnalysisPathProvider pathProvider;
+    private final ObjectMapper objectMapper;
+    private final int topPredicates;
+    private QueryProfile latest;
+
+    public QueryProfiler(CodeQLRunner codeQLRunner, CodeQLDockerConfig dockerConfig, AnalysisPathProvider pathProvider,
+                         ObjectMapper objectMapper,
+                         @Value("${codeql.profiling.top-predicates:50}") int topPredicates) {
+        this.codeQLRunner = codeQLRunner;
+        this.dockerConfig = dockerConfig;
+        this.pathProvider = pathProvider;
+        this.objectMapper = objectMapper;
+        this.topPredicates = topPredicates;
+    }
+
+    /**
+     * Container path to pass to {@code codeql database run-queries --evaluator-log}, inside the workspace's output
+     * directory.
+     */
+    public String evaluatorLogPath() {
+        return dockerConfig.getContainerOutputDir() + "/" + EVALUATOR_LOG_FILENAME;
+    }
+
+    /**
+     * Summarises the evaluator log of the last query run in the container and keeps it as the latest profile.
+     *
+     * @param hostOutputDir the host directory mounted at the container's output directory
+     */
+    public QueryProfile summarize(String containerName, ResourceProfile profile, Path hostOutputDir, Consumer<String> logConsumer) throws IOException, InterruptedException {
+        logConsumer.accept("📊 Summarising the CodeQL evaluator log...");
+        codeQLRunner.summarizeEvaluatorLog(containerName, evaluatorLogPath(),
+                dockerConfig.getContainerOutputDir() + "/" + SUMMARY_FILENAME, profile, System.out::println);
+
+        File summary = hostOutputDir.resolve(SUMMARY_FILENAME).toFile();
+        QueryProfile queryProfile = parseSummary(summary);
+        Files.deleteIfExists(summary.toPath());
+        Files.deleteIfExists(hostOutputDir.resolve(EVALUATOR_LOG_FILENAME));
+
+        objectMapper.writerWithDefaultPrettyPrinter()
+                .writeValue(pathProvider.getQueryProfileFile(pathProvider.getOutputDirectory()), queryProfile);
+        synchronized (this) {
+            latest = queryProfile;
+        }
+
+        logConsumer.accept("✅ " + queryProfile.predicates() + " predicates evaluated in " + queryProfile.totalMillis() + " ms. Slowest:");
+        queryProfile.slowest().stream().limit(5).forEach(predicate -> logConsumer.accept("⏱️ " + predicate.name()
+                + " (" + predicate.query() + "): " + predicate.millis() + " ms, " + predicate.resultSize() + " tuples, "
+                + predicate.tuplesProcessed() + " processed"));
+        return queryProfile;
+    }
+
+    /**
+     * The profile of the last profiled analysis, also after a restart.
+     */
+    public synchronized Optional<QueryProfile> latest() throws IOException {
+        if (latest == null) {
+            File file = pathProvider.getQueryProfileFile(pathProvider.getOutputDirectory());
+            if (file.exists()) {
+                latest = objectMapper.readValue(file, QueryProfile.class);
+            }
+        }
+        return Optional.ofNullable(latest);
+    }
+
+    /**
+     * Folds the {@code predicates} summary, a stream of JSON objects, into one entry per predicate. A recursive
+     * predicate and a predicate evaluated for several queries show up more than once and are added up.
+     */
+    QueryProfile parseSummary(File summary) throws IOException {
+        Map<String, Accumulator> byPredicate = new LinkedHashMap<>();
+        try (MappingIterator<JsonNode> events = objectMapper.readerFor(JsonNode.class).readValues(summary)) {
+            while (events.hasNextValue()) {
+                JsonNode event = events.nextValue();
+                String name = event.path("predicateName").asText(null);
+                if (name == null || !event.has("millis")) {
+                    continue;
+                }
+                byPredicate.computeIfAbsent(name, key -> new Accumulator()).add(event);
+            }
+        }
+
+        long totalMillis = byPredicate.values().stream().mapToLong(accumulator -> accumulator.millis).sum();
+        List<PredicateProfile> slowest = byPredicate.entrySet().stream()
+                .map(entry -> entry.getValue().toProfile(entry.getKey()))
+                .sorted(Comparator.comparingLong(PredicateProfile::millis).reversed()
+                        .thenComparing(Comparator.comparingLong(PredicateProfile::tuplesProcessed).reversed()))
+                .limit(topPredicates)
+                .toList();
+        return new QueryProfile(System.currentTimeMillis(), byPredicate.size(), totalMillis, slowest);
+    }
+
+    /**
+     * @param slowest the predicates that took longest, at most {@code codeql.profiling.top-predicates} of them
+     */
+    public record QueryProfile(long createdAt, int predicates, long totalMillis, List<PredicateProfile> slowest) {
+    }
+
+    /**
+     * @param query           the query whose evaluation needed the predicate first
+     * @param strategy        how the evaluator computed it, e.g. {@code COMPUTE_SIMPLE} or {@code COMPUTE_RECURSIVE}
+     * @param resultSize      tuples in the predicate's result
+     * @param tuplesProcessed tuples produced by all steps of its pipelines, the work behind the result
+     */
+    public record PredicateProfile(String name, String query, String strategy, int evaluations, long millis,
+                                   long resultSize, long tuplesProcessed) {
+    }
+
+    private static class Accumulator {
+        private String query;
+        private String strategy;
+        private int evaluations;
+        private long millis;
+        private long resultSize;
+        private long tuplesProcessed;
+
+        void add(JsonNode event) {
+            if (query == null && event.hasNonNull("queryCausingWork")) {
+                String path = event.get("queryCausingWork").asText();
+                query = path.substring(path.lastIndexOf('/') + 1);
+            }
+            if (strategy == null && event.hasNonNull("evaluationStrategy")) {
+                strategy = event.get("evaluationStrategy").asText();
+            }
+            evaluations++;
+            millis += event.path("millis").asLong();
+            resultSize = Math.max(resultSize, event.path("resultSize").asLong());
+            for (JsonNode run : event.path("pipelineRuns")) {
+                for (JsonNode count : run.path("counts")) {
+                    tuplesProcessed += count.asLong();
+                }
+            }
+        }
+
+        PredicateProfile toProfile(String name) {
+            return new PredicateProfile(name, query, strategy, evaluations, millis, resultSize, tuplesProcessed);
+        }
+    }
+}
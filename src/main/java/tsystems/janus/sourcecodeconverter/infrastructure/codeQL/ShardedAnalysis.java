@@ -0,0 +1,204 @@
+package tsystems.janus.sourcecodeconverter.infrastructure.codeQL;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import tsystems.janus.sourcecodeconverter.infrastructure.docker.AnalysisContainerPool;
+import tsystems.janus.sourcecodeconverter.infrastructure.docker.CodeQLDockerAnalysisRunner;
+import tsystems.janus.sourcecodeconverter.infrastructure.docker.CodeQLDockerConfig;
+import tsystems.janus.sourcecodeconverter.infrastructure.docker.ContainerLease;
+import tsystems.janus.sourcecodeconverter.infrastructure.docker.DockerContainerManager;
+import tsystems.janus.sourcecodeconverter.infrastructure.docker.ResourceProfile;
+import tsystems.janus.sourcecodeconverter.infrastructure.git.ProjectFingerprint;
+import tsystems.janus.sourcecodeconverter.infrastructure.sse.CancellationToken;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Analyses a multi-module project one Maven module at a time, spread over several pooled containers. Every
+ * container takes the next module from a shared queue, largest first, creates that module's database with the
+ * module as source root, and runs the query suite on it. Module databases are cached by module content, so an
+ * unchanged module is not extracted again.
+ * <p>
+ * All containers mount the project at the same path, so findings carry the same absolute paths as in a single
+ * database. With a traced build, each module has to build on its own; buildless extraction has no such limit.
+ */
+@Component
+public class ShardedAnalysis {
+
+    private static final String LANGUAGE = "java";
+    private static final String SCOPE_CONFIG_FILENAME = "codeql-config.yml";
+
+    private final AnalysisContainerPool containerPool;
+    private final CodeQLDockerAnalysisRunner analysisRunner;
+    private final DockerContainerManager containerManager;
+    private final CodeQLDockerConfig dockerConfig;
+    private final CodeQLRunner codeQLRunner;
+    private final DatabaseCache databaseCache;
+    private final DatabaseBundles databaseBundles;
+    private final QueryCompilationCache queryCompilationCache;
+    private final ProjectFingerprint projectFingerprint;
+    private final int maxShards;
+
+    public ShardedAnalysis(AnalysisContainerPool containerPool, CodeQLDockerAnalysisRunner analysisRunner,
+                           DockerContainerManager containerManager, CodeQLDockerConfig dockerConfig,
+                           CodeQLRunner codeQLRunner, DatabaseCache databaseCache, DatabaseBundles databaseBundles,
+                           QueryCompilationCache queryCompilationCache, ProjectFingerprint projectFingerprint,
+                           @Value("${codeql.sharding.max-shards:${codeql.pool.max-size:3}}") int maxShards) {
+        this.containerPool = containerPool;
+        this.analysisRunner = analysisRunner;
+        this.containerManager = containerManager;
+        this.dockerConfig = dockerConfig;
+        this.codeQLRunner = codeQLRunner;
+        this.databaseCache = databaseCache;
+        this.databaseBundles = databaseBundles;
+        this.queryCompilationCache = queryCompilationCache;
+        this.projectFingerprint = projectFingerprint;
+        this.maxShards = Math.max(1, maxShards);
+    }
+
+    /**
+     * Receives the BQRS files of one module while its container still holds them.
+     */
+    @FunctionalInterface
+    public interface ShardResults {
+        void accept(ContainerLease lease, String module, List<String> bqrsFiles) throws Exception;
+    }
+
+    /**
+     * Runs the modules on the job's lease plus as many extra containers as the pool can hand out right away, up
+     * to {@code codeql.sharding.max-shards}. The results receiver is called from several threads.
+     */
+    public void run(ContainerLease mainLease, List<String> modules, ExtractionMode extraction, AnalysisScope scope,
+                    ResourceProfile profile, ShardResults results, Consumer<String> logConsumer,
+                    CancellationToken cancellation) throws Exception {
+        List<ContainerLease> leases = new ArrayList<>(List.of(mainLease));
+        List<ContainerLease> extraLeases = new ArrayList<>();
+        List<CancellationToken.Registration> killOnCancel = new ArrayList<>();
+        try {
+            int wanted = Math.min(maxShards, modules.size());
+            while (leases.size() < wanted) {
+                Optional<ContainerLease> lease = containerPool.tryAcquire(profile, logConsumer);
+                if (lease.isEmpty()) {
+                    break;
+                }
+                extraLeases.add(lease.get());
+                leases.add(lease.get());
+                killOnCancel.add(cancellation.onCancel(
+                        () -> containerManager.killContainerProcesses(lease.get().getContainerName())));
+                analysisRunner.copyWorkspace(mainLease, lease.get(), logConsumer);
+            }
+            logConsumer.accept("🧩 Analysing " + modules.size() + " Maven modules in " + leases.size() + " containers"
+                    + (extraction == ExtractionMode.NONE ? "." : " (" + extraction.id() + ": every module must build on its own)."));
+
+            drain(leases, modules, (lease, module) -> {
+                cancellation.throwIfCancelled();
+                analyseModule(lease, module, extraction, scope, profile, results, logConsumer);
+            });
+        } finally {
+            killOnCancel.forEach(CancellationToken.Registration::close);
+            extraLeases.forEach(containerPool::release);
+        }
+    }
+
+    private void analyseModule(ContainerLease lease, String module, ExtractionMode extraction, AnalysisScope scope,
+                               ResourceProfile profile, ShardResults results, Consumer<String> logConsumer) throws Exception {
+        String containerName = lease.getContainerName();
+        String label = module.isEmpty() ? "(root)" : module;
+        // The module is the source root, so CodeQL's path filters have to be relative to it
+        Optional<AnalysisScope> moduleScope = scope.withinModule(module);
+        if (moduleScope.isEmpty()) {
+            logConsumer.accept("⏭️ Module " + label + " is outside the analysis scope, skipping it.");
+            return;
+        }
+        Files.writeString(lease.getOutputDir().resolve(SCOPE_CONFIG_FILENAME), moduleScope.get().toCodeScanningConfig());
+
+        String sourceRoot = module.isEmpty()
+                ? dockerConfig.getContainerProjectPath()
+                : dockerConfig.getContainerProjectPath() + "/" + module;
+        String key = LANGUAGE + "-" + extraction.id() + "-" + projectFingerprint.of(lease.getProjectDir().resolve(module).toFile())
+                + "-module-" + shortHash(module) + "-scope-" + moduleScope.get().id();
+
+        long startedAt = System.currentTimeMillis();
+        try (DatabaseCache.Handle database = databaseCache.open(containerName, key, databaseBundles.sharing(lease, key,
+                dbPath -> codeQLRunner.createDatabase(containerName, sourceRoot, dbPath, LANGUAGE, extraction,
+                        dockerConfig.getContainerOutputDir() + "/" + SCOPE_CONFIG_FILENAME, profile, logConsumer),
+                logConsumer), logConsumer)) {
+            List<String> bqrsFiles = codeQLRunner.runQueries(
+                    containerName,
+                    dockerConfig.getContainerQueryPath(),
+                    database.getPath(),
+                    dockerConfig.getContainerResultsDir(),
+                    dockerConfig.getContainerQueryDir(),
+                    queryCompilationCache.prepare(containerName, profile, logConsumer),
+                    null,
+                    profile,
+                    logConsumer);
+            results.accept(lease, module, bqrsFiles);
+        }
+        logConsumer.accept("✅ Module " + label + " analysed in " + containerName + " in "
+                + (System.currentTimeMillis() - startedAt) + " ms");
+    }
+
+    @FunctionalInterface
+    interface ModuleTask<W> {
+        void run(W worker, String module) throws Exception;
+    }
+
+    /**
+     * Lets every worker take the next module from a shared queue, in list order, until the queue is empty. The
+     * first failing module stops all workers, as soon as it fails, and its exception is rethrown.
+     */
+    static <W> void drain(List<W> workers, List<String> modules, ModuleTask<W> task) throws Exception {
+        ConcurrentLinkedQueue<String> queue = new ConcurrentLinkedQueue<>(modules);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            CompletionService<Void> completion = new ExecutorCompletionService<>(executor);
+            List<Future<Void>> futures = new ArrayList<>();
+            for (W worker : workers) {
+                futures.add(completion.submit(() -> {
+                    String module;
+                    while ((module = queue.poll()) != null) {
+                        task.run(worker, module);
+                    }
+                    return null;
+                }));
+            }
+            try {
+                for (int i = 0; i < futures.size(); i++) {
+                    completion.take().get();
+                }
+            } catch (ExecutionException | InterruptedException e) {
+                // The other workers take no further module and are interrupted in the one they are running
+                queue.clear();
+                futures.forEach(future -> future.cancel(true));
+                if (e instanceof ExecutionException failure && failure.getCause() instanceof Exception cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+    }
+
+    private static String shortHash(String module) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(module.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash).substring(0, 12);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package tsystems.janus.sourcecodeconverter.infrastructure.docker;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import tsystems.janus.sourcecodeconverter.infrastructure.util.Uninterruptibles;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Keeps started analysis containers around so jobs do not pay for {@code docker run} on the request path.
+ * Each slot has its own container and host workspace, and all slots share the database volume. A job leases a
+ * slot, and the slot's workspace is reset when it is returned. Idle slots above the minimum size are evicted after the idle timeout.
+ */
+@Component
+public class AnalysisContainerPool {
+
+    private final DockerContainerManager containerManager;
+    private final DockerImageBuilder imageBuilder;
+    private final CodeQLDockerConfig config;
+    private final AnalysisPathProvider pathProvider;
+    private final int minSize;
+    private final int maxSize;
+    private final Duration idleTimeout;
+    private final Duration acquireTimeout;
+    private final Path workspaceRoot;
+
+    private final Semaphore capacity;
+    private final Deque<ContainerLease> idle = new ArrayDeque<>();
+    private final Map<Integer, ContainerLease> slots = new TreeMap<>();
+    private final ScheduledExecutorService evictor = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().factory());
+    private ContainerLease active;
+    private boolean closed;
+
+    public AnalysisContainerPool(DockerContainerManager containerManager,
+                                 DockerImageBuilder imageBuilder,
+                                 CodeQLDockerConfig config,
+                                 AnalysisPathProvider pathProvider,
+                                 @Value("${codeql.pool.min-size:1}") int minSize,
+                                 @Value("${codeql.pool.max-size:3}") int maxSize,
+                                 @Value("${codeql.pool.idle-timeout:30m}") Duration idleTimeout,
+                                 @Value("${codeql.pool.acquire-timeout:10m}") Duration acquireTimeout,
+                                 @Value("${codeql.pool.workspace-dir:${java.io.tmpdir}/source-code-converter/workspaces}") String workspaceDir) {
+        this.containerManager = containerManager;
+        this.imageBuilder = imageBuilder;
+        this.config = config;
+        this.pathProvider = pathProvider;
+        this.minSize = Math.max(0, minSize);
+        this.maxSize = Math.max(1, maxSize);
+        this.idleTimeout = idleTimeout;
+        this.acquireTimeout = acquireTimeout;
+        this.workspaceRoot = Paths.get(workspaceDir).toAbsolutePath();
+        this.capacity = new Semaphore(this.maxSize, true);
+
+        long evictionPeriod = Math.max(1, Math.min(idleTimeout.toSeconds(), 60));
+        evictor.scheduleWithFixedDelay(this::evictIdleSlots, evictionPeriod, evictionPeriod, TimeUnit.SECONDS);
+    }
+
+    public int getMinSize() {
+        return minSize;
+    }
+
+    /**
+     * Leases a container and applies the given resource profile to it. Limits are changed in place with
+     * {@code docker update}, so a warm container can be reused for any profile.
+     */
+    public ContainerLease acquire(ResourceProfile profile, Consumer<String> logConsumer) throws IOException, InterruptedException {
+        logConsumer.accept("⏳ Waiting for an analysis container...");
+        if (!capacity.tryAcquire(acquireTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+            throw new IllegalStateException("No analysis container became available within " + acquireTimeout);
+        }
+        return leaseReserved(profile, logConsumer);
+    }
+
+    /**
+     * Like {@link #acquire}, but returns empty instead of waiting when the pool is at its maximum size.
+     */
+    public Optional<ContainerLease> tryAcquire(ResourceProfile profile, Consumer<String> logConsumer) throws IOException, InterruptedException {
+        if (!capacity.tryAcquire()) {
+            return Optional.empty();
+        }
+        return Optional.of(leaseReserved(profile, logConsumer));
+    }
+
+    private ContainerLease leaseReserved(ResourceProfile profile, Consumer<String> logConsumer) throws IOException, InterruptedException {
+        ContainerLease lease;
+        try {
+            lease = takeIdleOrReserveSlot();
+            if (lease.getContainerName() != null) {
+                logConsumer.accept("♻️ Reusing warm container: " + lease.getContainerName());
+            } else {
+                lease = startSlot(lease.getSlot(), logConsumer);
+            }
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            capacity.release();
+            throw e;
+        }
+
+        if (!profile.equals(lease.getResourceProfile())) {
+            try {
+                containerManager.applyResourceProfile(lease.getContainerName(), profile, logConsumer);
+                lease.setResourceProfile(profile);
+            } catch (IOException | InterruptedException | RuntimeException e) {
+                // The limits in effect are unknown now, so the next job applies its profile again
+                lease.setResourceProfile(null);
+                release(lease);
+                throw e;
+            }
+        }
+        return lease;
+    }
+
+    /**
+     * Returns the lease to the pool after wiping its workspace. A slot that cannot be reset is removed.
+     */
+    public void release(ContainerLease lease) {
+        if (lease == null) {
+            return;
+        }
+        synchronized (this) {
+            if (active == lease) {
+                active = null;
+            }
+        }
+
+        // A cancelled job releases its lease from an interrupted thread, the reset must still run
+        Uninterruptibles.run("release-" + lease.getContainerName(), () -> {
+            try {
+                resetSlot(lease);
+                synchronized (this) {
+                    if (!closed) {
+                        lease.markIdle();
+                        idle.addFirst(lease);
+                        return;
+                    }
+                }
+                removeSlot(lease);
+            } catch (Exception e) {
+                System.err.println("⚠️ Could not reset container " + lease.getContainerName() + ", removing it: " + e.getMessage());
+                removeSlot(lease);
+            } finally {
+                capacity.release();
+            }
+        });
+    }
+
+    /**
+     * Keeps the lease of a finished analysis so later steps (patch generation, build tests) run against its
+     * workspace. The previously active lease goes back to the pool.
+     */
+    public void activate(ContainerLease lease) {
+        ContainerLease previous;
+        synchronized (this) {
+            previous = active;
+            active = lease;
+        }
+        if (previous != null && previous != lease) {
+            release(previous);
+        }
+    }
+
+    public synchronized ContainerLease activeLease() {
+        if (active == null) {
+            throw new IllegalStateException("No analysis workspace is active. Run a conversion first.");
+        }
+        return active;
+    }
+
+    /**
+     * Stops eviction and hands back every slot so the caller can remove the containers.
+     */
+    public synchronized List<ContainerLease> drain() {
+        closed = true;
+        evictor.shutdownNow();
+        List<ContainerLease> all = slots.values().stream()
+                .filter(lease -> lease.getContainerName() != null)
+                .toList();
+        slots.clear();
+        idle.clear();
+        active = null;
+        return all;
+    }
+
+    @PreDestroy
+    public void stopEviction() {
+        evictor.shutdownNow();
+    }
+
+    private synchronized ContainerLease takeIdleOrReserveSlot() {
+        ContainerLease lease = idle.pollFirst();
+        if (lease != null) {
+            return lease;
+        }
+
+        int slot = 1;
+        while (slots.containsKey(slot)) {
+            slot++;
+        }
+        // Placeholder until the container is running, so concurrent acquires pick different slot numbers
+        ContainerLease reserved = new ContainerLease(slot, null, null, null, null);
+        slots.put(slot, reserved);
+        return reserved;
+    }
+
+    private ContainerLease startSlot(int slot, Consumer<String> logConsumer) throws IOException, InterruptedException {
+        String containerName = config.getContainerName() + "-" + slot;
+        // Every slot mounts the same volume, it holds the database cache shared by all jobs
+        String dbVolumeName = config.getDbVolumeName();
+        Path slotDir = workspaceRoot.resolve("slot-" + slot);
+        ContainerLease lease = new ContainerLease(slot, containerName, dbVolumeName,
+                Files.createDirectories(slotDir.resolve("project")),
+                Files.createDirectories(slotDir.resolve("output")));
+
+        try {
+            logConsumer.accept("📦 Building Docker image...");
+            File queryDir = queryDirectory();
+            String imageTag = imageBuilder.buildImageIfNecessary(config.getImageName(), config.getDockerfileDir(),
+                    new File(queryDir, AnalysisPathProvider.QUERY_PACK_FILENAME), logConsumer);
+
+            for (String volume : List.of(dbVolumeName, config.getCompilationCacheVolumeName())) {
+                if (!containerManager.volumeExists(volume)) {
+                    containerManager.createVolume(volume, logConsumer);
+                }
+            }
+
+            List<String> volumes = List.of(
+                    lease.getProjectDir() + ":" + config.getContainerProjectPath(),
+                    queryDir.getAbsolutePath() + ":" + config.getContainerQueryDir(),
+                    lease.getOutputDir() + ":" + config.getContainerOutputDir(),
+                    dbVolumeName + ":" + config.getContainerDbPath(),
+                    config.getCompilationCacheVolumeName() + ":" + config.getContainerCompilationCacheDir()
+            );
+            System.out.println("Prepared volumes: " + volumes);
+            removeStaleContainer(containerName);
+            containerManager.startContainer(imageTag, containerName, volumes, logConsumer);
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            synchronized (this) {
+                slots.remove(slot);
+            }
+            throw e;
+        }
+
+        synchronized (this) {
+            slots.put(slot, lease);
+        }
+        return lease;
+    }
+
+    /**
+     * A container left behind by a crash or a kill still holds the slot's name, and creating the slot's container
+     * again would fail with a name conflict.
+     */
+    private void removeStaleContainer(String containerName) {
+        try {
+            containerManager.removeContainer(containerName, line -> {
+            });
+        } catch (Exception e) {
+            // Nothing to remove, the usual case
+        }
+    }
+
+    private File queryDirectory() {
+        try {
+            return pathProvider.getQueryFile().getParentFile();
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException("Could not resolve the CodeQL query directory", e);
+        }
+    }
+
+    private void resetSlot(ContainerLease lease) throws IOException, InterruptedException {
+        String script = "find " + config.getContainerProjectPath() + " -mindepth 1 -delete && "
+                + "find " + config.getContainerOutputDir() + " -mindepth 1 -delete";
+        containerManager.executeCommandInContainer(lease.getContainerName(), null, List.of("bash", "-c", script), line -> {
+        });
+    }
+
+    private void evictIdleSlots() {
+        List<ContainerLease> evicted = new ArrayList<>();
+        synchronized (this) {
+            long cutoff = System.currentTimeMillis() - idleTimeout.toMillis();
+            // The least recently used slots sit at the tail of the deque
+            while (slots.size() - evicted.size() > minSize && !idle.isEmpty() && idle.peekLast().getIdleSince() < cutoff) {
+                evicted.add(idle.pollLast());
+            }
+        }
+        for (ContainerLease lease : evicted) {
+            System.out.println("🧹 Evicting idle analysis container: " + lease.getContainerName());
+            removeSlot(lease);
+        }
+    }
+
+    private void removeSlot(ContainerLease lease) {
+        synchronized (this) {
+            slots.remove(lease.getSlot(), lease);
+        }
+        try {
+            containerManager.removeContainer(lease.getContainerName(), System.out::println);
+        } catch (Exception e) {
+            System.err.println("⚠️ Failed to remove container " + lease.getContainerName() + ": " + e.getMessage());
+        }
+    }
+}
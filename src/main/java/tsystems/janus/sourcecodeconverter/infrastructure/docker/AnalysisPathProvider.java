@@ -10,12 +10,12 @@ import java.util.Objects;
 @Component
 public class AnalysisPathProvider {
 
-    private static final String QUERY_RESOURCE_PATH = "queries/sql-detection.ql";
+    public static final String QUERY_PACK_FILENAME = "qlpack.yml";
+    private static final String QUERY_RESOURCE_PATH = "queries/sql-detection.qls";
     private static final String OUTPUT_BASE_DIR = "src/main/resources/output";
-    private static final String BQRS_FILENAME = "results.bqrs";
-    private static final String RAW_JSON_FILENAME = "raw-results.json";
+    private static final String RESULTS_DIRNAME = "results";
     private static final String FINAL_JSON_FILENAME = "results.json";
-    private static final String CONTAINER_RAW_JSON_PATH = "/app/output/" + RAW_JSON_FILENAME;
+    private static final String QUERY_PROFILE_FILENAME = "query-profile.json";
 
     public File getQueryFile() throws URISyntaxException {
         URI uri = Objects.requireNonNull(getClass().getClassLoader().getResource(QUERY_RESOURCE_PATH)).toURI();
@@ -30,19 +30,18 @@ public class AnalysisPathProvider {
         return outputDir;
     }
 
-    public File getBQRSFile(File outputDir) {
-        return new File(outputDir, BQRS_FILENAME);
-    }
-
-    public File getRawJsonFile(File outputDir) {
-        return new File(outputDir, RAW_JSON_FILENAME);
+    /**
+     * Directory the query suite's BQRS files and their decoded JSON are written to, one pair per query.
+     */
+    public File getResultsDirectory(File outputDir) {
+        return new File(outputDir, RESULTS_DIRNAME);
     }
 
     public File getFinalJsonFile(File outputDir) {
         return new File(outputDir, FINAL_JSON_FILENAME);
     }
 
-    public String getContainerRawJsonPath() {
-        return CONTAINER_RAW_JSON_PATH;
+    public File getQueryProfileFile(File outputDir) {
+        return new File(outputDir, QUERY_PROFILE_FILENAME);
     }
 }
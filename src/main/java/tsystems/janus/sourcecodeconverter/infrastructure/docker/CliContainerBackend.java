@@ -0,0 +1,252 @@
+package tsystems.janus.sourcecodeconverter.infrastructure.docker;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+public class CliContainerBackend implements ContainerBackend {
+
+    private final DockerCommandExecutor commandExecutor;
+    private final boolean execSessionEnabled;
+    private final boolean cliServerEnabled;
+    private final Duration commandTimeout;
+    private final ObjectMapper objectMapper;
+    private final Map<String, ContainerExecSession> execSessions = new ConcurrentHashMap<>();
+    private final Map<String, CodeQLCliServer> cliServers = new ConcurrentHashMap<>();
+
+    public CliContainerBackend(DockerCommandExecutor commandExecutor, boolean execSessionEnabled, boolean cliServerEnabled,
+                               Duration commandTimeout, ObjectMapper objectMapper) {
+        this.commandExecutor = commandExecutor;
+        this.execSessionEnabled = execSessionEnabled;
+        this.cliServerEnabled = cliServerEnabled;
+        this.commandTimeout = commandTimeout;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public String getName() {
+        return "cli";
+    }
+
+    @Override
+    public boolean imageExists(String imageName) throws IOException, InterruptedException {
+        String existingImages = commandExecutor.executeAndCaptureOutput(List.of("docker", "images", "-q", imageName));
+        System.out.println("Existing images output: " + existingImages);
+        return !existingImages.isEmpty();
+    }
+
+    @Override
+    public boolean volumeExists(String volumeName) {
+        try {
+            commandExecutor.execute(List.of("docker", "volume", "inspect", volumeName), System.out::println);
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void createVolume(String volumeName, Consumer<String> logConsumer) throws IOException, InterruptedException {
+        commandExecutor.execute(List.of("docker", "volume", "create", volumeName), logConsumer);
+    }
+
+    @Override
+    public void removeVolume(String volumeName, Consumer<String> logConsumer) throws IOException, InterruptedException {
+        commandExecutor.execute(List.of("docker", "volume", "rm", "-f", volumeName), logConsumer);
+    }
+
+    @Override
+    public void runContainer(String imageName, String containerName, List<String> volumes, Consumer<String> logConsumer) throws IOException, InterruptedException {
+        List<String> startCommand = new ArrayList<>(List.of(
+                "docker", "run", "-d",
+                "--dns=8.8.8.8",
+                "--name", containerName
+        ));
+        for (String volume : volumes) {
+            startCommand.add("-v");
+            startCommand.add(volume);
+        }
+        startCommand.add(imageName);
+        startCommand.addAll(List.of("tail", "-f", "/dev/null")); // Keep container running
+
+        releaseContainerResources(containerName);
+        commandExecutor.execute(startCommand, logConsumer);
+    }
+
+    @Override
+    public void removeContainer(String containerName, Consumer<String> logConsumer) throws IOException, InterruptedException {
+        releaseContainerResources(containerName);
+        commandExecutor.execute(List.of("docker", "rm", "-f", containerName), logConsumer);
+    }
+
+    @Override
+    public void updateResources(String containerName, ResourceProfile profile) throws IOException, InterruptedException {
+        commandExecutor.execute(List.of("docker", "update",
+                "--cpus", String.valueOf(profile.cpus()),
+                "--memory", String.valueOf(profile.memoryBytes()),
+                "--memory-swap", String.valueOf(profile.memoryBytes()),
+                containerName), System.out::println);
+    }
+
+    @Override
+    public ExecResult exec(String containerName, String workDir, List<String> command, Consumer<String> logConsumer) throws IOException, InterruptedException {
+        if (!execSessionEnabled) {
+            try {
+                return commandExecutor.run(execCommand(containerName, workDir, command), commandTimeout, logConsumer);
+            } catch (RuntimeException e) {
+                if (e.getCause() instanceof TimeoutException) {
+                    // Only the docker exec client was killed, the command is still running in the container
+                    commandExecutor.killContainerProcesses(containerName);
+                }
+                throw e;
+            }
+        }
+
+        ContainerExecSession session = execSessions.get(containerName);
+        if (session == null || !session.isAlive()) {
+            session = openExecSession(containerName);
+        }
+
+        try {
+            return session.execute(workDir, command, commandTimeout, logConsumer);
+        } catch (IOException | RuntimeException e) {
+            execSessions.remove(containerName, session);
+            session.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public ExecResult execCodeQL(String containerName, String workDir, List<String> arguments, ResourceProfile profile, Consumer<String> logConsumer) throws IOException, InterruptedException {
+        if (!cliServerEnabled) {
+            return ContainerBackend.super.execCodeQL(containerName, workDir, arguments, profile, logConsumer);
+        }
+
+        CodeQLCliServer server = cliServers.get(containerName);
+        if (server == null || !server.isAlive() || !server.getKey().equals(CodeQLCliServer.keyOf(workDir, profile))) {
+            server = openCliServer(containerName, workDir, profile);
+        }
+
+        try {
+            ExecResult result = server.execute(arguments, commandTimeout, logConsumer);
+            if (!result.isSuccess()) {
+                // The server exits with a failed command, the next command starts a new one
+                cliServers.remove(containerName, server);
+                server.close();
+            }
+            return result;
+        } catch (IOException | RuntimeException e) {
+            cliServers.remove(containerName, server);
+            server.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void copyFromContainer(String containerName, String containerPath, String hostPath) throws IOException, InterruptedException {
+        commandExecutor.execute(
+                List.of("docker", "cp", containerName + ":" + containerPath, hostPath),
+                System.out::println
+        );
+    }
+
+    @Override
+    public void copyToContainer(String containerName, String hostPath, String containerPath) throws IOException, InterruptedException {
+        commandExecutor.execute(
+                List.of("docker", "cp", hostPath, containerName + ":" + containerPath),
+                System.out::println
+        );
+    }
+
+    @Override
+    public Map<String, byte[]> readFiles(String containerName, Collection<String> containerPaths) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>(List.of("docker", "exec", containerName));
+        command.addAll(ContainerArchives.archiveCommand(containerPaths));
+
+        Map<String, byte[]> files = new LinkedHashMap<>();
+        int exitCode = commandExecutor.runBinary(command, null, archive -> files.putAll(ContainerArchives.readArchive(archive)));
+        if (exitCode != 0) {
+            throw new RuntimeException("Command failed with exit code " + exitCode + ": " + String.join(" ", command));
+        }
+        return files;
+    }
+
+    @Override
+    public void writeFiles(String containerName, Map<String, byte[]> files) throws IOException, InterruptedException {
+        List<String> command = List.of("docker", "cp", "-", containerName + ":/");
+        int exitCode = commandExecutor.runBinary(command, ContainerArchives.createArchive(files), stdout -> {
+        });
+        if (exitCode != 0) {
+            throw new RuntimeException("Command failed with exit code " + exitCode + ": " + String.join(" ", command));
+        }
+    }
+
+    @Override
+    public void killProcesses(String containerName) throws IOException, InterruptedException {
+        commandExecutor.killContainerProcesses(containerName);
+        releaseContainerResources(containerName);
+    }
+
+    @Override
+    public void releaseContainerResources(String containerName) {
+        ContainerExecSession session = execSessions.remove(containerName);
+        if (session != null) {
+            session.close();
+        }
+        CodeQLCliServer server = cliServers.remove(containerName);
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    private synchronized ContainerExecSession openExecSession(String containerName) throws IOException {
+        ContainerExecSession session = execSessions.get(containerName);
+        if (session != null && session.isAlive()) {
+            return session;
+        }
+        if (session != null) {
+            session.close();
+        }
+
+        session = ContainerExecSession.open(containerName, commandExecutor);
+        execSessions.put(containerName, session);
+        return session;
+    }
+
+    private synchronized CodeQLCliServer openCliServer(String containerName, String workDir, ResourceProfile profile) throws IOException {
+        String key = CodeQLCliServer.keyOf(workDir, profile);
+        CodeQLCliServer server = cliServers.get(containerName);
+        if (server != null && server.isAlive() && server.getKey().equals(key)) {
+            return server;
+        }
+        if (server != null) {
+            server.close();
+        }
+
+        server = CodeQLCliServer.open(containerName, workDir, profile, commandExecutor, objectMapper);
+        cliServers.put(containerName, server);
+        return server;
+    }
+
+    private List<String> execCommand(String containerName, String workDir, List<String> command) {
+        List<String> execCommand = new ArrayList<>(List.of("docker", "exec"));
+
+        if (workDir != null && !workDir.isEmpty()) {
+            execCommand.add("-w");
+            execCommand.add(workDir);
+        }
+
+        execCommand.add(containerName);
+        execCommand.addAll(command);
+        return execCommand;
+    }
+}
@@ -0,0 +1,209 @@
+package tsystems.janus.sourcecodeconverter.infrastructure.docker;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import tsystems.janus.sourcecodeconverter.infrastructure.util.OutputRingBuffer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * A {@code codeql execute cli-server} process kept running inside a container. Each command is written to its
+ * stdin as a JSON array of arguments followed by a NUL byte, and the server writes a NUL byte to stdout once the
+ * command is done, so consecutive CodeQL commands share one JVM and its resolved packs instead of starting the CLI
+ * every time. A failing command ends the server with the command's exit code.
+ */
+public class CodeQLCliServer implements AutoCloseable {
+
+    private final String containerName;
+    private final String key;
+    private final Process process;
+    private final DockerCommandExecutor commandExecutor;
+    private final ObjectMapper objectMapper;
+    private final OutputStream stdin;
+    private final InputStream stdout;
+    private final Thread stderrPump;
+    private final long outputBufferBytes;
+    private volatile OutputRingBuffer stderr;
+    private volatile Consumer<String> commandLog = System.out::println;
+
+    private CodeQLCliServer(String containerName, String key, Process process, DockerCommandExecutor commandExecutor, ObjectMapper objectMapper) {
+        this.containerName = containerName;
+        this.key = key;
+        this.process = process;
+        this.commandExecutor = commandExecutor;
+        this.outputBufferBytes = commandExecutor.getOutputBufferBytes();
+        this.stderr = new OutputRingBuffer(outputBufferBytes);
+        this.objectMapper = objectMapper;
+        this.stdin = process.getOutputStream();
+        this.stdout = new BufferedInputStream(process.getInputStream());
+        // CodeQL reports progress on stderr, it goes to the log of whichever command is running
+        this.stderrPump = Thread.ofVirtual().name("cli-server-stderr-" + containerName).start(() -> {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getErrorStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    stderr.append(line);
+                    commandLog.accept(line);
+                }
+            } catch (IOException e) {
+                // The server is gone, nothing left to forward
+            }
+        });
+    }
+
+    /**
+     * Starts the server with a JVM heap sized to the profile's CodeQL memory, because the commands it runs share
+     * that heap instead of each sizing its own.
+     */
+    public static CodeQLCliServer open(String containerName, String workDir, ResourceProfile profile, DockerCommandExecutor commandExecutor,
+                                       ObjectMapper objectMapper) throws IOException {
+        ProcessBuilder processBuilder = new ProcessBuilder(command(containerName, workDir, profile));
+        System.out.println("Starting CodeQL CLI server in container: " + containerName);
+        return new CodeQLCliServer(containerName, keyOf(workDir, profile), processBuilder.start(), commandExecutor, objectMapper);
+    }
+
+    /**
+     * Identifies the server settings, a server with a different key has to be restarted before it can be used.
+     */
+    public static String keyOf(String workDir, ResourceProfile profile) {
+        return workDir + "|" + profile.codeqlRamMegabytes();
+    }
+
+    /**
+     * Runs one CodeQL command on the server. Past the timeout the server is stopped together with the evaluation
+     * it is running inside the container, and the command fails. The server cannot be used afterwards.
+     */
+    public synchronized ExecResult execute(List<String> arguments, Duration timeout, Consumer<String> logConsumer) throws IOException, InterruptedException {
+        if (!isAlive()) {
+            throw new IOException("CodeQL CLI server in container '" + containerName + "' is no longer running");
+        }
+
+        AtomicBoolean timedOut = new AtomicBoolean();
+        Thread watchdog = Thread.ofVirtual().start(() -> {
+            try {
+                Thread.sleep(timeout);
+                timedOut.set(true);
+                process.destroyForcibly();
+            } catch (InterruptedException e) {
+                // Command finished before its deadline
+            }
+        });
+
+        stderr = new OutputRingBuffer(outputBufferBytes);
+        commandLog = logConsumer;
+        try {
+            stdin.write(objectMapper.writeValueAsBytes(arguments));
+            stdin.write(0);
+            stdin.flush();
+
+            OutputRingBuffer output = new OutputRingBuffer(outputBufferBytes);
+            boolean completed;
+            try {
+                completed = readUntilTerminator(output, logConsumer);
+            } catch (IOException e) {
+                if (!timedOut.get()) {
+                    throw e;
+                }
+                completed = false;
+            }
+            if (completed) {
+                return new ExecResult(0, output.text(), stderr.text());
+            }
+            if (timedOut.get()) {
+                stopTimedOutServer();
+                throw new RuntimeException("Command timed out after " + timeout + ": codeql " + String.join(" ", arguments));
+            }
+
+            // The server exits with the failed command's exit code, after writing the error to stderr
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                throw new IOException("CodeQL CLI server in container '" + containerName + "' stopped answering: codeql " + String.join(" ", arguments));
+            }
+            stderrPump.join(Duration.ofSeconds(5));
+            int exitCode = process.exitValue() == 0 ? -1 : process.exitValue();
+            return new ExecResult(exitCode, output.text(), stderr.text());
+        } finally {
+            watchdog.interrupt();
+            commandLog = System.out::println;
+        }
+    }
+
+    /**
+     * Forwards stdout line by line until the NUL byte that ends the command. Returns {@code false} when the
+     * server exited first.
+     */
+    private boolean readUntilTerminator(OutputRingBuffer output, Consumer<String> logConsumer) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int next;
+        while ((next = stdout.read()) != -1) {
+            if (next == 0 || next == '\n') {
+                if (next == '\n' || line.size() > 0) {
+                    String text = line.toString(StandardCharsets.UTF_8);
+                    output.append(text);
+                    logConsumer.accept(text);
+                    line.reset();
+                }
+                if (next == 0) {
+                    return true;
+                }
+                continue;
+            }
+            line.write(next);
+        }
+        if (line.size() > 0) {
+            String text = line.toString(StandardCharsets.UTF_8);
+            output.append(text);
+            logConsumer.accept(text);
+        }
+        return false;
+    }
+
+    /**
+     * Destroying the {@code docker exec} client leaves the server JVM running in the container, so it is killed
+     * there as well. Otherwise the next server would start next to it.
+     */
+    private void stopTimedOutServer() throws InterruptedException {
+        try {
+            commandExecutor.killContainerProcesses(containerName);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("⚠️ Could not kill the CodeQL CLI server in " + containerName + ": " + e.getMessage());
+        }
+        close();
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public boolean isAlive() {
+        return process.isAlive();
+    }
+
+    @Override
+    public void close() {
+        try {
+            stdin.close();
+        } catch (IOException e) {
+            // The server is already gone, nothing left to flush
+        }
+        process.destroy();
+        System.out.println("Stopped CodeQL CLI server in container: " + containerName);
+    }
+
+    private static List<String> command(String containerName, String workDir, ResourceProfile profile) {
+        String heap = "-J=-Xmx" + profile.codeqlRamMegabytes() + "M";
+        if (workDir == null || workDir.isEmpty()) {
+            return List.of("docker", "exec", "-i", containerName, "codeql", "execute", "cli-server", heap);
+        }
+        return List.of("docker", "exec", "-i", "-w", workDir, containerName, "codeql", "execute", "cli-server", heap);
+    }
+}
@@ -1,43 +1,28 @@
 package tsystems.janus.sourcecodeconverter.infrastructure.docker;
 
+import org.apache.commons.io.FileUtils;
 import org.springframework.stereotype.Component;
 import tsystems.janus.sourcecodeconverter.infrastructure.git.PatchApplierService;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.function.Consumer;
 
 @Component
 public class CodeQLDockerAnalysisRunner {
 
-    private final DockerImageBuilder imageBuilder;
-    private final DockerContainerManager containerManager;
-    private final CodeQLDockerConfig config;
     private final PatchApplierService patchApplierService;
 
-    public CodeQLDockerAnalysisRunner(DockerImageBuilder imageBuilder, DockerContainerManager containerManager, CodeQLDockerConfig config, PatchApplierService patchApplierService) {
-        this.imageBuilder = imageBuilder;
-        this.containerManager = containerManager;
-        this.config = config;
+    public CodeQLDockerAnalysisRunner(PatchApplierService patchApplierService) {
         this.patchApplierService = patchApplierService;
     }
 
-    public String prepareAnalysisEnvironment(File projectDir, File qlFile, File outputDir, Consumer<String> logConsumer) throws IOException, InterruptedException {
-        logConsumer.accept("📦 Building Docker image...");
-        System.out.println("Building Docker image with name: " + config.getImageName() + " from directory: " + config.getDockerfileDir());
-        imageBuilder.buildImageIfNecessary(config.getImageName(), config.getDockerfileDir(), logConsumer);
-        System.out.println("Docker image built.");
-        logConsumer.accept("✅ Docker image built.");
-
-        List<String> volumes = prepareVolumes(projectDir, qlFile, outputDir, logConsumer);
-        System.out.println("Prepared volumes: " + volumes);
-
-        String containerName = config.getContainerName();
-        containerManager.startContainer(config.getImageName(), containerName, volumes, logConsumer);
-        System.out.println("Started container: " + containerName);
+    public String prepareAnalysisEnvironment(ContainerLease lease, File projectDir, Consumer<String> logConsumer) throws IOException {
+        logConsumer.accept("📂 Moving project into workspace of container '" + lease.getContainerName() + "'...");
+        stageProject(projectDir, lease.getProjectDir().toFile());
+        System.out.println("Staged project " + projectDir.getAbsolutePath() + " into " + lease.getProjectDir());
 
+        String containerName = lease.getContainerName();
         gitInitialize(containerName, logConsumer);
         addGitAttributes(containerName, logConsumer);
         System.out.println("Docker environment prepared. Container: " + containerName);
@@ -46,18 +31,33 @@ public class CodeQLDockerAnalysisRunner {
         return containerName;
     }
 
+    /**
+     * Copies the project staged in one lease's workspace into another's, e.g. for a shard of the analysis. The git
+     * history stays behind, patches are only applied in the original workspace.
+     */
+    public void copyWorkspace(ContainerLease from, ContainerLease to, Consumer<String> logConsumer) throws IOException {
+        logConsumer.accept("📂 Copying project into workspace of container '" + to.getContainerName() + "'...");
+        File source = from.getProjectDir().toFile();
+        FileUtils.copyDirectory(source, to.getProjectDir().toFile(),
+                file -> !(file.getName().equals(".git") && source.equals(file.getParentFile())));
+    }
+
+    private void stageProject(File projectDir, File workspaceDir) throws IOException {
+        File[] children = projectDir.listFiles();
+        if (children == null) {
+            throw new IOException("Project directory is not readable: " + projectDir.getAbsolutePath());
+        }
+        // The workspace is bind-mounted into the container, so the project has to move into it rather than replace it
+        for (File child : children) {
+            FileUtils.moveToDirectory(child, workspaceDir, false);
+        }
+        FileUtils.deleteQuietly(projectDir);
+    }
+
     private void addGitAttributes(String containerName, Consumer<String> logConsumer) {
         try {
             logConsumer.accept("✍️ Creating .gitattributes to normalize line endings...");
-            String command = "echo '* text=auto' > .gitattributes";
-            containerManager.executeCommandInContainer(
-                    containerName,
-                    config.getContainerProjectPath(),
-                    List.of("bash", "-c", command),
-                    logConsumer
-            );
-
-            patchApplierService.commit(config.getContainerProjectPath(), "Add .gitattributes to normalize line endings");
+            patchApplierService.commitProjectTree(containerName);
 
             logConsumer.accept("✅ .gitattributes file created successfully.");
         } catch (Exception e) {
@@ -68,36 +68,10 @@ public class CodeQLDockerAnalysisRunner {
     private void gitInitialize(String containerName, Consumer<String> logConsumer) {
         try {
             logConsumer.accept("🔧 Initializing Git repository in the project directory...");
-            containerManager.executeCommandInContainer(
-                    containerName,
-                    config.getContainerProjectPath(),
-                    List.of("git", "init"),
-                    logConsumer
-            );
+            patchApplierService.initializeRepository(containerName, logConsumer);
             logConsumer.accept("✅ Git repository initialized successfully.");
         } catch (Exception e) {
             logConsumer.accept("⚠️ Could not initialize Git repository. Patches may have line ending issues.");
         }
     }
-
-    private List<String> prepareVolumes(File projectDir, File qlFile, File outputDir, Consumer<String> logConsumer) throws IOException, InterruptedException {
-        List<String> volumes = new ArrayList<>();
-        volumes.add(projectDir.getAbsolutePath() + ":" + config.getContainerProjectPath());
-        volumes.add(qlFile.getParentFile().getAbsolutePath() + ":" + config.getContainerQueryDir());
-        volumes.add(outputDir.getAbsolutePath() + ":" + config.getContainerOutputDir());
-
-        logConsumer.accept("Ensuring CodeQL database volume '" + config.getDbVolumeName() + "' exists...");
-        boolean exists = containerManager.volumeExists(config.getDbVolumeName());
-
-        if (!exists) {
-            logConsumer.accept("📦 Creating CodeQL database volume: " + config.getDbVolumeName());
-            containerManager.createVolume(config.getDbVolumeName(), logConsumer);
-        } else {
-            logConsumer.accept("✅ CodeQL database volume already exists: " + config.getDbVolumeName());
-        }
-
-        volumes.add(config.getDbVolumeName() + ":" + config.getContainerDbPath());
-
-        return volumes;
-    }
 }
@@ -23,13 +23,17 @@ public class CodeQLDockerConfig {
     @Value("${codeql.db.volume-name:codeql-test-db-volume}")
     private String dbVolumeName;
 
+    @Value("${codeql.query.compilation-cache-volume:codeql-compilation-cache}")
+    private String compilationCacheVolumeName;
+
     private static final String CONTAINER_BASE_PATH = "/app";
     private static final String CONTAINER_PROJECT_PATH = "/app/project";
-    private static final String CONTAINER_QUERY_PATH = "/app/queries/sql-detection.ql";
+    private static final String CONTAINER_QUERY_PATH = "/app/queries/sql-detection.qls";
     private static final String CONTAINER_DB_PATH = "/app/db";
-    private static final String CONTAINER_RESULT_PATH = "/app/output/results.bqrs";
+    private static final String CONTAINER_RESULTS_DIR = "/app/output/results";
     private static final String CONTAINER_QUERY_DIR = "/app/queries";
     private static final String CONTAINER_OUTPUT_DIR = "/app/output";
+    private static final String CONTAINER_COMPILATION_CACHE_DIR = "/app/compilation-cache";
 
     public String getImageName() {
         return imageName;
@@ -59,8 +63,8 @@ public class CodeQLDockerConfig {
         return CONTAINER_DB_PATH;
     }
 
-    public String getContainerResultPath() {
-        return CONTAINER_RESULT_PATH;
+    public String getContainerResultsDir() {
+        return CONTAINER_RESULTS_DIR;
     }
 
     public String getContainerQueryDir() {
@@ -78,4 +82,12 @@ public class CodeQLDockerConfig {
     public String getDbVolumeName() {
         return dbVolumeName;
     }
+
+    public String getCompilationCacheVolumeName() {
+        return compilationCacheVolumeName;
+    }
+
+    public String getContainerCompilationCacheDir() {
+        return CONTAINER_COMPILATION_CACHE_DIR;
+    }
 }
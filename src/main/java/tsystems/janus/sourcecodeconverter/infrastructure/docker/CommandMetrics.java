@@ -0,0 +1,71 @@
+package tsystems.janus.sourcecodeconverter.infrastructure.docker;
+
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Aggregates duration and output volume per command, keyed by the program that ran (for example
+ * {@code docker build} or {@code exec codeql}).
+ */
+@Component
+public class CommandMetrics {
+
+    private final Map<String, Accumulator> accumulators = new ConcurrentHashMap<>();
+
+    public void record(String key, Duration duration, long outputBytes, boolean success) {
+        accumulators.computeIfAbsent(key, k -> new Accumulator()).add(duration, outputBytes, success, false);
+    }
+
+    public void recordTimeout(String key, Duration duration, long outputBytes) {
+        accumulators.computeIfAbsent(key, k -> new Accumulator()).add(duration, outputBytes, false, true);
+    }
+
+    public List<CommandStats> snapshot() {
+        return accumulators.entrySet().stream()
+                .map(entry -> entry.getValue().toStats(entry.getKey()))
+                .sorted(Comparator.comparingLong(CommandStats::totalMillis).reversed())
+                .toList();
+    }
+
+    public static String keyOf(List<String> command) {
+        if (command.isEmpty()) {
+            return "";
+        }
+        if ("docker".equals(command.get(0)) && command.size() > 1) {
+            return "docker " + command.get(1);
+        }
+        return command.get(0);
+    }
+
+    public record CommandStats(String command, long invocations, long failures, long timeouts,
+                               long totalMillis, long maxMillis, long outputBytes) {
+    }
+
+    private static class Accumulator {
+        private long invocations;
+        private long failures;
+        private long timeouts;
+        private long totalMillis;
+        private long maxMillis;
+        private long outputBytes;
+
+        synchronized void add(Duration duration, long bytes, boolean success, boolean timedOut) {
+            long millis = duration.toMillis();
+            invocations++;
+            failures += success ? 0 : 1;
+            timeouts += timedOut ? 1 : 0;
+            totalMillis += millis;
+            maxMillis = Math.max(maxMillis, millis);
+            outputBytes += bytes;
+        }
+
+        synchronized CommandStats toStats(String key) {
+            return new CommandStats(key, invocations, failures, timeouts, totalMillis, maxMillis, outputBytes);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package tsystems.janus.sourcecodeconverter.infrastructure.docker;
+
+import tsystems.janus.sourcecodeconverter.infrastructure.util.TarArchive;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds and reads the tar streams used for bulk file transfers. Container paths are absolute and stored in the
+ * archive relative to the container root, so a whole set of files moves with a single exec or copy.
+ */
+final class ContainerArchives {
+
+    private ContainerArchives() {
+    }
+
+    static List<String> archiveCommand(Collection<String> containerPaths) {
+        List<String> command = new ArrayList<>(List.of("tar", "--ignore-failed-read", "-cf", "-", "-C", "/", "--"));
+        for (String path : containerPaths) {
+            command.add(toEntryName(path));
+        }
+        return command;
+    }
+
+    static Map<String, byte[]> readArchive(InputStream archive) throws IOException {
+        Map<String, byte[]> files = new LinkedHashMap<>();
+        TarArchive.Reader reader = new TarArchive.Reader(archive);
+        TarArchive.Entry entry;
+        while ((entry = reader.nextEntry()) != null) {
+            if (!entry.directory()) {
+                files.put("/" + entry.name(), reader.readContent());
+            }
+        }
+        return files;
+    }
+
+    static byte[] createArchive(Map<String, byte[]> files) throws IOException {
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        try (TarArchive.Writer writer = new TarArchive.Writer(archive)) {
+            for (Map.Entry<String, byte[]> file : files.entrySet()) {
+                writer.addFile(toEntryName(file.getKey()), file.getValue());
+            }
+        }
+        return archive.toByteArray();
+    }
+
+    private static String toEntryName(String containerPath) {
+        if (!containerPath.startsWith("/")) {
+            throw new IllegalArgumentException("Container path must be absolute: " + containerPath);
+        }
+        return containerPath.replaceAll("^/+", "");
+    }
+}
@@ -0,0 +1,65 @@
+package tsystems.janus.sourcecodeconverter.infrastructure.docker;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+public interface ContainerBackend {
+
+    String getName();
+
+    boolean imageExists(String imageName) throws IOException, InterruptedException;
+
+    boolean volumeExists(String volumeName);
+
+    void createVolume(String volumeName, Consumer<String> logConsumer) throws IOException, InterruptedException;
+
+    void removeVolume(String volumeName, Consumer<String> logConsumer) throws IOException, InterruptedException;
+
+    void runContainer(String imageName, String containerName, List<String> volumes, Consumer<String> logConsumer) throws IOException, InterruptedException;
+
+    void removeContainer(String containerName, Consumer<String> logConsumer) throws IOException, InterruptedException;
+
+    /**
+     * Changes the CPU and memory limits of a running container. Swap is capped at the memory limit.
+     */
+    void updateResources(String containerName, ResourceProfile profile) throws IOException, InterruptedException;
+
+    ExecResult exec(String containerName, String workDir, List<String> command, Consumer<String> logConsumer) throws IOException, InterruptedException;
+
+    /**
+     * Runs {@code codeql} with the given arguments. Backends that keep a CodeQL CLI server per container run it
+     * there, the default starts the CLI for every command.
+     */
+    default ExecResult execCodeQL(String containerName, String workDir, List<String> arguments, ResourceProfile profile, Consumer<String> logConsumer) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>(List.of("codeql"));
+        command.addAll(arguments);
+        return exec(containerName, workDir, command, logConsumer);
+    }
+
+    void copyFromContainer(String containerName, String containerPath, String hostPath) throws IOException, InterruptedException;
+
+    void copyToContainer(String containerName, String hostPath, String containerPath) throws IOException, InterruptedException;
+
+    /**
+     * Reads the given absolute paths in one tar transfer. Paths that do not exist are missing from the result.
+     */
+    Map<String, byte[]> readFiles(String containerName, Collection<String> containerPaths) throws IOException, InterruptedException;
+
+    /**
+     * Writes all files, keyed by absolute container path, in one tar transfer. Parent directories must exist.
+     */
+    void writeFiles(String containerName, Map<String, byte[]> files) throws IOException, InterruptedException;
+
+    /**
+     * Kills every process in the container except its init process, outside of any exec session so it does not
+     * wait behind the command it is meant to stop.
+     */
+    void killProcesses(String containerName) throws IOException, InterruptedException;
+
+    default void releaseContainerResources(String containerName) {
+    }
+}
@@ -0,0 +1,58 @@
+package tsystems.janus.sourcecodeconverter.infrastructure.docker;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Arrays;
+
+@Configuration
+public class ContainerBackendConfig {
+
+    @Bean
+    public ContainerBackend containerBackend(DockerCommandExecutor commandExecutor,
+                                             ObjectMapper objectMapper,
+                                             @Value("${codeql.docker.backend:auto}") String backend,
+                                             @Value("${codeql.docker.socket-path:/var/run/docker.sock}") String socketPath,
+                                             @Value("${codeql.docker.engine.max-idle-connections:4}") int maxIdleConnections,
+                                             @Value("${codeql.docker.exec-session.enabled:true}") boolean execSessionEnabled,
+                                             @Value("${codeql.cli-server.enabled:true}") boolean cliServerEnabled,
+                                             @Value("${codeql.docker.command-timeout:2h}") Duration commandTimeout) {
+        Path socket = Paths.get(socketPath);
+        boolean useEngineApi = switch (backend.toLowerCase()) {
+            case "engine-api" -> true;
+            case "cli" -> false;
+            // The CodeQL CLI server talks over the stdin of a `docker exec -i`, which only the CLI backend attaches
+            default -> Files.exists(socket) && !(cliServerEnabled && dockerCliOnPath());
+        };
+
+        if (useEngineApi) {
+            System.out.println("Using Docker Engine API backend over socket: " + socket);
+            if (cliServerEnabled) {
+                System.out.println("⚠️ The CodeQL CLI server needs the Docker CLI backend and an installed docker CLI,"
+                        + " CodeQL commands start their own CLI.");
+            }
+            return new EngineApiContainerBackend(new DockerEngineClient(socket, maxIdleConnections, objectMapper),
+                    commandTimeout, commandExecutor.getOutputBufferBytes());
+        }
+
+        System.out.println("Using Docker CLI backend" + (cliServerEnabled ? " with the CodeQL CLI server" : ""));
+        return new CliContainerBackend(commandExecutor, execSessionEnabled, cliServerEnabled, commandTimeout, objectMapper);
+    }
+
+    private static boolean dockerCliOnPath() {
+        String path = System.getenv("PATH");
+        if (path == null) {
+            return false;
+        }
+        return Arrays.stream(path.split(File.pathSeparator))
+                .filter(dir -> !dir.isEmpty())
+                .anyMatch(dir -> Files.isExecutable(Paths.get(dir, "docker")) || Files.isExecutable(Paths.get(dir, "docker.exe")));
+    }
+}
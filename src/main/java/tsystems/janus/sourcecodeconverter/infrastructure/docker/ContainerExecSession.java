@@ -0,0 +1,141 @@
+package tsystems.janus.sourcecodeconverter.infrastructure.docker;
+
+import tsystems.janus.sourcecodeconverter.infrastructure.util.OutputRingBuffer;
+import tsystems.janus.sourcecodeconverter.infrastructure.util.ShellQuote;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * A long-lived {@code docker exec -i <container> bash} process that runs framed commands over a single
+ * stdin/stdout channel. Every command is written as one shell line followed by an end marker carrying
+ * its exit code, so many commands can be executed without forking a new docker CLI process each time.
+ */
+public class ContainerExecSession implements AutoCloseable {
+
+    private static final String MARKER_PREFIX = "__JANUS_EXEC_END_";
+
+    private final String containerName;
+    private final Process process;
+    private final DockerCommandExecutor commandExecutor;
+    private final Writer stdin;
+    private final BufferedReader stdout;
+    private final long outputBufferBytes;
+
+    private ContainerExecSession(String containerName, Process process, DockerCommandExecutor commandExecutor) {
+        this.containerName = containerName;
+        this.process = process;
+        this.commandExecutor = commandExecutor;
+        this.outputBufferBytes = commandExecutor.getOutputBufferBytes();
+        this.stdin = new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8);
+        this.stdout = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    public static ContainerExecSession open(String containerName, DockerCommandExecutor commandExecutor) throws IOException {
+        ProcessBuilder processBuilder = new ProcessBuilder("docker", "exec", "-i", containerName, "bash");
+        processBuilder.redirectErrorStream(true);
+        return new ContainerExecSession(containerName, processBuilder.start(), commandExecutor);
+    }
+
+    /**
+     * Runs one command in the session. Past the timeout the session is killed together with the command's
+     * processes in the container, and the command fails.
+     */
+    public synchronized ExecResult execute(String workDir, List<String> command, Duration timeout, Consumer<String> logConsumer) throws IOException, InterruptedException {
+        if (!isAlive()) {
+            throw new IOException("Exec session for container '" + containerName + "' is no longer running");
+        }
+
+        AtomicBoolean timedOut = new AtomicBoolean();
+        Thread watchdog = Thread.ofVirtual().start(() -> {
+            try {
+                Thread.sleep(timeout);
+                timedOut.set(true);
+                process.descendants().forEach(ProcessHandle::destroyForcibly);
+                process.destroyForcibly();
+            } catch (InterruptedException e) {
+                // Command finished before its deadline
+            }
+        });
+
+        try {
+            return readUntilMarker(workDir, command, logConsumer);
+        } catch (IOException e) {
+            if (timedOut.get()) {
+                killContainerProcesses();
+                throw new RuntimeException("Command timed out after " + timeout + ": " + String.join(" ", command), e);
+            }
+            throw e;
+        } finally {
+            watchdog.interrupt();
+        }
+    }
+
+    private ExecResult readUntilMarker(String workDir, List<String> command, Consumer<String> logConsumer) throws IOException {
+        String marker = MARKER_PREFIX + UUID.randomUUID().toString().replace("-", "") + "__";
+        stdin.write(frame(workDir, command, marker));
+        stdin.flush();
+
+        OutputRingBuffer output = new OutputRingBuffer(outputBufferBytes);
+        String line;
+        while ((line = stdout.readLine()) != null) {
+            int markerIndex = line.indexOf(marker);
+            if (markerIndex < 0) {
+                output.append(line);
+                logConsumer.accept(line);
+                continue;
+            }
+
+            String trailingOutput = line.substring(0, markerIndex);
+            if (!trailingOutput.isEmpty()) {
+                output.append(trailingOutput);
+                logConsumer.accept(trailingOutput);
+            }
+            int exitCode = Integer.parseInt(line.substring(markerIndex + marker.length()).trim());
+            return new ExecResult(exitCode, output.text(), "");
+        }
+
+        throw new IOException("Exec session for container '" + containerName + "' terminated while running: " + String.join(" ", command));
+    }
+
+    private void killContainerProcesses() throws InterruptedException {
+        try {
+            commandExecutor.killContainerProcesses(containerName);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("⚠️ Could not kill the processes of timed out command in " + containerName + ": " + e.getMessage());
+        }
+    }
+
+    public boolean isAlive() {
+        return process.isAlive();
+    }
+
+    @Override
+    public void close() {
+        try {
+            stdin.write("exit\n");
+            stdin.flush();
+        } catch (IOException e) {
+            // The session is already gone, nothing left to flush
+        }
+        process.destroy();
+    }
+
+    private static String frame(String workDir, List<String> command, String marker) {
+        String quotedCommand = command.stream().map(ShellQuote::quote).collect(Collectors.joining(" "));
+        String changeDir = workDir != null && !workDir.isEmpty() ? "cd " + ShellQuote.quote(workDir) + " && " : "";
+
+        return "( " + changeDir + "exec " + quotedCommand + " ) < /dev/null 2>&1; "
+                + "printf '%s %d\\n' " + ShellQuote.quote(marker) + " \"$?\"\n";
+    }
+}
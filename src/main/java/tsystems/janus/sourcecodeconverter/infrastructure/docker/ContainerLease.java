@@ -0,0 +1,71 @@
+package tsystems.janus.sourcecodeconverter.infrastructure.docker;
+
+import java.nio.file.Path;
+
+/**
+ * A pooled analysis container handed out to a single job. The project and output directories are host
+ * workspaces bind-mounted at the fixed container paths from {@link CodeQLDockerConfig}.
+ */
+public class ContainerLease {
+
+    private final int slot;
+    private final String containerName;
+    private final String dbVolumeName;
+    private final Path projectDir;
+    private final Path outputDir;
+    private volatile long idleSince;
+    private volatile ResourceProfile resourceProfile;
+
+    ContainerLease(int slot, String containerName, String dbVolumeName, Path projectDir, Path outputDir) {
+        this.slot = slot;
+        this.containerName = containerName;
+        this.dbVolumeName = dbVolumeName;
+        this.projectDir = projectDir;
+        this.outputDir = outputDir;
+        this.idleSince = System.currentTimeMillis();
+    }
+
+    public int getSlot() {
+        return slot;
+    }
+
+    public String getContainerName() {
+        return containerName;
+    }
+
+    public String getDbVolumeName() {
+        return dbVolumeName;
+    }
+
+    public Path getProjectDir() {
+        return projectDir;
+    }
+
+    public Path getOutputDir() {
+        return outputDir;
+    }
+
+    /**
+     * The limits currently applied to the container, {@code null} until the pool applies the first profile.
+     */
+    public ResourceProfile getResourceProfile() {
+        return resourceProfile;
+    }
+
+    void setResourceProfile(ResourceProfile resourceProfile) {
+        this.resourceProfile = resourceProfile;
+    }
+
+    long getIdleSince() {
+        return idleSince;
+    }
+
+    void markIdle() {
+        this.idleSince = System.currentTimeMillis();
+    }
+
+    @Override
+    public String toString() {
+        return containerName;
+    }
+}
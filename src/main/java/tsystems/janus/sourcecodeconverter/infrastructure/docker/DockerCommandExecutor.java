@@ -1,60 +1,231 @@
 package tsystems.janus.sourcecodeconverter.infrastructure.docker;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import tsystems.janus.sourcecodeconverter.infrastructure.util.OutputRingBuffer;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 
 @Component
 public class DockerCommandExecutor {
 
+    private static final ExecutorService VIRTUAL_THREADS = Executors.newVirtualThreadPerTaskExecutor();
+    private static final Duration KILL_TIMEOUT = Duration.ofSeconds(30);
+
+    private final CommandMetrics metrics;
+    private final Duration defaultTimeout;
+    private final long outputBufferBytes;
+
+    public DockerCommandExecutor(CommandMetrics metrics,
+                                 @Value("${codeql.docker.command-timeout:2h}") Duration defaultTimeout,
+                                 @Value("${codeql.docker.output-buffer-bytes:1048576}") long outputBufferBytes) {
+        this.metrics = metrics;
+        this.defaultTimeout = defaultTimeout;
+        this.outputBufferBytes = outputBufferBytes;
+    }
+
+    /**
+     * Bytes of output kept per command, the same budget applies to the other ways commands run in a container.
+     */
+    public long getOutputBufferBytes() {
+        return outputBufferBytes;
+    }
+
     public void execute(List<String> command, Consumer<String> logConsumer) throws IOException, InterruptedException {
         System.out.println("Executing command: " + String.join(" ", command));
-        ProcessBuilder processBuilder = new ProcessBuilder(command);
-        processBuilder.redirectErrorStream(true);
+        ExecResult result = run(command, logConsumer);
 
-        Process process = processBuilder.start();
+        if (!result.isSuccess()) {
+            String fullCommand = String.join(" ", command);
+            logConsumer.accept("❌ Command failed with exit code " + result.exitCode() + ": " + fullCommand);
+            throw new RuntimeException("Command failed with exit code " + result.exitCode());
+        }
+    }
 
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-            System.out.println("Reading process output...");
-            String line;
-            while ((line = reader.readLine()) != null) {
-                System.out.println(line);
-                logConsumer.accept(line);
-            }
-        } catch (Exception e) {
-            System.out.println("Error reading process output: " + e.getMessage());
+    public String executeAndCaptureOutput(List<String> command) throws IOException, InterruptedException {
+        ExecResult result = run(command, line -> {
+        });
+
+        if (!result.isSuccess()) {
+            throw new RuntimeException("Command failed with exit code " + result.exitCode() + ": " + String.join(" ", command));
         }
+        return result.stdout().trim();
+    }
 
-        int exitCode = process.waitFor();
-        if (exitCode != 0) {
-            String fullCommand = String.join(" ", command);
-            logConsumer.accept("❌ Command failed with exit code " + exitCode + ": " + fullCommand);
-            throw new RuntimeException("Command failed with exit code " + exitCode);
+    public ExecResult run(List<String> command, Consumer<String> lineConsumer) throws IOException, InterruptedException {
+        return run(command, defaultTimeout, lineConsumer);
+    }
+
+    public ExecResult run(List<String> command, Duration timeout, Consumer<String> lineConsumer) throws IOException, InterruptedException {
+        CompletableFuture<ExecResult> future = executeAsync(command, timeout, lineConsumer);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof TimeoutException) {
+                throw new RuntimeException(cause.getMessage(), cause);
+            }
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IOException(cause);
         }
     }
 
-    public String executeAndCaptureOutput(List<String> command) throws IOException, InterruptedException {
+    /**
+     * Kills every process in the container except its init process with a fresh exec. Killing a {@code docker exec}
+     * client on the host does not stop the command it started inside the container.
+     */
+    public void killContainerProcesses(String containerName) throws IOException, InterruptedException {
+        run(List.of("docker", "exec", containerName, "kill", "-9", "-1"), KILL_TIMEOUT, line -> {
+        });
+    }
+
+    /**
+     * Starts the command and pumps its output on virtual threads into a bounded buffer. The future fails with a
+     * {@link TimeoutException} when the deadline passes, and the whole process tree is killed on timeout or
+     * when the future is cancelled.
+     */
+    public CompletableFuture<ExecResult> executeAsync(List<String> command, Duration timeout, Consumer<String> lineConsumer) {
         ProcessBuilder processBuilder = new ProcessBuilder(command);
         processBuilder.redirectErrorStream(true);
 
+        Process process;
+        try {
+            process = processBuilder.start();
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        long startedAt = System.nanoTime();
+        OutputRingBuffer output = new OutputRingBuffer(outputBufferBytes);
+        CompletableFuture<Void> pump = CompletableFuture.runAsync(() -> pumpOutput(process, output, lineConsumer), VIRTUAL_THREADS);
+
+        CompletableFuture<ExecResult> result = CompletableFuture.supplyAsync(() -> {
+            String key = CommandMetrics.keyOf(command);
+            try {
+                if (!process.waitFor(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                    killProcessTree(process);
+                    metrics.recordTimeout(key, Duration.ofNanos(System.nanoTime() - startedAt), output.totalBytes());
+                    throw new CompletionException(new TimeoutException(
+                            "Command timed out after " + timeout + ": " + String.join(" ", command)));
+                }
+                pump.join();
+            } catch (InterruptedException e) {
+                killProcessTree(process);
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            }
+
+            int exitCode = process.exitValue();
+            metrics.record(key, Duration.ofNanos(System.nanoTime() - startedAt), output.totalBytes(), exitCode == 0);
+            if (output.isTruncated()) {
+                System.out.println("Output of '" + key + "' exceeded " + outputBufferBytes + " bytes, only the tail was kept ("
+                        + output.totalLines() + " lines in total).");
+            }
+            return new ExecResult(exitCode, output.text(), "");
+        }, VIRTUAL_THREADS);
+
+        result.whenComplete((execResult, error) -> {
+            if (result.isCancelled()) {
+                killProcessTree(process);
+            }
+        });
+        return result;
+    }
+
+    @FunctionalInterface
+    public interface OutputReader {
+        void read(InputStream stdout) throws IOException;
+    }
+
+    /**
+     * Runs a command whose stdin/stdout carry binary data, e.g. a tar stream. Stdout is handed to the reader as it
+     * arrives, and whatever the reader leaves unread is discarded. Stderr is passed through to the application's
+     * stderr. The deadline covers the whole transfer: past it the process tree is killed, which
+     * ends the stream, and the command fails.
+     */
+    public int runBinary(List<String> command, byte[] input, OutputReader outputReader) throws IOException, InterruptedException {
+        ProcessBuilder processBuilder = new ProcessBuilder(command);
+        processBuilder.redirectError(ProcessBuilder.Redirect.INHERIT);
+
         Process process = processBuilder.start();
-        StringBuilder output = new StringBuilder();
+        AtomicBoolean timedOut = new AtomicBoolean();
+        CompletableFuture<Void> watchdog = CompletableFuture.runAsync(() -> {
+            try {
+                if (!process.waitFor(defaultTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                    timedOut.set(true);
+                    killProcessTree(process);
+                }
+            } catch (InterruptedException e) {
+                killProcessTree(process);
+            }
+        }, VIRTUAL_THREADS);
+
+        try {
+            try (OutputStream stdin = process.getOutputStream()) {
+                if (input != null) {
+                    stdin.write(input);
+                }
+            }
+            try (InputStream stdout = process.getInputStream()) {
+                outputReader.read(stdout);
+                stdout.transferTo(OutputStream.nullOutputStream());
+            }
+            process.waitFor();
+        } catch (IOException e) {
+            if (!timedOut.get()) {
+                throw e;
+            }
+        } finally {
+            if (process.isAlive()) {
+                killProcessTree(process);
+            }
+            watchdog.join();
+        }
 
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+        if (timedOut.get()) {
+            throw new RuntimeException("Command timed out after " + defaultTimeout + ": " + String.join(" ", command));
+        }
+        return process.exitValue();
+    }
+
+    private static void pumpOutput(Process process, OutputRingBuffer output, Consumer<String> lineConsumer) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
             String line;
             while ((line = reader.readLine()) != null) {
-                output.append(line).append("\n");
+                output.append(line);
+                lineConsumer.accept(line);
             }
+        } catch (Exception e) {
+            System.out.println("Error reading process output: " + e.getMessage());
         }
+    }
 
-        int exitCode = process.waitFor();
-        if (exitCode != 0) {
-            throw new RuntimeException("Command failed with exit code " + exitCode + ": " + String.join(" ", command));
-        }
-        return output.toString().trim();
+    private static void killProcessTree(Process process) {
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
     }
 }
@@ -1,93 +1,102 @@
 package tsystems.janus.sourcecodeconverter.infrastructure.docker;
 
 import org.springframework.stereotype.Component;
+import tsystems.janus.sourcecodeconverter.infrastructure.util.Uninterruptibles;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.util.ArrayList;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Consumer;
 
 @Component
 public class DockerContainerManager {
 
-    private final DockerCommandExecutor commandExecutor;
+    private final ContainerBackend backend;
+    private final CommandMetrics metrics;
 
-    public DockerContainerManager(DockerCommandExecutor commandExecutor) {
-        this.commandExecutor = commandExecutor;
+    public DockerContainerManager(ContainerBackend backend, CommandMetrics metrics) {
+        this.backend = backend;
+        this.metrics = metrics;
     }
 
     public String startContainer(String imageName, String containerName, List<String> volumes, Consumer<String> logConsumer) throws IOException, InterruptedException {
-        List<String> startCommand = new ArrayList<>(List.of(
-                "docker", "run", "-d",
-                "--dns=8.8.8.8",
-                "--name", containerName
-        ));
-        for (String volume : volumes) {
-            startCommand.add("-v");
-            startCommand.add(volume);
-        }
-        startCommand.add(imageName);
-        startCommand.addAll(List.of("tail", "-f", "/dev/null")); // Keep container running
-
         logConsumer.accept("Starting Docker container...");
-        commandExecutor.execute(startCommand, logConsumer);
+        backend.runContainer(imageName, containerName, volumes, logConsumer);
         logConsumer.accept("✅ Docker container started: " + containerName);
 
         return containerName;
     }
 
+    public void applyResourceProfile(String containerName, ResourceProfile profile, Consumer<String> logConsumer) throws IOException, InterruptedException {
+        logConsumer.accept("⚙️ Applying resource profile '" + profile.name() + "' to " + containerName + " ("
+                + profile.cpus() + " CPUs, " + profile.memoryBytes() / (1024 * 1024) + " MB)");
+        backend.updateResources(containerName, profile);
+    }
+
+    public void removeContainer(String containerName, Consumer<String> logConsumer) throws IOException, InterruptedException {
+        backend.removeContainer(containerName, logConsumer);
+    }
+
     public void executeCommandInContainer(String containerName, String workDir, List<String> command, Consumer<String> logConsumer) throws IOException, InterruptedException {
-        commandExecutor.execute(executeCommand(containerName, workDir, command), logConsumer);
+        ExecResult result = timedExec(containerName, workDir, command, logConsumer);
+        if (!result.isSuccess()) {
+            logConsumer.accept("❌ Command failed with exit code " + result.exitCode() + ": " + String.join(" ", command));
+            throw new RuntimeException("Command failed with exit code " + result.exitCode());
+        }
     }
 
     public String executeCommandInContainerAndCaptureOutput(String containerName, String workDir, List<String> command) throws IOException, InterruptedException {
-        return commandExecutor.executeAndCaptureOutput(executeCommand(containerName, workDir, command));
+        ExecResult result = timedExec(containerName, workDir, command, line -> {
+        });
+        if (!result.isSuccess()) {
+            throw new RuntimeException("Command failed with exit code " + result.exitCode() + ": " + String.join(" ", command));
+        }
+        return result.stdout().trim();
     }
 
-    private List<String> executeCommand(String containerName, String workDir, List<String> command) {
-        List<String> execCommand = new ArrayList<>(List.of("docker", "exec"));
-
-        if (workDir != null && !workDir.isEmpty()) {
-            execCommand.add("-w");
-            execCommand.add(workDir);
+    /**
+     * Runs {@code codeql} with the given arguments, in the container's CodeQL CLI server when the backend keeps one.
+     */
+    public void executeCodeQLInContainer(String containerName, String workDir, List<String> arguments, ResourceProfile profile, Consumer<String> logConsumer) throws IOException, InterruptedException {
+        long startedAt = System.nanoTime();
+        ExecResult result = backend.execCodeQL(containerName, workDir, arguments, profile, logConsumer);
+        long outputBytes = result.stdout().length() + result.stderr().length();
+        metrics.record("codeql " + String.join(" ", arguments.subList(0, Math.min(2, arguments.size()))),
+                Duration.ofNanos(System.nanoTime() - startedAt), outputBytes, result.isSuccess());
+        if (!result.isSuccess()) {
+            logConsumer.accept("❌ Command failed with exit code " + result.exitCode() + ": codeql " + String.join(" ", arguments));
+            throw new RuntimeException("Command failed with exit code " + result.exitCode());
         }
+    }
 
-        execCommand.add(containerName);
-        execCommand.addAll(command);
-        return execCommand;
+    private ExecResult timedExec(String containerName, String workDir, List<String> command, Consumer<String> logConsumer) throws IOException, InterruptedException {
+        long startedAt = System.nanoTime();
+        ExecResult result = backend.exec(containerName, workDir, command, logConsumer);
+        long outputBytes = result.stdout().length() + result.stderr().length();
+        metrics.record("exec " + CommandMetrics.keyOf(command), Duration.ofNanos(System.nanoTime() - startedAt), outputBytes, result.isSuccess());
+        return result;
     }
 
     public void createVolume(String volumeName, Consumer<String> logConsumer) throws IOException, InterruptedException {
         logConsumer.accept("Creating Docker volume '" + volumeName + "'");
-        commandExecutor.execute(List.of("docker", "volume", "create", volumeName), logConsumer);
+        backend.createVolume(volumeName, logConsumer);
         logConsumer.accept("✅ Docker volume '" + volumeName + "' created.");
     }
 
-    public boolean isMountedVolumeInContainerEmpty(String containerName, String wordDir, String mountPath) {
-        List<String> command = List.of("sh", "-c", "\"if ls " + mountPath + "/* "+ mountPath +"/.* >/dev/null 2>&1; then echo 'not empty'; else echo 'empty'; fi\"");
-
-        try {
-            String output = this.executeCommandInContainerAndCaptureOutput(containerName, wordDir, command);
-            System.out.println("Checking mounted volume in container: " + output.trim());
-            return "empty".equals(output.trim());
-        } catch (Exception e) {
-            System.err.println("Error checking mounted volume in container: " + e.getMessage());
-            return true;
-        }
+    public void removeVolume(String volumeName, Consumer<String> logConsumer) throws IOException, InterruptedException {
+        backend.removeVolume(volumeName, logConsumer);
     }
 
     public boolean volumeExists(String volumeName) {
-        List<String> command = List.of("docker", "volume", "inspect", volumeName);
+        return backend.volumeExists(volumeName);
+    }
 
-        try {
-            commandExecutor.execute(command, System.out::println);
-            return true;
-        } catch (Exception e) {
-            return false;
-        }
+    public boolean imageExists(String imageName) throws IOException, InterruptedException {
+        return backend.imageExists(imageName);
     }
 
     public void copyFileFromContainer(String containerName, String containerPath, String hostPath) throws IOException, InterruptedException {
@@ -95,44 +104,49 @@ public class DockerContainerManager {
         System.out.println("Source: " + containerPath);
         System.out.println("Destination: " + hostPath);
 
-        commandExecutor.execute(
-                List.of("docker", "cp", containerName + ":" + containerPath, hostPath),
-                System.out::println
-        );
+        backend.copyFromContainer(containerName, containerPath, hostPath);
     }
 
     public String readFileFromContainer(String containerName, String workDir, String filePathInContainer) throws IOException, InterruptedException {
-        StringBuilder contentBuilder = new StringBuilder();
+        String absolutePath = filePathInContainer.startsWith("/") ? filePathInContainer : workDir + "/" + filePathInContainer;
+        String content = readFilesFromContainer(containerName, List.of(absolutePath)).get(absolutePath);
+        if (content == null) {
+            throw new IOException("File not found in container '" + containerName + "': " + absolutePath);
+        }
+        return content;
+    }
 
-        String output = executeCommandInContainerAndCaptureOutput(
-                containerName,
-                workDir,
-                List.of("cat", filePathInContainer)
-        );
-        contentBuilder.append(output);
-        return contentBuilder.toString();
+    public Map<String, String> readFilesFromContainer(String containerName, Collection<String> filePathsInContainer) throws IOException, InterruptedException {
+        System.out.println("Reading " + filePathsInContainer.size() + " files from container '" + containerName + "'...");
+        Map<String, String> contents = new LinkedHashMap<>();
+        backend.readFiles(containerName, filePathsInContainer)
+                .forEach((path, bytes) -> contents.put(path, new String(bytes, StandardCharsets.UTF_8)));
+        return contents;
     }
 
     public void writeFileToContainer(String containerName, String filePathInContainer, String content) throws IOException, InterruptedException {
-        Path tempFile = null;
-        try {
-            tempFile = Files.createTempFile("temp-patch-", ".java");
-
-            Files.writeString(tempFile, content, StandardCharsets.UTF_8);
-
-            String containerDestination = containerName + ":" + filePathInContainer;
-            commandExecutor.execute(
-                    List.of("docker", "cp", tempFile.toAbsolutePath().toString(), containerDestination),
-                    System.out::println
-            );
-        } finally {
-            if (tempFile != null) {
-                try {
-                    Files.deleteIfExists(tempFile);
-                } catch (IOException e) {
-                    System.err.println("Warning: Failed to delete temporary file: " + tempFile.toAbsolutePath());
-                }
+        writeFilesToContainer(containerName, Map.of(filePathInContainer, content));
+    }
+
+    public void writeFilesToContainer(String containerName, Map<String, String> contentsByPath) throws IOException, InterruptedException {
+        System.out.println("Writing " + contentsByPath.size() + " files to container '" + containerName + "'...");
+        Map<String, byte[]> files = new LinkedHashMap<>();
+        contentsByPath.forEach((path, content) -> files.put(path, content.getBytes(StandardCharsets.UTF_8)));
+        backend.writeFiles(containerName, files);
+    }
+
+    public void killContainerProcesses(String containerName) {
+        Uninterruptibles.run("kill-" + containerName, () -> {
+            try {
+                System.out.println("🛑 Killing running processes in container: " + containerName);
+                backend.killProcesses(containerName);
+            } catch (Exception e) {
+                System.err.println("⚠️ Could not kill processes in container " + containerName + ": " + e.getMessage());
             }
-        }
+        });
+    }
+
+    public void releaseContainerResources(String containerName) {
+        backend.releaseContainerResources(containerName);
     }
 }
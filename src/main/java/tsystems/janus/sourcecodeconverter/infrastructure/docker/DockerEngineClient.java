@@ -0,0 +1,362 @@
+package tsystems.janus.sourcecodeconverter.infrastructure.docker;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.StandardProtocolFamily;
+import java.net.URLEncoder;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+
+/**
+ * HTTP/1.1 client for the Docker Engine API over its Unix domain socket. Keep-alive connections are pooled
+ * and reused; streamed responses (exec output, archives) own their connection until the stream is closed.
+ */
+public class DockerEngineClient implements AutoCloseable {
+
+    private final Path socketPath;
+    private final int maxIdleConnections;
+    private final ObjectMapper objectMapper;
+    private final BlockingDeque<Connection> idleConnections = new LinkedBlockingDeque<>();
+
+    public DockerEngineClient(Path socketPath, int maxIdleConnections, ObjectMapper objectMapper) {
+        this.socketPath = socketPath;
+        this.maxIdleConnections = maxIdleConnections;
+        this.objectMapper = objectMapper;
+    }
+
+    public Response get(String path) throws IOException {
+        return send("GET", path, null, null);
+    }
+
+    public Response delete(String path) throws IOException {
+        return send("DELETE", path, null, null);
+    }
+
+    public Response postJson(String path, Object body) throws IOException {
+        return send("POST", path, "application/json", body == null ? null : objectMapper.writeValueAsBytes(body));
+    }
+
+    public Response put(String path, String contentType, byte[] body) throws IOException {
+        return send("PUT", path, contentType, body);
+    }
+
+    public StreamResponse openStream(String method, String path, Object jsonBody) throws IOException {
+        byte[] body = jsonBody == null ? null : objectMapper.writeValueAsBytes(jsonBody);
+        Connection connection = openConnection();
+        try {
+            connection.writeRequest(method, path, body == null ? null : "application/json", body);
+            ResponseHead head = connection.readHead();
+            InputStream bodyStream = connection.bodyStream(method, head);
+            return new StreamResponse(head.status(), head.headers(), new FilterInputStream(bodyStream) {
+                @Override
+                public void close() {
+                    connection.close();
+                }
+            });
+        } catch (IOException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    public JsonNode readJson(Response response) throws IOException {
+        return response.body().length == 0 ? objectMapper.createObjectNode() : objectMapper.readTree(response.body());
+    }
+
+    public IOException failure(String operation, Response response) {
+        String message = new String(response.body(), StandardCharsets.UTF_8);
+        try {
+            JsonNode json = objectMapper.readTree(response.body());
+            if (json != null && json.hasNonNull("message")) {
+                message = json.get("message").asText();
+            }
+        } catch (IOException e) {
+            // Not a JSON error body, keep the raw text
+        }
+        return new IOException("Docker API " + operation + " failed with status " + response.status() + ": " + message);
+    }
+
+    public static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    private Response send(String method, String path, String contentType, byte[] body) throws IOException {
+        Connection connection = idleConnections.pollFirst();
+        boolean reused = connection != null;
+        if (connection == null) {
+            connection = openConnection();
+        }
+
+        try {
+            connection.writeRequest(method, path, contentType, body);
+            ResponseHead head = connection.readHead();
+            byte[] responseBody = connection.bodyStream(method, head).readAllBytes();
+
+            if (head.keepAlive() && head.delimited() && idleConnections.size() < maxIdleConnections) {
+                idleConnections.offerFirst(connection);
+            } else {
+                connection.close();
+            }
+            return new Response(head.status(), head.headers(), responseBody);
+        } catch (IOException e) {
+            connection.close();
+            if (reused && !connection.responseStarted()) {
+                // The daemon dropped the idle keep-alive connection before answering, retry once on a fresh one.
+                // Once a response started, the request reached the daemon and a POST must not run twice.
+                return send(method, path, contentType, body);
+            }
+            throw e;
+        }
+    }
+
+    private Connection openConnection() throws IOException {
+        SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+        try {
+            channel.connect(UnixDomainSocketAddress.of(socketPath));
+        } catch (IOException e) {
+            channel.close();
+            throw new IOException("Could not connect to Docker socket " + socketPath + ": " + e.getMessage(), e);
+        }
+        return new Connection(channel);
+    }
+
+    @Override
+    public void close() {
+        Connection connection;
+        while ((connection = idleConnections.pollFirst()) != null) {
+            connection.close();
+        }
+    }
+
+    public record Response(int status, Map<String, String> headers, byte[] body) {
+
+        public boolean isSuccess() {
+            return status >= 200 && status < 300;
+        }
+    }
+
+    public record StreamResponse(int status, Map<String, String> headers, InputStream body) implements AutoCloseable {
+
+        public boolean isSuccess() {
+            return status >= 200 && status < 300;
+        }
+
+        @Override
+        public void close() throws IOException {
+            body.close();
+        }
+    }
+
+    private record ResponseHead(int status, Map<String, String> headers) {
+
+        boolean chunked() {
+            return headers.getOrDefault("transfer-encoding", "").toLowerCase(Locale.ROOT).contains("chunked");
+        }
+
+        long contentLength() {
+            String value = headers.get("content-length");
+            return value == null ? -1 : Long.parseLong(value.trim());
+        }
+
+        boolean delimited() {
+            return chunked() || contentLength() >= 0 || status == 204 || status == 304;
+        }
+
+        boolean keepAlive() {
+            return !"close".equalsIgnoreCase(headers.getOrDefault("connection", ""));
+        }
+    }
+
+    private static class Connection {
+        private final SocketChannel channel;
+        private final InputStream in;
+        private final OutputStream out;
+        private boolean responseStarted;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+            this.in = new BufferedInputStream(Channels.newInputStream(channel));
+            this.out = Channels.newOutputStream(channel);
+        }
+
+        void writeRequest(String method, String path, String contentType, byte[] body) throws IOException {
+            StringBuilder request = new StringBuilder()
+                    .append(method).append(' ').append(path).append(" HTTP/1.1\r\n")
+                    .append("Host: docker\r\n")
+                    .append("User-Agent: source-code-converter\r\n");
+            if (contentType != null) {
+                request.append("Content-Type: ").append(contentType).append("\r\n");
+            }
+            request.append("Content-Length: ").append(body == null ? 0 : body.length).append("\r\n\r\n");
+            responseStarted = false;
+
+            out.write(request.toString().getBytes(StandardCharsets.US_ASCII));
+            if (body != null) {
+                out.write(body);
+            }
+            out.flush();
+        }
+
+        ResponseHead readHead() throws IOException {
+            String statusLine = readLine();
+            String[] parts = statusLine.split(" ", 3);
+            if (parts.length < 2 || !parts[0].startsWith("HTTP/")) {
+                throw new IOException("Malformed HTTP status line from Docker: " + statusLine);
+            }
+
+            Map<String, String> headers = new HashMap<>();
+            String line;
+            while (!(line = readLine()).isEmpty()) {
+                int colon = line.indexOf(':');
+                if (colon > 0) {
+                    headers.put(line.substring(0, colon).trim().toLowerCase(Locale.ROOT), line.substring(colon + 1).trim());
+                }
+            }
+            return new ResponseHead(Integer.parseInt(parts[1]), headers);
+        }
+
+        /**
+         * Whether any byte of the response to the last request was read.
+         */
+        boolean responseStarted() {
+            return responseStarted;
+        }
+
+        InputStream bodyStream(String method, ResponseHead head) {
+            if ("HEAD".equals(method) || head.status() == 204 || head.status() == 304) {
+                return InputStream.nullInputStream();
+            }
+            if (head.chunked()) {
+                return new ChunkedInputStream(this);
+            }
+            if (head.contentLength() >= 0) {
+                return new BoundedInputStream(in, head.contentLength());
+            }
+            return in;
+        }
+
+        String readLine() throws IOException {
+            ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+            int b;
+            while ((b = in.read()) != -1) {
+                responseStarted = true;
+                if (b == '\n') {
+                    break;
+                }
+                if (b != '\r') {
+                    line.write(b);
+                }
+            }
+            if (b == -1 && line.size() == 0) {
+                throw new EOFException("Docker closed the connection");
+            }
+            return line.toString(StandardCharsets.US_ASCII);
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Nothing useful to do with a failing close
+            }
+        }
+    }
+
+    private static class BoundedInputStream extends InputStream {
+        private final InputStream in;
+        private long remaining;
+
+        BoundedInputStream(InputStream in, long length) {
+            this.in = in;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Docker response ended before Content-Length was reached");
+            }
+            remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = in.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read < 0) {
+                throw new EOFException("Docker response ended before Content-Length was reached");
+            }
+            remaining -= read;
+            return read;
+        }
+    }
+
+    private static class ChunkedInputStream extends InputStream {
+        private final Connection connection;
+        private long remainingInChunk;
+        private boolean finished;
+
+        ChunkedInputStream(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int read = read(single, 0, 1);
+            return read < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (finished) {
+                return -1;
+            }
+            if (remainingInChunk == 0) {
+                String sizeLine = connection.readLine();
+                int extension = sizeLine.indexOf(';');
+                remainingInChunk = Long.parseLong((extension >= 0 ? sizeLine.substring(0, extension) : sizeLine).trim(), 16);
+                if (remainingInChunk == 0) {
+                    while (!connection.readLine().isEmpty()) {
+                        // Trailers are not used by the Docker API
+                    }
+                    finished = true;
+                    return -1;
+                }
+            }
+
+            int read = connection.in.read(buffer, offset, (int) Math.min(length, remainingInChunk));
+            if (read < 0) {
+                throw new EOFException("Docker response ended inside a chunk");
+            }
+            remainingInChunk -= read;
+            if (remainingInChunk == 0) {
+                connection.readLine();
+            }
+            return read;
+        }
+    }
+}
@@ -1,43 +1,103 @@
 package tsystems.janus.sourcecodeconverter.infrastructure.docker;
 
+import org.apache.commons.io.FileUtils;
 import org.springframework.stereotype.Component;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Component
 public class DockerImageBuilder {
 
+    static final String QUERY_PACK_CONTEXT_DIR = "qlpack";
+    private static final int TAG_HASH_LENGTH = 12;
+
     private final DockerCommandExecutor commandExecutor;
+    private final ContainerBackend backend;
 
-    public DockerImageBuilder(DockerCommandExecutor commandExecutor) {
+    public DockerImageBuilder(DockerCommandExecutor commandExecutor, ContainerBackend backend) {
         this.commandExecutor = commandExecutor;
+        this.backend = backend;
     }
 
-    public void buildImageIfNecessary(String imageName, File dockerfileDir, Consumer<String> logConsumer) throws IOException, InterruptedException {
+    /**
+     * Builds the analysis image unless an image for the current inputs already exists. The tag is a hash of the
+     * Dockerfile directory and the query pack definition, so any change to either produces a new image.
+     *
+     * @return the content-addressed image reference, e.g. {@code codeql-runner-image:3f2a9c01b7de}
+     */
+    public String buildImageIfNecessary(String imageName, File dockerfileDir, File queryPackFile, Consumer<String> logConsumer) throws IOException, InterruptedException {
         if (!dockerfileDir.exists()) {
             System.out.println("❌ Dockerfile directory not found: " + dockerfileDir.getAbsolutePath());
             logConsumer.accept("❌ Dockerfile directory not found: " + dockerfileDir.getAbsolutePath());
             throw new RuntimeException("❌ Dockerfile directory not found: " + dockerfileDir.getAbsolutePath());
         }
-        System.out.println("Checking if Docker image '" + imageName + "' exists...");
 
-        logConsumer.accept("Checking if Docker image '" + imageName + "' exists...");
-        String existingImages = commandExecutor.executeAndCaptureOutput(List.of("docker", "images", "-q", imageName));
-        System.out.println("Existing images output: " + existingImages);
+        String imageTag = imageName + ":" + inputHash(dockerfileDir.toPath(), queryPackFile.toPath());
+        System.out.println("Checking if Docker image '" + imageTag + "' exists...");
 
-        boolean imageExists = !existingImages.isEmpty();
+        logConsumer.accept("Checking if Docker image '" + imageTag + "' exists...");
+        boolean imageExists = backend.imageExists(imageTag);
 
         if (imageExists) {
-            logConsumer.accept("Docker image '" + imageName + "' already exists. Skipping build.");
-            return;
+            logConsumer.accept("Docker image '" + imageTag + "' already exists. Skipping build.");
+            return imageTag;
+        }
+
+        Path buildContext = stageBuildContext(dockerfileDir.toPath(), queryPackFile.toPath());
+        try {
+            System.out.println("Building Docker image '" + imageTag + "' from directory: " + dockerfileDir.getAbsolutePath());
+            logConsumer.accept("Building Docker image from: " + dockerfileDir.getAbsolutePath());
+            commandExecutor.execute(List.of("docker", "build", "-t", imageTag, buildContext.toString()), logConsumer);
+            System.out.println("Docker image '" + imageTag + "' built successfully.");
+        } finally {
+            FileUtils.deleteQuietly(buildContext.toFile());
+        }
+        return imageTag;
+    }
+
+    private static Path stageBuildContext(Path dockerfileDir, Path queryPackFile) throws IOException {
+        Path context = Files.createTempDirectory("codeql-image-context-");
+        FileUtils.copyDirectory(dockerfileDir.toFile(), context.toFile());
+
+        Path queryPackDir = Files.createDirectories(context.resolve(QUERY_PACK_CONTEXT_DIR));
+        Files.copy(queryPackFile, queryPackDir.resolve(queryPackFile.getFileName()));
+        return context;
+    }
+
+    static String inputHash(Path dockerfileDir, Path queryPackFile) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(dockerfileDir)) {
+            files = walk.filter(Files::isRegularFile).sorted().toList();
         }
+        for (Path file : files) {
+            update(digest, dockerfileDir.relativize(file).toString().replace('\\', '/'), Files.readAllBytes(file));
+        }
+        update(digest, QUERY_PACK_CONTEXT_DIR + "/" + queryPackFile.getFileName(), Files.readAllBytes(queryPackFile));
+
+        return HexFormat.of().formatHex(digest.digest()).substring(0, TAG_HASH_LENGTH);
+    }
 
-        System.out.println("Building Docker image '" + imageName + "' from directory: " + dockerfileDir.getAbsolutePath());
-        logConsumer.accept("Building Docker image from: " + dockerfileDir.getAbsolutePath());
-        commandExecutor.execute(List.of("docker", "build", "-t", imageName, dockerfileDir.getAbsolutePath()), logConsumer);
-        System.out.println("Docker image '" + imageName + "' built successfully.");
+    private static void update(MessageDigest digest, String name, byte[] content) {
+        digest.update(name.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(content);
+        digest.update((byte) 0);
     }
 }
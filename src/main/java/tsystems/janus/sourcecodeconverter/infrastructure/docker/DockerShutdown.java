@@ -11,16 +11,15 @@ import java.util.function.Consumer;
 @Component
 public class DockerShutdown {
 
-    @Value("${codeql.db.volume-name}")
-    private String dbVolumeName;
+    @Value("${codeql.db.persist-volume:true}")
+    private boolean persistDbVolume;
 
-    @Value("${codeql.docker.container-name}")
-    private String containerName;
+    private final DockerContainerManager containerManager;
+    private final AnalysisContainerPool containerPool;
 
-    private final DockerCommandExecutor commandExecutor;
-
-    public DockerShutdown(DockerCommandExecutor commandExecutor) {
-        this.commandExecutor = commandExecutor;
+    public DockerShutdown(DockerContainerManager containerManager, AnalysisContainerPool containerPool) {
+        this.containerManager = containerManager;
+        this.containerPool = containerPool;
     }
 
     @PreDestroy
@@ -29,31 +28,46 @@ public class DockerShutdown {
 
         Consumer<String> shutdownLogger = System.out::println;
 
-        cleanupContainer(containerName, dbVolumeName, true, shutdownLogger);
+        List<ContainerLease> leases = containerPool.drain();
+        for (ContainerLease lease : leases) {
+            cleanupContainer(lease.getContainerName(), shutdownLogger);
+        }
+
+        // The database cache volume is shared by all pooled containers, so it goes only after all of them
+        if (!leases.isEmpty()) {
+            cleanupDbVolume(leases.get(0).getDbVolumeName(), shutdownLogger);
+        }
         System.out.println("--- Docker cleanup complete. ---");
     }
 
-    public void cleanupContainer(String containerName, String dbVolumeName, boolean persistDbVolume, Consumer<String> logConsumer) {
+    public void cleanupContainer(String containerName, Consumer<String> logConsumer) {
         try {
             logConsumer.accept("\n🧹 Cleaning up Docker container...");
-            commandExecutor.execute(List.of("docker", "rm", "-f", containerName), logConsumer);
+            containerManager.removeContainer(containerName, logConsumer);
             logConsumer.accept("✅ Container stopped and removed.");
-
-            if (!persistDbVolume) {
-                logConsumer.accept("Attempting to remove associated CodeQL database volume '" + dbVolumeName + "'...");
-                removeVolume(dbVolumeName, logConsumer);
-            } else {
-                logConsumer.accept("✅ CodeQL database volume '" + dbVolumeName + "' is configured to persist. Skipping removal.");
-            }
         } catch (IOException | InterruptedException e) {
             logConsumer.accept("⚠️ Failed to clean up container: " + e.getMessage());
             System.err.println("⚠️ Failed to clean up container: " + e.getMessage());
         }
     }
 
+    private void cleanupDbVolume(String dbVolumeName, Consumer<String> logConsumer) {
+        if (persistDbVolume) {
+            logConsumer.accept("✅ CodeQL database volume '" + dbVolumeName + "' is configured to persist. Skipping removal.");
+            return;
+        }
+        try {
+            logConsumer.accept("Attempting to remove CodeQL database volume '" + dbVolumeName + "'...");
+            removeVolume(dbVolumeName, logConsumer);
+        } catch (IOException | InterruptedException e) {
+            logConsumer.accept("⚠️ Failed to remove volume: " + e.getMessage());
+            System.err.println("⚠️ Failed to remove volume: " + e.getMessage());
+        }
+    }
+
     public void removeVolume(String volumeName, Consumer<String> logConsumer) throws IOException, InterruptedException {
         logConsumer.accept("Removing Docker volume '" + volumeName + "'...");
-        commandExecutor.execute(List.of("docker", "volume", "rm", "-f", volumeName), logConsumer);
+        containerManager.removeVolume(volumeName, logConsumer);
         logConsumer.accept("✅ Docker volume '" + volumeName + "' removed.");
     }
 }
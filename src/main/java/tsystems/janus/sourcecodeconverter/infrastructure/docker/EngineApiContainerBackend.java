@@ -0,0 +1,481 @@
+package tsystems.janus.sourcecodeconverter.infrastructure.docker;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import tsystems.janus.sourcecodeconverter.infrastructure.util.OutputRingBuffer;
+import tsystems.janus.sourcecodeconverter.infrastructure.util.TarArchive;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static tsystems.janus.sourcecodeconverter.infrastructure.docker.DockerEngineClient.encode;
+
+public class EngineApiContainerBackend implements ContainerBackend {
+
+    private static final int STDOUT_STREAM = 1;
+    private static final int STDERR_STREAM = 2;
+
+    private final DockerEngineClient client;
+    private final Duration commandTimeout;
+    private final long outputBufferBytes;
+
+    public EngineApiContainerBackend(DockerEngineClient client, Duration commandTimeout, long outputBufferBytes) {
+        this.client = client;
+        this.commandTimeout = commandTimeout;
+        this.outputBufferBytes = outputBufferBytes;
+    }
+
+    @Override
+    public String getName() {
+        return "engine-api";
+    }
+
+    @Override
+    public boolean imageExists(String imageName) throws IOException {
+        DockerEngineClient.Response response = client.get("/images/" + encode(imageName) + "/json");
+        if (response.status() == 404) {
+            return false;
+        }
+        if (!response.isSuccess()) {
+            throw client.failure("inspect image " + imageName, response);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean volumeExists(String volumeName) {
+        try {
+            return client.get("/volumes/" + encode(volumeName)).isSuccess();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void createVolume(String volumeName, Consumer<String> logConsumer) throws IOException {
+        DockerEngineClient.Response response = client.postJson("/volumes/create", Map.of("Name", volumeName));
+        if (!response.isSuccess()) {
+            throw client.failure("create volume " + volumeName, response);
+        }
+        logConsumer.accept(volumeName);
+    }
+
+    @Override
+    public void removeVolume(String volumeName, Consumer<String> logConsumer) throws IOException {
+        DockerEngineClient.Response response = client.delete("/volumes/" + encode(volumeName) + "?force=true");
+        if (!response.isSuccess() && response.status() != 404) {
+            throw client.failure("remove volume " + volumeName, response);
+        }
+        logConsumer.accept(volumeName);
+    }
+
+    @Override
+    public void runContainer(String imageName, String containerName, List<String> volumes, Consumer<String> logConsumer) throws IOException {
+        Map<String, Object> hostConfig = new HashMap<>();
+        hostConfig.put("Binds", volumes);
+        hostConfig.put("Dns", List.of("8.8.8.8"));
+
+        Map<String, Object> createRequest = new HashMap<>();
+        createRequest.put("Image", imageName);
+        createRequest.put("Cmd", List.of("tail", "-f", "/dev/null")); // Keep container running
+        createRequest.put("HostConfig", hostConfig);
+
+        DockerEngineClient.Response created = client.postJson("/containers/create?name=" + encode(containerName), createRequest);
+        if (!created.isSuccess()) {
+            throw client.failure("create container " + containerName, created);
+        }
+        String containerId = client.readJson(created).path("Id").asText();
+
+        DockerEngineClient.Response started = client.postJson("/containers/" + containerId + "/start", null);
+        if (!started.isSuccess() && started.status() != 304) {
+            throw client.failure("start container " + containerName, started);
+        }
+        logConsumer.accept(containerId);
+    }
+
+    @Override
+    public void removeContainer(String containerName, Consumer<String> logConsumer) throws IOException {
+        DockerEngineClient.Response response = client.delete("/containers/" + encode(containerName) + "?force=true");
+        if (!response.isSuccess() && response.status() != 404) {
+            throw client.failure("remove container " + containerName, response);
+        }
+        logConsumer.accept(containerName);
+    }
+
+    @Override
+    public void updateResources(String containerName, ResourceProfile profile) throws IOException {
+        Map<String, Object> updateRequest = new HashMap<>();
+        updateRequest.put("NanoCpus", (long) (profile.cpus() * 1_000_000_000L));
+        updateRequest.put("Memory", profile.memoryBytes());
+        updateRequest.put("MemorySwap", profile.memoryBytes());
+
+        DockerEngineClient.Response response = client.postJson("/containers/" + encode(containerName) + "/update", updateRequest);
+        if (!response.isSuccess()) {
+            throw client.failure("update resources of " + containerName, response);
+        }
+    }
+
+    @Override
+    public ExecResult exec(String containerName, String workDir, List<String> command, Consumer<String> logConsumer) throws IOException, InterruptedException {
+        String execId = createExec(containerName, workDir, command);
+
+        StreamCollector stdout = new StreamCollector(logConsumer, outputBufferBytes);
+        StreamCollector stderr = new StreamCollector(logConsumer, outputBufferBytes);
+        streamExec(containerName, execId, command, body -> demultiplex(body, stdout::write, stderr::write));
+        stdout.flush();
+        stderr.flush();
+        if (stdout.isTruncated() || stderr.isTruncated()) {
+            System.out.println("Output of '" + CommandMetrics.keyOf(command) + "' exceeded " + outputBufferBytes
+                    + " bytes, only the tail was kept.");
+        }
+
+        return new ExecResult(waitForExitCode(execId), stdout.text(), stderr.text());
+    }
+
+    @Override
+    public void copyFromContainer(String containerName, String containerPath, String hostPath) throws IOException {
+        String path = "/containers/" + encode(containerName) + "/archive?path=" + encode(containerPath);
+        try (DockerEngineClient.StreamResponse stream = client.openStream("GET", path, null)) {
+            if (!stream.isSuccess()) {
+                throw new IOException("Docker API copy from " + containerName + ":" + containerPath + " failed with status " + stream.status());
+            }
+            extractArchive(stream.body(), Paths.get(hostPath));
+        }
+    }
+
+    @Override
+    public void copyToContainer(String containerName, String hostPath, String containerPath) throws IOException {
+        Path source = Paths.get(hostPath);
+        int lastSlash = containerPath.lastIndexOf('/');
+        String targetDir = lastSlash <= 0 ? "/" : containerPath.substring(0, lastSlash);
+        String entryRoot = containerPath.substring(lastSlash + 1);
+
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        try (TarArchive.Writer writer = new TarArchive.Writer(archive)) {
+            if (Files.isDirectory(source)) {
+                try (Stream<Path> files = Files.walk(source)) {
+                    for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                        String relative = source.relativize(file).toString().replace('\\', '/');
+                        writer.addFile(entryRoot + "/" + relative, Files.readAllBytes(file));
+                    }
+                }
+            } else {
+                writer.addFile(entryRoot, Files.readAllBytes(source));
+            }
+        }
+
+        DockerEngineClient.Response response = client.put(
+                "/containers/" + encode(containerName) + "/archive?path=" + encode(targetDir),
+                "application/x-tar",
+                archive.toByteArray());
+        if (!response.isSuccess()) {
+            throw client.failure("copy to " + containerName + ":" + containerPath, response);
+        }
+    }
+
+    @Override
+    public Map<String, byte[]> readFiles(String containerName, Collection<String> containerPaths) throws IOException, InterruptedException {
+        List<String> command = ContainerArchives.archiveCommand(containerPaths);
+        String execId = createExec(containerName, null, command);
+
+        Map<String, byte[]> files = new LinkedHashMap<>();
+        StreamCollector stderr = new StreamCollector(System.err::println, outputBufferBytes);
+        streamExec(containerName, execId, command, body -> {
+            InputStream archive = new StdoutStream(body, stderr::write);
+            files.putAll(ContainerArchives.readArchive(archive));
+            archive.transferTo(OutputStream.nullOutputStream());
+        });
+        stderr.flush();
+
+        int exitCode = waitForExitCode(execId);
+        if (exitCode != 0) {
+            throw new RuntimeException("Command failed with exit code " + exitCode + ": " + String.join(" ", command));
+        }
+        return files;
+    }
+
+    @Override
+    public void writeFiles(String containerName, Map<String, byte[]> files) throws IOException {
+        DockerEngineClient.Response response = client.put(
+                "/containers/" + encode(containerName) + "/archive?path=" + encode("/"),
+                "application/x-tar",
+                ContainerArchives.createArchive(files));
+        if (!response.isSuccess()) {
+            throw client.failure("write " + files.size() + " files to " + containerName, response);
+        }
+    }
+
+    @Override
+    public void killProcesses(String containerName) throws IOException, InterruptedException {
+        String execId = createExec(containerName, null, List.of("kill", "-9", "-1"));
+        try (DockerEngineClient.StreamResponse stream = startExec(execId)) {
+            stream.body().transferTo(OutputStream.nullOutputStream());
+        }
+        waitForExitCode(execId);
+    }
+
+    private String createExec(String containerName, String workDir, List<String> command) throws IOException {
+        Map<String, Object> execRequest = new HashMap<>();
+        execRequest.put("AttachStdout", true);
+        execRequest.put("AttachStderr", true);
+        execRequest.put("Tty", false);
+        execRequest.put("Cmd", command);
+        if (workDir != null && !workDir.isEmpty()) {
+            execRequest.put("WorkingDir", workDir);
+        }
+
+        DockerEngineClient.Response created = client.postJson("/containers/" + encode(containerName) + "/exec", execRequest);
+        if (!created.isSuccess()) {
+            throw client.failure("create exec in " + containerName, created);
+        }
+        return client.readJson(created).path("Id").asText();
+    }
+
+    private interface BodyReader {
+        void read(InputStream multiplexed) throws IOException;
+    }
+
+    /**
+     * Hands the multiplexed output of a started exec to the reader until the process ends. Past the command
+     * timeout, the processes in the container are killed and the stream is closed, so a hung command cannot hold
+     * the caller forever.
+     */
+    private void streamExec(String containerName, String execId, List<String> command, BodyReader reader) throws IOException {
+        DockerEngineClient.StreamResponse stream = startExec(execId);
+        AtomicBoolean timedOut = new AtomicBoolean();
+        Thread watchdog = Thread.ofVirtual().start(() -> {
+            try {
+                Thread.sleep(commandTimeout);
+            } catch (InterruptedException e) {
+                // Command finished before its deadline
+                return;
+            }
+            timedOut.set(true);
+            try {
+                killProcesses(containerName);
+            } catch (IOException e) {
+                System.err.println("⚠️ Could not kill the processes of timed out exec in " + containerName + ": " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            try {
+                stream.close();
+            } catch (IOException e) {
+                // Closing only unblocks the reader, nothing else to release
+            }
+        });
+
+        try (stream) {
+            reader.read(stream.body());
+        } catch (IOException e) {
+            if (!timedOut.get()) {
+                throw e;
+            }
+        } finally {
+            watchdog.interrupt();
+        }
+        if (timedOut.get()) {
+            throw new RuntimeException("Command timed out after " + commandTimeout + ": " + String.join(" ", command));
+        }
+    }
+
+    private DockerEngineClient.StreamResponse startExec(String execId) throws IOException {
+        DockerEngineClient.StreamResponse stream = client.openStream("POST", "/exec/" + execId + "/start", Map.of("Detach", false, "Tty", false));
+        if (!stream.isSuccess()) {
+            try (stream) {
+                throw new IOException("Docker API start exec failed with status " + stream.status() + ": "
+                        + new String(stream.body().readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+        return stream;
+    }
+
+    private int waitForExitCode(String execId) throws IOException, InterruptedException {
+        while (true) {
+            DockerEngineClient.Response response = client.get("/exec/" + execId + "/json");
+            if (!response.isSuccess()) {
+                throw client.failure("inspect exec " + execId, response);
+            }
+            JsonNode inspect = client.readJson(response);
+            if (!inspect.path("Running").asBoolean(false) && !inspect.path("ExitCode").isNull()) {
+                return inspect.path("ExitCode").asInt();
+            }
+            Thread.sleep(20);
+        }
+    }
+
+    static void demultiplex(InputStream multiplexed, Consumer<byte[]> stdout, Consumer<byte[]> stderr) throws IOException {
+        DataInputStream in = new DataInputStream(multiplexed);
+        byte[] header = new byte[8];
+        while (true) {
+            int first = in.read();
+            if (first < 0) {
+                return;
+            }
+            header[0] = (byte) first;
+            in.readFully(header, 1, 7);
+
+            int size = ((header[4] & 0xFF) << 24) | ((header[5] & 0xFF) << 16) | ((header[6] & 0xFF) << 8) | (header[7] & 0xFF);
+            byte[] payload = new byte[size];
+            in.readFully(payload);
+
+            if (header[0] == STDERR_STREAM) {
+                stderr.accept(payload);
+            } else if (header[0] == STDOUT_STREAM) {
+                stdout.accept(payload);
+            }
+        }
+    }
+
+    /**
+     * The stdout payload of a multiplexed exec stream as a plain stream, so it can be read as it arrives. Stderr
+     * frames are handed to the consumer on the way.
+     */
+    static class StdoutStream extends InputStream {
+        private final DataInputStream in;
+        private final Consumer<byte[]> stderr;
+        private final byte[] header = new byte[8];
+        private int remaining;
+
+        StdoutStream(InputStream multiplexed, Consumer<byte[]> stderr) {
+            this.in = new DataInputStream(multiplexed);
+            this.stderr = stderr;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            while (remaining == 0) {
+                if (!nextFrame()) {
+                    return -1;
+                }
+            }
+            int read = in.read(buffer, offset, Math.min(length, remaining));
+            if (read < 0) {
+                throw new EOFException("Exec output ended inside a stdout frame");
+            }
+            remaining -= read;
+            return read;
+        }
+
+        private boolean nextFrame() throws IOException {
+            int first = in.read();
+            if (first < 0) {
+                return false;
+            }
+            header[0] = (byte) first;
+            in.readFully(header, 1, 7);
+
+            int size = ((header[4] & 0xFF) << 24) | ((header[5] & 0xFF) << 16) | ((header[6] & 0xFF) << 8) | (header[7] & 0xFF);
+            if (header[0] == STDOUT_STREAM) {
+                remaining = size;
+                return true;
+            }
+            byte[] payload = new byte[size];
+            in.readFully(payload);
+            if (header[0] == STDERR_STREAM) {
+                stderr.accept(payload);
+            }
+            return true;
+        }
+    }
+
+    private static void extractArchive(InputStream archive, Path hostPath) throws IOException {
+        TarArchive.Reader reader = new TarArchive.Reader(archive);
+        TarArchive.Entry entry;
+        String root = null;
+        while ((entry = reader.nextEntry()) != null) {
+            String name = entry.name().endsWith("/") ? entry.name().substring(0, entry.name().length() - 1) : entry.name();
+            if (root == null) {
+                root = name.contains("/") ? name.substring(0, name.indexOf('/')) : name;
+            }
+
+            String relative = name.equals(root) ? "" : name.substring(root.length() + 1);
+            Path destination = relative.isEmpty() ? hostPath : hostPath.resolve(relative).normalize();
+            if (!destination.startsWith(hostPath)) {
+                throw new IOException("Archive entry is outside of the target path: " + entry.name());
+            }
+
+            if (entry.directory()) {
+                Files.createDirectories(destination);
+                continue;
+            }
+            if (destination.getParent() != null) {
+                Files.createDirectories(destination.getParent());
+            }
+            try (OutputStream out = Files.newOutputStream(destination)) {
+                reader.copyContent(out);
+            }
+        }
+    }
+
+    /**
+     * Splits a demultiplexed stream into lines for the log and keeps the most recent ones up to the output budget.
+     */
+    static class StreamCollector {
+        private final Consumer<String> lineConsumer;
+        private final OutputRingBuffer lines;
+        private final ByteArrayOutputStream pendingLine = new ByteArrayOutputStream();
+
+        StreamCollector(Consumer<String> lineConsumer, long maxBytes) {
+            this.lineConsumer = lineConsumer;
+            this.lines = new OutputRingBuffer(maxBytes);
+        }
+
+        void write(byte[] payload) {
+            for (byte b : payload) {
+                if (b == '\n') {
+                    emitPendingLine();
+                } else {
+                    pendingLine.write(b);
+                }
+            }
+        }
+
+        void flush() {
+            if (pendingLine.size() > 0) {
+                emitPendingLine();
+            }
+        }
+
+        String text() {
+            return lines.text();
+        }
+
+        boolean isTruncated() {
+            return lines.isTruncated();
+        }
+
+        private void emitPendingLine() {
+            String line = pendingLine.toString(StandardCharsets.UTF_8);
+            pendingLine.reset();
+            line = line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+            lines.append(line);
+            lineConsumer.accept(line);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package tsystems.janus.sourcecodeconverter.infrastructure.docker;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+import tsystems.janus.sourcecodeconverter.infrastructure.codeQL.QueryCompilationCache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Opt-in boot-time warmup. It builds or verifies the analysis image, starts the pool's minimum number of
+ * containers with their volumes, runs {@code codeql version} in each one so the CLI and filesystem caches
+ * are hot, and compiles the query into the shared compilation cache. Spring Boot reports readiness only after all application runners have finished, so the first
+ * request sees steady-state latency.
+ */
+@Component
+public class EnvironmentWarmup implements ApplicationRunner {
+
+    private final AnalysisContainerPool containerPool;
+    private final DockerContainerManager containerManager;
+    private final ResourceProfiles resourceProfiles;
+    private final QueryCompilationCache queryCompilationCache;
+    private final boolean enabled;
+
+    public EnvironmentWarmup(AnalysisContainerPool containerPool,
+                             DockerContainerManager containerManager,
+                             ResourceProfiles resourceProfiles,
+                             QueryCompilationCache queryCompilationCache,
+                             @Value("${codeql.warmup.enabled:false}") boolean enabled) {
+        this.containerPool = containerPool;
+        this.containerManager = containerManager;
+        this.resourceProfiles = resourceProfiles;
+        this.queryCompilationCache = queryCompilationCache;
+        this.enabled = enabled;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+
+        System.out.println("🔥 Warming up analysis environment...");
+        long startedAt = System.currentTimeMillis();
+        List<ContainerLease> warmed = new ArrayList<>();
+        try {
+            int size = Math.max(1, containerPool.getMinSize());
+            for (int i = 0; i < size; i++) {
+                ContainerLease lease = containerPool.acquire(resourceProfiles.getDefault(), System.out::println);
+                warmed.add(lease);
+                containerManager.executeCommandInContainer(lease.getContainerName(), null, List.of("codeql", "version"), System.out::println);
+            }
+            queryCompilationCache.prepare(warmed.get(0).getContainerName(), resourceProfiles.getDefault(), System.out::println);
+            System.out.println("✅ Analysis environment warm with " + warmed.size() + " containers in "
+                    + (System.currentTimeMillis() - startedAt) + " ms.");
+        } catch (Exception e) {
+            System.err.println("⚠️ Warmup failed, the first conversion will prepare the environment itself: " + e.getMessage());
+        } finally {
+            warmed.forEach(containerPool::release);
+        }
+    }
+}
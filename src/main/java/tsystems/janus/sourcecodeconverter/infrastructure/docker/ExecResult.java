@@ -0,0 +1,8 @@
+package tsystems.janus.sourcecodeconverter.infrastructure.docker;
+
+public record ExecResult(int exitCode, String stdout, String stderr) {
+
+    public boolean isSuccess() {
+        return exitCode == 0;
+    }
+}
@@ -0,0 +1,28 @@
+package tsystems.janus.sourcecodeconverter.infrastructure.docker;
+
+/**
+ * Cgroup limits for an analysis container, plus the CodeQL and Maven settings derived from them so the tools
+ * inside the container size themselves to the container instead of to the host.
+ */
+public record ResourceProfile(String name, double cpus, long memoryBytes) {
+
+    private static final long MEGABYTE = 1024 * 1024;
+    // Left to the OS, the extractor's build and the JVM's own overhead
+    private static final double CODEQL_RAM_SHARE = 0.75;
+
+    public int codeqlThreads() {
+        return Math.max(1, (int) Math.floor(cpus));
+    }
+
+    public long codeqlRamMegabytes() {
+        return Math.max(512, (long) (memoryBytes / MEGABYTE * CODEQL_RAM_SHARE));
+    }
+
+    public int mavenThreads() {
+        return codeqlThreads();
+    }
+
+    public String codeqlOptions() {
+        return "--threads=" + codeqlThreads() + " --ram=" + codeqlRamMegabytes();
+    }
+}
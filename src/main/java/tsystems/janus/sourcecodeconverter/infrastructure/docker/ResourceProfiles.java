@@ -0,0 +1,72 @@
+package tsystems.janus.sourcecodeconverter.infrastructure.docker;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The named resource profiles a job can pick from, configured as {@code name:cpus:memory} entries,
+ * e.g. {@code small:2:4GB,large:4:8GB}.
+ */
+@Component
+public class ResourceProfiles {
+
+    private final Map<String, ResourceProfile> profiles = new LinkedHashMap<>();
+    private final ResourceProfile defaultProfile;
+
+    public ResourceProfiles(@Value("${codeql.resources.profiles:small:2:4GB,large:4:8GB,monorepo:8:24GB}") String profiles,
+                            @Value("${codeql.resources.default-profile:small}") String defaultProfile) {
+        for (String entry : profiles.split(",")) {
+            ResourceProfile profile = parse(entry.trim());
+            this.profiles.put(profile.name(), profile);
+        }
+        this.defaultProfile = get(defaultProfile);
+
+        int hostCpus = Runtime.getRuntime().availableProcessors();
+        this.profiles.values().stream()
+                .filter(profile -> profile.cpus() > hostCpus)
+                .forEach(profile -> System.out.println("⚠️ Resource profile '" + profile.name() + "' asks for "
+                        + profile.cpus() + " CPUs but the host has " + hostCpus + "."));
+    }
+
+    /**
+     * Resolves the profile for a job, falling back to the default one when no name is given.
+     */
+    public ResourceProfile resolve(String name) {
+        return name == null || name.isBlank() ? defaultProfile : get(name.trim());
+    }
+
+    public ResourceProfile getDefault() {
+        return defaultProfile;
+    }
+
+    public List<ResourceProfile> getAll() {
+        return new ArrayList<>(profiles.values());
+    }
+
+    private ResourceProfile get(String name) {
+        ResourceProfile profile = profiles.get(name);
+        if (profile == null) {
+            throw new IllegalArgumentException("Unknown resource profile '" + name + "'. Available: " + profiles.keySet());
+        }
+        return profile;
+    }
+
+    static ResourceProfile parse(String entry) {
+        String[] parts = entry.split(":");
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Resource profile must be 'name:cpus:memory', got '" + entry + "'");
+        }
+        double cpus = Double.parseDouble(parts[1].trim());
+        long memoryBytes = DataSize.parse(parts[2].trim()).toBytes();
+        if (cpus <= 0 || memoryBytes <= 0) {
+            throw new IllegalArgumentException("Resource profile '" + entry + "' needs positive CPU and memory limits");
+        }
+        return new ResourceProfile(parts[0].trim(), cpus, memoryBytes);
+    }
+}
@@ -0,0 +1,84 @@
+package tsystems.janus.sourcecodeconverter.infrastructure.git;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static tsystems.janus.sourcecodeconverter.infrastructure.util.ShellQuote.quote;
+
+/**
+ * Collects the git steps for one file into a single shell script, so the whole branch/commit/format-patch/reset
+ * cycle costs one exec in the container. When a branch is set, the steps run on it and the script always returns
+ * to the starting branch and deletes the temporary one, even if a step fails.
+ */
+public class GitPatchTransaction {
+
+    static final String PATCH_FILE_MARKER = "__PATCH_FILE__=";
+
+    private final List<String> steps = new ArrayList<>();
+    private String branchName;
+
+    public GitPatchTransaction onTemporaryBranch(String branchName) {
+        this.branchName = branchName;
+        return this;
+    }
+
+    GitPatchTransaction writeFile(String relativePath, String content) {
+        steps.add("printf '%s\\n' " + quote(content) + " > " + quote(relativePath));
+        return this;
+    }
+
+    public GitPatchTransaction add(String relativePath) {
+        steps.add("git add -- " + quote(relativePath));
+        return this;
+    }
+
+    /**
+     * Stages every change in the working tree, including untracked files.
+     */
+    GitPatchTransaction addAll() {
+        steps.add("git add -A");
+        return this;
+    }
+
+    public GitPatchTransaction commit(String subject, String body) {
+        StringBuilder commit = new StringBuilder("git commit -q -m ").append(quote(subject));
+        if (body != null && !body.isBlank()) {
+            commit.append(" -m ").append(quote(body));
+        }
+        steps.add(commit.toString());
+        return this;
+    }
+
+    public GitPatchTransaction formatPatch() {
+        steps.add("patch_file=$(git format-patch -1 HEAD) && echo \"" + PATCH_FILE_MARKER + "$patch_file\"");
+        return this;
+    }
+
+    public GitPatchTransaction revert(String relativePath) {
+        steps.add("git checkout -- " + quote(relativePath));
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return steps.isEmpty() && branchName == null;
+    }
+
+    public String toScript() {
+        String chainedSteps = steps.isEmpty() ? "true" : String.join(" && \\\n  ", steps);
+        if (branchName == null) {
+            return "set -e\n" + chainedSteps + "\n";
+        }
+
+        return "set -e\n"
+                + "base_branch=$(git rev-parse --abbrev-ref HEAD)\n"
+                + "git checkout -q -b " + quote(branchName) + "\n"
+                + "status=0\n"
+                + "{ " + chainedSteps + "; } || status=$?\n"
+                + "git checkout -q \"$base_branch\"\n"
+                + "git branch -q -D " + quote(branchName) + "\n"
+                + "exit $status\n";
+    }
+
+    public record Result(String patchFileName) {
+    }
+}
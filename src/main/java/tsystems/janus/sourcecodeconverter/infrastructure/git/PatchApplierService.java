@@ -5,16 +5,28 @@ import tsystems.janus.sourcecodeconverter.domain.model.ConversionUnit;
 import tsystems.janus.sourcecodeconverter.domain.model.ConversionTask;
 import tsystems.janus.sourcecodeconverter.domain.model.LlmReplacement;
 import tsystems.janus.sourcecodeconverter.domain.model.LlmReplacementsResponse;
+import tsystems.janus.sourcecodeconverter.infrastructure.codeQL.FindingDeduplicator;
 import tsystems.janus.sourcecodeconverter.infrastructure.docker.CodeQLDockerConfig;
+import tsystems.janus.sourcecodeconverter.infrastructure.docker.ContainerLease;
 import tsystems.janus.sourcecodeconverter.infrastructure.docker.DockerContainerManager;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
+
+import static tsystems.janus.sourcecodeconverter.infrastructure.util.ShellQuote.quote;
 
 @Service
 public class PatchApplierService {
 
+    public static final String COMMIT_SUBJECT = "Auto-convert DB2 to PostgreSQL";
+    private static final String GIT_USER_EMAIL = "conversion-bot@example.com";
+    private static final String GIT_USER_NAME = "Conversion Bot";
+
     private final DockerContainerManager containerManager;
     private final CodeQLDockerConfig dockerConfig;
 
@@ -23,18 +35,19 @@ public class PatchApplierService {
         this.dockerConfig = dockerConfig;
     }
 
-    public boolean applyPatch(LlmReplacementsResponse llmResponse, ConversionTask originalTask) throws IOException, InterruptedException {
-        String containerName = dockerConfig.getContainerName();
-        String filePathInContainer = llmResponse.getFile();
-        String workDir = dockerConfig.getContainerProjectPath();
+    public Map<String, String> readSourceFiles(ContainerLease lease, Collection<String> filePathsInContainer) throws IOException, InterruptedException {
+        return containerManager.readFilesFromContainer(lease.getContainerName(), filePathsInContainer);
+    }
 
-        if (filePathInContainer.contains("/target/classes/")) {
-            filePathInContainer = filePathInContainer.replace("/target/classes/", "/src/main/resources/");
-            System.out.println("Redirected resource path to source: " + filePathInContainer);
-        }
+    public void writeSourceFiles(ContainerLease lease, Map<String, String> contentsByPath) throws IOException, InterruptedException {
+        System.out.println("Writing " + contentsByPath.size() + " patched files back to container.");
+        containerManager.writeFilesToContainer(lease.getContainerName(), contentsByPath);
+    }
 
-        String originalFileContent = containerManager.readFileFromContainer(containerName, workDir, filePathInContainer);
-        String modifiedFileContent = originalFileContent.replace("\r\n", "\n");
+    public Optional<String> applyReplacements(LlmReplacementsResponse llmResponse, ConversionTask originalTask, String originalFileContent) {
+        boolean usesCrlf = originalFileContent.contains("\r\n");
+        String normalizedFileContent = originalFileContent.replace("\r\n", "\n");
+        String modifiedFileContent = normalizedFileContent;
 
         for (LlmReplacement replacement : llmResponse.getReplacements()) {
             Optional<ConversionUnit.Component> originalComponentOpt = originalTask.getConversionUnits().stream()
@@ -46,7 +59,7 @@ public class PatchApplierService {
             if (originalComponentOpt.isPresent()) {
                 String originalCode = originalComponentOpt.get().getCode();
                 String normalizedOriginalCode = originalCode.replace("\r\n", "\n");
-                String convertedCode = replacement.getConvertedCode();
+                String convertedCode = replacement.getConvertedCode().replace("\r\n", "\n");
 
                 if (modifiedFileContent.contains(normalizedOriginalCode)) {
                     modifiedFileContent = modifiedFileContent.replace(normalizedOriginalCode, convertedCode);
@@ -59,81 +72,59 @@ public class PatchApplierService {
             }
         }
 
-        if (!originalFileContent.replaceAll("\r\n", "\n").equals(modifiedFileContent)) {
-            System.out.println("Writing patched file back to container: " + filePathInContainer);
-            containerManager.writeFileToContainer(containerName, filePathInContainer, modifiedFileContent);
-            return true;
-        } else {
+        if (normalizedFileContent.equals(modifiedFileContent)) {
             System.out.println("No changes were applied to the file.");
-            return false;
+            return Optional.empty();
         }
+        // Keep the file's own line endings so the patch only touches the converted lines
+        return Optional.of(usesCrlf ? modifiedFileContent.replace("\n", "\r\n") : modifiedFileContent);
     }
 
-    public void revertChanges(String filePath) throws IOException, InterruptedException {
-        String containerName = dockerConfig.getContainerName();
-        String workDir = dockerConfig.getContainerProjectPath();
-        String relativePath = filePath.replace(workDir + "/", "");
-        containerManager.executeCommandInContainer(containerName, workDir, List.of("git", "checkout", "--", relativePath), System.out::println);
-        System.out.println("Reverted changes in: " + relativePath);
+    public void initializeRepository(String containerName, Consumer<String> logConsumer) throws IOException, InterruptedException {
+        String script = "git init && " +
+                "git config user.email " + quote(GIT_USER_EMAIL) + " && " +
+                "git config user.name " + quote(GIT_USER_NAME);
+        containerManager.executeCommandInContainer(containerName, dockerConfig.getContainerProjectPath(), List.of("bash", "-c", script), logConsumer);
     }
 
-    public void commitChanges(String filePath, String explanation) throws IOException, InterruptedException {
-        String containerName = dockerConfig.getContainerName();
-        String workDir = dockerConfig.getContainerProjectPath();
-        String relativePath = filePath.replace(workDir + "/", "");
-
-        containerManager.executeCommandInContainer(containerName, workDir, List.of("git", "config", "user.email", "conversion-bot@example.com"), s -> {
-        });
-        containerManager.executeCommandInContainer(containerName, workDir, List.of("git", "config", "user.name", "Conversion Bot"), s -> {
-        });
-        containerManager.executeCommandInContainer(containerName, workDir, List.of("git", "add", relativePath), System.out::println);
-        containerManager.executeCommandInContainer(containerName, workDir, List.of("git", "commit", "-m", "Auto-convert DB2 to PostgreSQL", "-m", explanation), System.out::println);
-        System.out.println("Committed changes for: " + relativePath);
+    /**
+     * Adds a {@code .gitattributes} that normalizes line endings and commits it together with the whole project, so
+     * the patches of a freshly initialised repository (ZIP upload) are modifications rather than new files.
+     */
+    public void commitProjectTree(String containerName) throws IOException, InterruptedException {
+        execute(containerName, projectTreeCommit());
     }
 
-    public void commit(String filePath, String message) throws IOException, InterruptedException {
-        String containerName = dockerConfig.getContainerName();
-        String workDir = dockerConfig.getContainerProjectPath();
-        String relativePath = filePath.replace(workDir + "/", "");
+    static GitPatchTransaction projectTreeCommit() {
+        return new GitPatchTransaction()
+                .writeFile(".gitattributes", "* text=auto")
+                .addAll()
+                .commit("Add .gitattributes to normalize line endings", null);
+    }
 
-        containerManager.executeCommandInContainer(containerName, workDir, List.of("git", "config", "user.email", "conversion-bot@example.com"), s -> {
-        });
-        containerManager.executeCommandInContainer(containerName, workDir, List.of("git", "config", "user.name", "Conversion Bot"), s -> {
-        });
-        containerManager.executeCommandInContainer(containerName, workDir, List.of("git", "add", relativePath), System.out::println);
-        containerManager.executeCommandInContainer(containerName, workDir, List.of("git", "commit", "-m", message), System.out::println);
-        System.out.println("Committed changes for: " + relativePath);
+    public String toRelativePath(String filePath) {
+        return FindingDeduplicator.canonicalPath(filePath).replace(dockerConfig.getContainerProjectPath() + "/", "");
     }
 
+    public GitPatchTransaction.Result execute(ContainerLease lease, GitPatchTransaction transaction) throws IOException, InterruptedException {
+        return execute(lease.getContainerName(), transaction);
+    }
 
-    public String formatPatch() throws IOException, InterruptedException {
-        String containerName = dockerConfig.getContainerName();
+    public GitPatchTransaction.Result execute(String containerName, GitPatchTransaction transaction) throws IOException, InterruptedException {
         String workDir = dockerConfig.getContainerProjectPath();
+        List<String> patchFiles = new ArrayList<>();
 
-        String patchFileName = containerManager.executeCommandInContainerAndCaptureOutput(
-                containerName, workDir, List.of("git", "format-patch", "-1", "HEAD")
-        ).trim();
+        containerManager.executeCommandInContainer(containerName, workDir, List.of("bash", "-c", transaction.toScript()), line -> {
+            if (line.startsWith(GitPatchTransaction.PATCH_FILE_MARKER)) {
+                patchFiles.add(line.substring(GitPatchTransaction.PATCH_FILE_MARKER.length()).trim());
+            } else {
+                System.out.println(line);
+            }
+        });
 
-        if (patchFileName.isBlank()) {
-            System.err.println("❌ Patch file generation failed.");
-            return null;
+        if (patchFiles.isEmpty() || patchFiles.get(0).isBlank()) {
+            return new GitPatchTransaction.Result(null);
         }
-
-        return patchFileName;
-    }
-
-    public void createAndCheckoutBranch(String branchName) throws IOException, InterruptedException {
-        String containerName = dockerConfig.getContainerName();
-        String workDir = dockerConfig.getContainerProjectPath();
-        containerManager.executeCommandInContainer(containerName, workDir, List.of("git", "checkout", "-b", branchName), System.out::println);
-        System.out.println("Created and switched to new branch: " + branchName);
-    }
-
-    public void resetAndCleanBranch(String branchName) throws IOException, InterruptedException {
-        String containerName = dockerConfig.getContainerName();
-        String workDir = dockerConfig.getContainerProjectPath();
-        containerManager.executeCommandInContainer(containerName, workDir, List.of("git", "checkout", "main"), System.out::println);
-        containerManager.executeCommandInContainer(containerName, workDir, List.of("git", "branch", "-D", branchName), System.out::println);
-        System.out.println("Reset to main and deleted temporary branch: " + branchName);
+        return new GitPatchTransaction.Result(patchFiles.get(0));
     }
 }
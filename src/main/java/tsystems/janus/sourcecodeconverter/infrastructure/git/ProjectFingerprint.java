@@ -0,0 +1,71 @@
+package tsystems.janus.sourcecodeconverter.infrastructure.git;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Identifies the exact source a project directory contains. A clean git checkout is identified by its HEAD tree
+ * hash, so the same content under different commits shares one identity. Anything else, e.g. an uploaded ZIP, is
+ * identified by a hash over its file paths and contents.
+ */
+@Component
+public class ProjectFingerprint {
+
+    private static final int CONTENT_HASH_LENGTH = 40;
+
+    public String of(File projectDir) throws IOException {
+        if (new File(projectDir, ".git").isDirectory()) {
+            try (Git git = Git.open(projectDir)) {
+                ObjectId tree = git.getRepository().resolve("HEAD^{tree}");
+                if (tree != null && git.status().call().isClean()) {
+                    return "tree-" + tree.name();
+                }
+            } catch (GitAPIException e) {
+                System.out.println("Could not read git state of " + projectDir + ", hashing its content instead: " + e.getMessage());
+            }
+        }
+        return "content-" + contentHash(projectDir.toPath());
+    }
+
+    private static String contentHash(Path projectDir) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(projectDir)) {
+            files = walk.filter(Files::isRegularFile)
+                    .filter(file -> !projectDir.relativize(file).startsWith(".git"))
+                    .sorted()
+                    .toList();
+        }
+        for (Path file : files) {
+            digest.update(projectDir.relativize(file).toString().replace('\\', '/').getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            try (InputStream in = new DigestInputStream(Files.newInputStream(file), digest)) {
+                in.transferTo(OutputStream.nullOutputStream());
+            }
+            digest.update((byte) 0);
+        }
+        return HexFormat.of().formatHex(digest.digest()).substring(0, CONTENT_HASH_LENGTH);
+    }
+}
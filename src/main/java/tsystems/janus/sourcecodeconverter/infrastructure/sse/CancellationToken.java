@@ -0,0 +1,68 @@
+package tsystems.janus.sourcecodeconverter.infrastructure.sse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Signals that the client of a job has gone away. Listeners registered with {@link #onCancel(Runnable)} run once,
+ * on the thread that cancels, in reverse registration order (inner scopes first), or immediately when the
+ * token is already cancelled.
+ */
+public class CancellationToken {
+
+    private final List<Runnable> listeners = new ArrayList<>();
+    private volatile String reason;
+
+    public void cancel(String reason) {
+        List<Runnable> toRun;
+        synchronized (this) {
+            if (this.reason != null) {
+                return;
+            }
+            this.reason = reason;
+            toRun = new ArrayList<>(listeners.reversed());
+            listeners.clear();
+        }
+        System.out.println("🛑 Job cancelled: " + reason);
+        for (Runnable listener : toRun) {
+            try {
+                listener.run();
+            } catch (RuntimeException e) {
+                System.err.println("⚠️ Cancellation listener failed: " + e.getMessage());
+            }
+        }
+    }
+
+    public boolean isCancelled() {
+        return reason != null;
+    }
+
+    public void throwIfCancelled() {
+        if (reason != null) {
+            throw new CancellationException("Job cancelled: " + reason);
+        }
+    }
+
+    public Registration onCancel(Runnable listener) {
+        synchronized (this) {
+            if (reason == null) {
+                listeners.add(listener);
+                return () -> {
+                    synchronized (this) {
+                        listeners.remove(listener);
+                    }
+                };
+            }
+        }
+        listener.run();
+        return () -> {
+        };
+    }
+
+    @FunctionalInterface
+    public interface Registration extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
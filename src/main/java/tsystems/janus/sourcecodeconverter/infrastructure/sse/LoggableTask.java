@@ -4,5 +4,5 @@ import java.util.function.Consumer;
 
 @FunctionalInterface
 public interface LoggableTask {
-    void execute(Consumer<String> logger) throws Exception;
+    void execute(Consumer<String> logger, CancellationToken cancellation) throws Exception;
 }
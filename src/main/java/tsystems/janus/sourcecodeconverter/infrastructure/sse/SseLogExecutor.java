@@ -5,7 +5,9 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.IOException;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 
 @Service
@@ -19,33 +21,73 @@ public class SseLogExecutor {
 
     public SseEmitter streamConversionLogs(LoggableTask task) {
         SseEmitter emitter = new SseEmitter(600_000L); // 10 minutes
+        CancellationToken cancellation = new CancellationToken();
+        AtomicBoolean running = new AtomicBoolean(true);
+
+        emitter.onCompletion(() -> cancelIfRunning(running, cancellation, "SSE stream closed"));
+        emitter.onTimeout(() -> cancelIfRunning(running, cancellation, "SSE stream timed out"));
+        emitter.onError(e -> cancelIfRunning(running, cancellation, "SSE client disconnected: " + e.getMessage()));
 
         sseExecutor.execute(() -> {
+            // Interrupting the worker unblocks waits and kills host processes started through DockerCommandExecutor
+            Thread worker = Thread.currentThread();
+            CancellationToken.Registration interruptOnCancel = cancellation.onCancel(() -> {
+                synchronized (running) {
+                    if (running.get()) {
+                        worker.interrupt();
+                    }
+                }
+            });
             try {
                 Consumer<String> logConsumer = logMessage -> {
+                    cancellation.throwIfCancelled();
                     try {
                         emitter.send(SseEmitter.event().name("log").data(logMessage));
                     } catch (IOException e) {
                         System.err.println("Error sending SSE log. Client might have disconnected. " + e.getMessage());
-                        throw new RuntimeException(e);
+                        cancellation.cancel("SSE client disconnected: " + e.getMessage());
+                        throw new CancellationException("SSE client disconnected");
                     }
                 };
 
-                task.execute(logConsumer);
+                task.execute(logConsumer, cancellation);
+                stopInterrupts(running, interruptOnCancel);
 
                 emitter.send(SseEmitter.event().name("completion").data("Conversion process finished."));
                 emitter.complete();
 
             } catch (Exception e) {
-                try {
-                    emitter.send(SseEmitter.event().name("error").data("Conversion failed: " + e.getMessage()));
-                } catch (IOException ioException) {
-                    System.err.println("Error sending the final SSE error event: " + ioException.getMessage());
+                stopInterrupts(running, interruptOnCancel);
+                if (cancellation.isCancelled()) {
+                    System.out.println("Conversion stopped after cancellation: " + e.getMessage());
+                } else {
+                    try {
+                        emitter.send(SseEmitter.event().name("error").data("Conversion failed: " + e.getMessage()));
+                    } catch (IOException ioException) {
+                        System.err.println("Error sending the final SSE error event: " + ioException.getMessage());
+                    }
                 }
                 emitter.completeWithError(e);
+            } finally {
+                stopInterrupts(running, interruptOnCancel);
             }
         });
 
         return emitter;
     }
+
+    private static void cancelIfRunning(AtomicBoolean running, CancellationToken cancellation, String reason) {
+        if (running.get()) {
+            cancellation.cancel(reason);
+        }
+    }
+
+    private static void stopInterrupts(AtomicBoolean running, CancellationToken.Registration interruptOnCancel) {
+        interruptOnCancel.close();
+        synchronized (running) {
+            running.set(false);
+            // The executor's threads are reused, so a cancellation interrupt must not leak into the next task
+            Thread.interrupted();
+        }
+    }
 }
@@ -0,0 +1,56 @@
+package tsystems.janus.sourcecodeconverter.infrastructure.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Keeps the most recent lines of a command's output up to a byte budget. Older lines are dropped once the
+ * budget is exceeded, while the total volume seen is still counted.
+ */
+public class OutputRingBuffer {
+
+    private final long maxBytes;
+    private final Deque<String> lines = new ArrayDeque<>();
+    private long bufferedBytes;
+    private long totalBytes;
+    private long totalLines;
+    private boolean truncated;
+
+    public OutputRingBuffer(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public synchronized void append(String line) {
+        long size = line.getBytes(StandardCharsets.UTF_8).length + 1L;
+        lines.addLast(line);
+        bufferedBytes += size;
+        totalBytes += size;
+        totalLines++;
+
+        while (bufferedBytes > maxBytes && lines.size() > 1) {
+            bufferedBytes -= lines.removeFirst().getBytes(StandardCharsets.UTF_8).length + 1L;
+            truncated = true;
+        }
+    }
+
+    public synchronized String text() {
+        StringBuilder text = new StringBuilder((int) Math.min(bufferedBytes, Integer.MAX_VALUE - 8));
+        for (String line : lines) {
+            text.append(line).append('\n');
+        }
+        return text.toString();
+    }
+
+    public synchronized long totalBytes() {
+        return totalBytes;
+    }
+
+    public synchronized long totalLines() {
+        return totalLines;
+    }
+
+    public synchronized boolean isTruncated() {
+        return truncated;
+    }
+}
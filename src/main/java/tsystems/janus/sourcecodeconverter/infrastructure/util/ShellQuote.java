@@ -0,0 +1,11 @@
+package tsystems.janus.sourcecodeconverter.infrastructure.util;
+
+public final class ShellQuote {
+
+    private ShellQuote() {
+    }
+
+    public static String quote(String argument) {
+        return "'" + argument.replace("'", "'\"'\"'") + "'";
+    }
+}
@@ -0,0 +1,237 @@
+package tsystems.janus.sourcecodeconverter.infrastructure.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Minimal ustar reader/writer used to move files in and out of containers as a single stream.
+ * Long names are written as GNU long-name entries; GNU and PAX long names are understood when reading.
+ */
+public final class TarArchive {
+
+    private static final int BLOCK_SIZE = 512;
+    private static final int NAME_LENGTH = 100;
+
+    private TarArchive() {
+    }
+
+    public static class Writer implements AutoCloseable {
+        private final OutputStream out;
+        private boolean finished;
+
+        public Writer(OutputStream out) {
+            this.out = out;
+        }
+
+        public void addFile(String name, byte[] content) throws IOException {
+            byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+            if (nameBytes.length > NAME_LENGTH) {
+                byte[] longName = new byte[nameBytes.length + 1];
+                System.arraycopy(nameBytes, 0, longName, 0, nameBytes.length);
+                writeHeader("././@LongLink", longName.length, 'L');
+                writeContent(longName);
+            }
+            writeHeader(name, content.length, '0');
+            writeContent(content);
+        }
+
+        public void finish() throws IOException {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            out.write(new byte[BLOCK_SIZE * 2]);
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            finish();
+        }
+
+        private void writeHeader(String name, long size, char type) throws IOException {
+            byte[] header = new byte[BLOCK_SIZE];
+            byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+            System.arraycopy(nameBytes, 0, header, 0, Math.min(nameBytes.length, NAME_LENGTH));
+            writeOctal(header, 100, 8, 0644);
+            writeOctal(header, 108, 8, 0);
+            writeOctal(header, 116, 8, 0);
+            writeOctal(header, 124, 12, size);
+            writeOctal(header, 136, 12, System.currentTimeMillis() / 1000);
+            header[156] = (byte) type;
+            System.arraycopy("ustar  \u0000".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 8);
+
+            for (int i = 148; i < 156; i++) {
+                header[i] = ' ';
+            }
+            long checksum = 0;
+            for (byte b : header) {
+                checksum += b & 0xFF;
+            }
+            writeOctal(header, 148, 7, checksum);
+            header[155] = ' ';
+
+            out.write(header);
+        }
+
+        private void writeContent(byte[] content) throws IOException {
+            out.write(content);
+            int padding = (BLOCK_SIZE - content.length % BLOCK_SIZE) % BLOCK_SIZE;
+            out.write(new byte[padding]);
+        }
+
+        private static void writeOctal(byte[] header, int offset, int length, long value) {
+            String octal = Long.toOctalString(value);
+            int digits = length - 1;
+            String padded = "0".repeat(Math.max(0, digits - octal.length())) + octal;
+            byte[] bytes = padded.getBytes(StandardCharsets.US_ASCII);
+            System.arraycopy(bytes, 0, header, offset, Math.min(bytes.length, digits));
+            header[offset + digits] = 0;
+        }
+    }
+
+    public static class Reader {
+        private final InputStream in;
+        private long remainingInEntry;
+        private long paddingAfterEntry;
+
+        public Reader(InputStream in) {
+            this.in = in;
+        }
+
+        /**
+         * Advances to the next regular file or directory entry, or returns {@code null} at the end of the archive.
+         * The returned entry's content must be consumed through {@link #readContent()} before moving on.
+         */
+        public Entry nextEntry() throws IOException {
+            skipRemainder();
+            String pendingLongName = null;
+
+            while (true) {
+                byte[] header = in.readNBytes(BLOCK_SIZE);
+                if (header.length < BLOCK_SIZE || isZeroBlock(header)) {
+                    return null;
+                }
+
+                String name = readString(header, 0, NAME_LENGTH);
+                String prefix = isPosixUstar(header) ? readString(header, 345, 155) : "";
+                if (!prefix.isEmpty()) {
+                    name = prefix + "/" + name;
+                }
+                long size = readOctal(header, 124, 12);
+                char type = (char) header[156];
+                remainingInEntry = size;
+                paddingAfterEntry = (BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE;
+
+                if (type == 'L') {
+                    pendingLongName = trimNul(new String(readContent(), StandardCharsets.UTF_8));
+                    skipRemainder();
+                    continue;
+                }
+                if (type == 'x') {
+                    String paxPath = readPaxPath(readContent());
+                    if (paxPath != null) {
+                        pendingLongName = paxPath;
+                    }
+                    skipRemainder();
+                    continue;
+                }
+                if (type == 'g') {
+                    readContent();
+                    skipRemainder();
+                    continue;
+                }
+
+                String entryName = pendingLongName != null ? pendingLongName : name;
+                return new Entry(entryName, size, type == '5');
+            }
+        }
+
+        public byte[] readContent() throws IOException {
+            byte[] content = in.readNBytes((int) remainingInEntry);
+            if (content.length < remainingInEntry) {
+                throw new EOFException("Unexpected end of tar stream");
+            }
+            remainingInEntry = 0;
+            return content;
+        }
+
+        public void copyContent(OutputStream out) throws IOException {
+            byte[] buffer = new byte[8192];
+            while (remainingInEntry > 0) {
+                int read = in.read(buffer, 0, (int) Math.min(buffer.length, remainingInEntry));
+                if (read < 0) {
+                    throw new EOFException("Unexpected end of tar stream");
+                }
+                out.write(buffer, 0, read);
+                remainingInEntry -= read;
+            }
+        }
+
+        private void skipRemainder() throws IOException {
+            in.skipNBytes(remainingInEntry + paddingAfterEntry);
+            remainingInEntry = 0;
+            paddingAfterEntry = 0;
+        }
+
+        private static String readPaxPath(byte[] pax) {
+            String records = new String(pax, StandardCharsets.UTF_8);
+            for (String record : records.split("\n")) {
+                int space = record.indexOf(' ');
+                if (space > 0 && record.startsWith("path=", space + 1)) {
+                    return record.substring(space + 1 + "path=".length());
+                }
+            }
+            return null;
+        }
+
+        private static boolean isPosixUstar(byte[] header) {
+            return "ustar\u0000".equals(new String(header, 257, 6, StandardCharsets.US_ASCII));
+        }
+
+        private static boolean isZeroBlock(byte[] block) {
+            for (byte b : block) {
+                if (b != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static String readString(byte[] header, int offset, int length) {
+            return trimNul(new String(header, offset, length, StandardCharsets.UTF_8));
+        }
+
+        private static long readOctal(byte[] header, int offset, int length) {
+            if ((header[offset] & 0x80) != 0) {
+                long value = 0;
+                for (int i = offset + 1; i < offset + length; i++) {
+                    value = (value << 8) | (header[i] & 0xFF);
+                }
+                return value;
+            }
+            String octal = readString(header, offset, length).trim();
+            return octal.isEmpty() ? 0 : Long.parseLong(octal, 8);
+        }
+
+        private static String trimNul(String value) {
+            int nul = value.indexOf('\0');
+            return nul >= 0 ? value.substring(0, nul) : value;
+        }
+    }
+
+    public record Entry(String name, long size, boolean directory) {
+    }
+
+    public static byte[] singleFile(String name, byte[] content) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(content.length + BLOCK_SIZE * 4);
+        try (Writer writer = new Writer(out)) {
+            writer.addFile(name, content);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,27 @@
+package tsystems.janus.sourcecodeconverter.infrastructure.util;
+
+/**
+ * Runs cleanup work that must finish even when the calling thread has been interrupted, e.g. by a job
+ * cancellation. The work runs on its own virtual thread and the caller's interrupt flag is restored afterwards.
+ */
+public final class Uninterruptibles {
+
+    private Uninterruptibles() {
+    }
+
+    public static void run(String name, Runnable task) {
+        Thread worker = Thread.ofVirtual().name(name).start(task);
+        boolean interrupted = false;
+        while (true) {
+            try {
+                worker.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
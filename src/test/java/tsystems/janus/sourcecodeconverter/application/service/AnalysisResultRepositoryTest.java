@@ -0,0 +1,88 @@
+package tsystems.janus.sourcecodeconverter.application.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+import tsystems.janus.sourcecodeconverter.domain.model.LlmReplacementsResponse;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AnalysisResultRepositoryTest {
+
+    private static final AnalysisResultRepository.Key<List<String>> FIRST = new AnalysisResultRepository.Key<>("first");
+    private static final AnalysisResultRepository.Key<List<String>> SECOND = new AnalysisResultRepository.Key<>("second");
+    private static final AnalysisResultRepository.Key<List<String>> THIRD = new AnalysisResultRepository.Key<>("third");
+
+    private final AnalysisResultRepository repository = new AnalysisResultRepository(DataSize.ofBytes(100), Duration.ofHours(1));
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void loadsOnceAndServesTheCachedValueAfterwards() throws Exception {
+        List<String> first = repository.get(FIRST, 10, () -> load("a"));
+        List<String> second = repository.get(FIRST, 10, () -> load("b"));
+
+        assertEquals(List.of("a"), first);
+        assertSame(first, second);
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void invalidateDropsTheValuesOfThePreviousRun() throws Exception {
+        repository.put(FIRST, List.of("old"), 10);
+
+        repository.invalidate();
+
+        assertEquals(List.of("new"), repository.get(FIRST, 10, () -> load("new")));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void valueLoadedWhileANewRunStartsIsReturnedButNotKept() throws Exception {
+        List<String> stale = repository.get(FIRST, 10, () -> {
+            repository.invalidate();
+            return load("stale");
+        });
+
+        assertEquals(List.of("stale"), stale);
+        assertEquals(List.of("fresh"), repository.get(FIRST, 10, () -> load("fresh")));
+    }
+
+    @Test
+    void leastRecentlyUsedValueIsDroppedOverTheMaximumSize() throws Exception {
+        repository.put(FIRST, List.of("first"), 40);
+        repository.put(SECOND, List.of("second"), 40);
+        repository.get(FIRST, 40, () -> load("unused"));
+
+        // FIRST was used after SECOND, so SECOND goes to make room
+        repository.put(THIRD, List.of("third"), 40);
+
+        assertEquals(List.of("first"), repository.get(FIRST, 40, () -> load("unused")));
+        assertEquals(List.of("reloaded"), repository.get(SECOND, 40, () -> load("reloaded")));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void cachedListsCannotBeChangedByCallers() throws Exception {
+        List<LlmReplacementsResponse> produced = new ArrayList<>(List.of(new LlmReplacementsResponse()));
+        repository.put(AnalysisResultRepository.REPLACEMENTS, produced, 10);
+        produced.clear();
+
+        List<LlmReplacementsResponse> cached = repository.get(AnalysisResultRepository.REPLACEMENTS, 10, List::of);
+
+        assertEquals(1, cached.size());
+        assertThrows(UnsupportedOperationException.class, () -> cached.add(new LlmReplacementsResponse()));
+        assertThrows(UnsupportedOperationException.class,
+                () -> repository.get(FIRST, 10, () -> load("loaded")).add("more"));
+    }
+
+    private List<String> load(String value) {
+        loads.incrementAndGet();
+        return new ArrayList<>(List.of(value));
+    }
+}
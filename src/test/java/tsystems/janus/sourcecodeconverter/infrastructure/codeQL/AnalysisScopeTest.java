@@ -0,0 +1,143 @@
+package tsystems.janus.sourcecodeconverter.infrastructure.codeQL;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AnalysisScopeTest {
+
+    private final AnalysisScopes analysisScopes = new AnalysisScopes("**/target/**,**/node_modules/**");
+
+    @TempDir
+    Path projectDir;
+
+    @Test
+    void doubleStarMatchesAnyNumberOfDirectories() {
+        assertTrue(AnalysisScope.matches("**/target/**", "target/classes/Foo.class"));
+        assertTrue(AnalysisScope.matches("**/target/**", "billing/target/generated/Foo.java"));
+        assertTrue(AnalysisScope.matches("billing/**", "billing"));
+        assertTrue(AnalysisScope.matches("billing/**", "billing/src/main/java/Invoice.java"));
+        assertFalse(AnalysisScope.matches("billing/**", "billing-api/src/Invoice.java"));
+    }
+
+    @Test
+    void singleStarAndQuestionMarkStayWithinOneSegment() {
+        assertTrue(AnalysisScope.matches("src/*.java", "src/UserDao.java"));
+        assertFalse(AnalysisScope.matches("src/*.java", "src/dao/UserDao.java"));
+        assertTrue(AnalysisScope.matches("src/Dao?.java", "src/Dao1.java"));
+        assertFalse(AnalysisScope.matches("src/Dao?.java", "src/Dao/.java"));
+    }
+
+    @Test
+    void globsAreAnchoredAtTheProjectRoot() {
+        assertTrue(AnalysisScope.matches("build/**", "build/generated/Foo.java"));
+        assertFalse(AnalysisScope.matches("build/**", "src/main/java/com/acme/build/Foo.java"));
+        assertFalse(AnalysisScope.matches("src/*.java", "module/src/Foo.java"));
+    }
+
+    @Test
+    void globCharactersAreMatchedLiterally() {
+        assertTrue(AnalysisScope.matches("src/main/resources/sql.xml", "src/main/resources/sql.xml"));
+        assertFalse(AnalysisScope.matches("src/main/resources/sql.xml", "src/main/resources/sqlxxml"));
+    }
+
+    @Test
+    void excludesWinOverIncludes() {
+        AnalysisScope scope = analysisScopes.resolve("module:billing", "pkg:com.acme.billing.legacy");
+
+        assertTrue(scope.includes("billing/src/main/java/com/acme/billing/InvoiceDao.java"));
+        assertFalse(scope.includes("billing/src/main/java/com/acme/billing/legacy/OldDao.java"));
+        assertFalse(scope.includes("billing/target/generated-sources/Gen.java"));
+        assertFalse(scope.includes("shipping/src/main/java/ShipmentDao.java"));
+        assertTrue(scope.includes("billing\\src\\main\\java\\Invoice.java"));
+    }
+
+    @Test
+    void defaultsKeepSourcePackagesNamedBuild() {
+        AnalysisScope scope = analysisScopes.getDefault();
+
+        assertTrue(scope.includes("src/main/java/com/acme/build/BuildDao.java"));
+        assertFalse(scope.includes("target/classes/Foo.class"));
+    }
+
+    @Test
+    void excludesBuildOutputsNextToGradleBuildFiles() throws Exception {
+        Files.writeString(projectDir.resolve("settings.gradle"), "include 'billing'\n");
+        Files.createDirectories(projectDir.resolve("billing/src/main/java/com/acme/build"));
+        Files.writeString(projectDir.resolve("billing/build.gradle.kts"), "plugins { java }\n");
+        // Gradle files inside an output directory do not add build roots of their own
+        Files.createDirectories(projectDir.resolve("billing/build/tmp"));
+        Files.writeString(projectDir.resolve("billing/build/tmp/build.gradle"), "\n");
+
+        AnalysisScope scope = analysisScopes.withGradleBuildOutputs(analysisScopes.getDefault(), projectDir.toFile());
+
+        assertEquals(List.of("**/target/**", "**/node_modules/**", "billing/build/**", "build/**"), scope.exclude());
+        assertFalse(scope.includes("billing/build/generated/sources/Gen.java"));
+        assertFalse(scope.includes("build/classes/Foo.class"));
+        assertTrue(scope.includes("billing/src/main/java/com/acme/build/BuildDao.java"));
+    }
+
+    @Test
+    void projectWithoutGradleKeepsItsScope() throws Exception {
+        Files.writeString(projectDir.resolve("pom.xml"), "<project/>\n");
+        AnalysisScope scope = analysisScopes.getDefault();
+
+        assertSame(scope, analysisScopes.withGradleBuildOutputs(scope, projectDir.toFile()));
+    }
+
+    @Test
+    void moduleScopeMovesRootGlobsIntoTheModule() {
+        AnalysisScope scope = new AnalysisScope(List.of(),
+                List.of("**/target/**", "billing/generated/**", "billing/build/**", "shipping/build/**", "**/legacy/*.java"));
+
+        AnalysisScope billing = scope.withinModule("billing").orElseThrow();
+
+        assertEquals(List.of("**/target/**", "generated/**", "build/**", "**/legacy/*.java"), billing.exclude());
+        assertTrue(billing.include().isEmpty());
+        assertSame(scope, scope.withinModule("").orElseThrow());
+    }
+
+    @Test
+    void moduleScopeKeepsIncludesThatReachTheModule() {
+        AnalysisScope scope = new AnalysisScope(List.of("billing/src/main/java/com/acme/**", "shipping/**"), List.of());
+
+        assertEquals(List.of("src/main/java/com/acme/**"), scope.withinModule("billing").orElseThrow().include());
+        assertEquals(List.of("**"), scope.withinModule("shipping").orElseThrow().include());
+        assertTrue(scope.withinModule("orders").isEmpty());
+        assertTrue(scope.withinModule("billing-api").isEmpty());
+    }
+
+    @Test
+    void moduleScopeFallsBackToTheWholeModuleWhenAnIncludeSpansIt() {
+        AnalysisScope scope = new AnalysisScope(List.of("services/**/dao/**", "*/api/**"), List.of("services/**/gen/**"));
+
+        AnalysisScope orders = scope.withinModule("services/orders").orElseThrow();
+
+        assertTrue(orders.include().isEmpty());
+        assertTrue(orders.exclude().isEmpty());
+        assertEquals(List.of("api/**"), new AnalysisScope(List.of("*/api/**"), List.of()).withinModule("billing").orElseThrow().include());
+    }
+
+    @Test
+    void idChangesWithTheScope() {
+        assertEquals(analysisScopes.getDefault().id(), analysisScopes.resolve(null, "**/target/**").id());
+        assertNotEquals(analysisScopes.getDefault().id(), analysisScopes.resolve("module:billing", null).id());
+    }
+
+    @Test
+    void rejectsPathsLeavingTheProject() {
+        assertThrows(IllegalArgumentException.class, () -> analysisScopes.resolve("../other/**", null));
+        assertThrows(IllegalArgumentException.class, () -> analysisScopes.resolve("pkg:com..acme", null));
+        assertThrows(IllegalArgumentException.class, () -> analysisScopes.resolve("module:/", null));
+    }
+}
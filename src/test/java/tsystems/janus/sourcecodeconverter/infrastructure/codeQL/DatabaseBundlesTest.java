@@ -0,0 +1,93 @@
+package tsystems.janus.sourcecodeconverter.infrastructure.codeQL;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DatabaseBundlesTest {
+
+    // Well-formed, but no bundle is stored under it
+    private static final String UNKNOWN_HASH = "0".repeat(64);
+    private static final String KEY = "java-shop-3f2a";
+
+    @TempDir
+    Path bundleDir;
+
+    @TempDir
+    Path outputDir;
+
+    private final List<String> log = new ArrayList<>();
+
+    @Test
+    void publishedBundleIsStoredUnderItsChecksumAndFetchedBack() throws Exception {
+        DatabaseBundles bundles = bundles();
+        Path exported = Files.write(outputDir.resolve("export.zip"), "bundle-v1".getBytes());
+
+        String hash = bundles.publish(KEY, exported);
+
+        assertEquals(DatabaseBundles.copyHashing(exported, outputDir.resolve("copy.zip")), hash);
+        assertTrue(Files.exists(bundleDir.resolve("sha256/" + hash + ".zip")));
+        assertEquals(hash, Files.readString(bundleDir.resolve("refs/" + KEY)));
+
+        Path imported = outputDir.resolve("import.zip");
+        assertTrue(bundles.fetch(KEY, imported, log::add));
+        assertArrayEquals("bundle-v1".getBytes(), Files.readAllBytes(imported));
+    }
+
+    @Test
+    void republishingSwapsTheReferenceAndLeavesNoTemporaryFiles() throws Exception {
+        DatabaseBundles bundles = bundles();
+        String first = bundles.publish(KEY, Files.write(outputDir.resolve("v1.zip"), "bundle-v1".getBytes()));
+        String second = bundles.publish(KEY, Files.write(outputDir.resolve("v2.zip"), "bundle-v2".getBytes()));
+        // The same content again reuses the stored bundle
+        assertEquals(second, bundles.publish(KEY, Files.write(outputDir.resolve("v2-again.zip"), "bundle-v2".getBytes())));
+
+        assertEquals(second, Files.readString(bundleDir.resolve("refs/" + KEY)));
+        // Other nodes may still be reading the previous bundle, so it stays
+        try (var blobs = Files.list(bundleDir.resolve("sha256")); var refs = Files.list(bundleDir.resolve("refs"))) {
+            assertEquals(List.of(first + ".zip", second + ".zip"), blobs.map(path -> path.getFileName().toString()).sorted().toList());
+            assertEquals(List.of(KEY), refs.map(path -> path.getFileName().toString()).toList());
+        }
+    }
+
+    @Test
+    void corruptBundleIsNotImported() throws Exception {
+        DatabaseBundles bundles = bundles();
+        String hash = bundles.publish(KEY, Files.write(outputDir.resolve("export.zip"), "bundle-v1".getBytes()));
+        Files.write(bundleDir.resolve("sha256/" + hash + ".zip"), "truncated".getBytes());
+
+        assertFalse(bundles.fetch(KEY, outputDir.resolve("import.zip"), log::add));
+        assertTrue(log.get(log.size() - 1).contains("is corrupt"), log.toString());
+    }
+
+    @Test
+    void missingOrMalformedReferenceIsNotImported() throws Exception {
+        DatabaseBundles bundles = bundles();
+        Path imported = outputDir.resolve("import.zip");
+
+        assertFalse(bundles.fetch(KEY, imported, log::add));
+        assertEquals(List.of(), log);
+
+        Files.createDirectories(bundleDir.resolve("refs"));
+        Files.writeString(bundleDir.resolve("refs/" + KEY), "../../etc/passwd");
+        assertFalse(bundles.fetch(KEY, imported, log::add));
+
+        Files.writeString(bundleDir.resolve("refs/" + KEY), UNKNOWN_HASH);
+        assertFalse(bundles.fetch(KEY, imported, log::add));
+        assertEquals(2, log.size());
+        assertFalse(Files.exists(imported));
+    }
+
+    private DatabaseBundles bundles() {
+        return new DatabaseBundles(null, null, bundleDir.toString());
+    }
+}
@@ -0,0 +1,123 @@
+package tsystems.janus.sourcecodeconverter.infrastructure.codeQL;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+import tsystems.janus.sourcecodeconverter.infrastructure.docker.CodeQLDockerConfig;
+import tsystems.janus.sourcecodeconverter.infrastructure.docker.DockerContainerManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DatabaseCacheTest {
+
+    private static final long DATABASE_SIZE = 40;
+    private static final DatabaseCache.DatabaseCreator CREATE = dbPath -> {
+    };
+    private static final Consumer<String> NO_LOG = line -> {
+    };
+
+    // Used long ago, oldest first
+    private final FakeContainerManager containerManager = new FakeContainerManager("""
+            billing 100 40
+            orders 200 40
+            shipping 300 40
+            """);
+    private final DatabaseCache cache = new DatabaseCache(containerManager, new CodeQLDockerConfig(), DataSize.ofBytes(50));
+
+    @Test
+    void evictsTheLeastRecentlyUsedDatabasesThatNoJobHolds() throws Exception {
+        DatabaseCache.Handle orders = cache.open("container-1", "orders", CREATE, NO_LOG);
+        DatabaseCache.Handle inventory = cache.open("container-1", "inventory", CREATE, NO_LOG);
+
+        // Both databases in use stay, even though the cache is still over its size afterwards
+        assertEquals(List.of("/app/db/billing", "/app/db/shipping"), containerManager.deleted);
+        assertTrue(cache.contains("container-1", "orders"));
+        assertTrue(cache.contains("container-1", "inventory"));
+        assertEquals(80, cache.stats().sizeBytes());
+
+        orders.close();
+        cache.open("container-1", "returns", CREATE, NO_LOG).close();
+
+        assertEquals(List.of("/app/db/billing", "/app/db/shipping", "/app/db/orders"), containerManager.deleted);
+        assertFalse(cache.contains("container-1", "orders"));
+        assertTrue(cache.contains("container-1", "inventory"));
+        assertEquals(3, cache.stats().evictions());
+        inventory.close();
+    }
+
+    @Test
+    void closingTheHandleLetsTheNextJobForTheKeyIn() throws Exception {
+        DatabaseCache.Handle first = cache.open("container-1", "orders", CREATE, NO_LOG);
+        CompletableFuture<Boolean> second = CompletableFuture.supplyAsync(() -> {
+            try (DatabaseCache.Handle handle = cache.open("container-2", "orders", CREATE, NO_LOG)) {
+                return handle.isHit();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        assertThrows(TimeoutException.class, () -> second.get(200, TimeUnit.MILLISECONDS));
+        first.close();
+        // A second close must not release the lock the other job holds by then
+        first.close();
+
+        assertTrue(second.get(5, TimeUnit.SECONDS));
+        assertEquals(2, cache.stats().hits());
+    }
+
+    @Test
+    void failedBuildReleasesTheKey() throws Exception {
+        assertThrows(IllegalStateException.class, () -> cache.open("container-1", "inventory", dbPath -> {
+            throw new IllegalStateException("extraction failed");
+        }, NO_LOG));
+
+        CompletableFuture<Boolean> retry = CompletableFuture.supplyAsync(() -> {
+            try (DatabaseCache.Handle handle = cache.open("container-2", "inventory", CREATE, NO_LOG)) {
+                return handle.isHit();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        assertFalse(retry.get(5, TimeUnit.SECONDS));
+        assertTrue(containerManager.deleted.contains("/app/db/inventory.tmp-container-1"));
+    }
+
+    /**
+     * Answers the cache's commands for a database volume whose databases are all {@link #DATABASE_SIZE} bytes,
+     * and records what is deleted.
+     */
+    private static class FakeContainerManager extends DockerContainerManager {
+
+        private final String listing;
+        private final List<String> deleted = Collections.synchronizedList(new ArrayList<>());
+
+        FakeContainerManager(String listing) {
+            super(null, null);
+            this.listing = listing;
+        }
+
+        @Override
+        public void executeCommandInContainer(String containerName, String workDir, List<String> command, Consumer<String> logConsumer) {
+            if (command.get(0).equals("rm")) {
+                deleted.add(command.get(2));
+            }
+        }
+
+        @Override
+        public String executeCommandInContainerAndCaptureOutput(String containerName, String workDir, List<String> command) {
+            String script = command.get(2);
+            return script.startsWith("du -sb ") ? String.valueOf(DATABASE_SIZE) : listing;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package tsystems.janus.sourcecodeconverter.infrastructure.codeQL;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tsystems.janus.sourcecodeconverter.domain.model.CodeQLResult;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FindingColumnDecoderTest {
+
+    private static final String COLUMNS = """
+            "columns": [
+              {"name": "finding", "kind": "Entity"},
+              {"name": "path", "kind": "String"},
+              {"name": "startLine", "kind": "Integer"},
+              {"name": "startColumn", "kind": "Integer"},
+              {"name": "endLine", "kind": "Integer"},
+              {"name": "endColumn", "kind": "Integer"},
+              {"name": "methodName", "kind": "Entity"},
+              {"name": "className", "kind": "String"},
+              {"name": "code", "kind": "String"},
+              {"name": "type", "kind": "String"},
+              {"name": "callerPath", "kind": "String"},
+              {"kind": "String"}
+            ]""";
+
+    private final FindingColumnDecoder decoder = new FindingColumnDecoder(new ObjectMapper());
+
+    @TempDir
+    Path resultsDir;
+
+    @Test
+    void decodesEachColumnIntoItsField() throws Exception {
+        File page = page("{\"#select\": {" + COLUMNS + """
+                , "tuples": [
+                  [{"id": 7, "label": "call to executeQuery"}, "/src/OrderDao.java", 12, 9, 12, 40,
+                   {"id": 3, "url": {"uri": "file:/src/OrderDao.java"}, "label": "findOrders"}, "OrderDao",
+                   "stmt.executeQuery(sql)", "JDBC", "/src/OrderDao.java", "unnamed"],
+                  ["/src/mapper.xml", "/src/mapper.xml", 4, 5, 6, 7, "", "", "SELECT 1", "MYBATIS_XML", null, "x"]
+                ]}, "next": 42}""");
+        List<CodeQLResult> results = new ArrayList<>();
+
+        int rows = decoder.decode(page, results::add);
+
+        assertEquals(2, rows);
+        CodeQLResult jdbc = results.get(0);
+        assertEquals("/src/OrderDao.java", jdbc.getPath());
+        assertEquals(12, jdbc.getStartLine());
+        assertEquals(9, jdbc.getStartColumn());
+        assertEquals(12, jdbc.getEndLine());
+        assertEquals(40, jdbc.getEndColumn());
+        // Entity columns decode to their label
+        assertEquals("findOrders", jdbc.getMethodName());
+        assertEquals("OrderDao", jdbc.getClassName());
+        assertEquals("stmt.executeQuery(sql)", jdbc.getCode());
+        assertEquals("JDBC", jdbc.getType());
+        assertEquals("/src/OrderDao.java", jdbc.getCallerPath());
+        assertEquals("/src/OrderDao.java:12:9:12:40", jdbc.getId());
+
+        CodeQLResult xml = results.get(1);
+        assertEquals("/src/mapper.xml:4:5:6:7", xml.getId());
+        assertNull(xml.getCallerPath());
+    }
+
+    @Test
+    void rejectsResultsWithoutTheFindingColumns() throws Exception {
+        File page = page("""
+                {"#select": {"columns": [{"name": "path", "kind": "String"}, {"kind": "Integer"}], "tuples": []}}""");
+
+        IllegalArgumentException failure = assertThrows(IllegalArgumentException.class, () -> decoder.decode(page, result -> {
+        }));
+
+        assertTrue(failure.getMessage().startsWith("Result columns [code, endColumn, endLine, startColumn, startLine] missing"),
+                failure.getMessage());
+    }
+
+    @Test
+    void rejectsRowsThatDoNotFitTheColumns() throws Exception {
+        File shortRow = page("{\"#select\": {" + COLUMNS + ", \"tuples\": [[\"finding\", \"/src/A.java\", 1, 1]]}}");
+        File longRow = page("{\"#select\": {" + COLUMNS
+                + ", \"tuples\": [[\"f\", \"/src/A.java\", 1, 1, 1, 1, \"m\", \"A\", \"c\", \"JDBC\", \"/src/A.java\", \"x\", \"extra\"]]}}");
+        File textLine = page("{\"#select\": {" + COLUMNS
+                + ", \"tuples\": [[\"f\", \"/src/A.java\", \"one\", 1, 1, 1, \"m\", \"A\", \"c\", \"JDBC\", \"/src/A.java\", \"x\"]]}}");
+
+        assertEquals("Row 0 of " + shortRow + " has 4 values for 12 result columns",
+                assertThrows(IllegalArgumentException.class, () -> decoder.decode(shortRow, result -> {
+                })).getMessage());
+        assertEquals("Row 0 of " + longRow + " has more values than the 12 result columns",
+                assertThrows(IllegalArgumentException.class, () -> decoder.decode(longRow, result -> {
+                })).getMessage());
+        assertEquals("Column 'startLine' of row 0 in " + textLine + " is not an integer: one",
+                assertThrows(IllegalArgumentException.class, () -> decoder.decode(textLine, result -> {
+                })).getMessage());
+    }
+
+    @Test
+    void rejectsOutputWithoutTuples() throws Exception {
+        File page = page("{\"#select\": {" + COLUMNS + "}}");
+
+        assertThrows(IllegalArgumentException.class, () -> decoder.decode(page, result -> {
+        }));
+    }
+
+    private File page(String json) throws Exception {
+        Path page = Files.createTempFile(resultsDir, "page-", ".json");
+        Files.writeString(page, json);
+        return page.toFile();
+    }
+}
@@ -0,0 +1,80 @@
+package tsystems.janus.sourcecodeconverter.infrastructure.codeQL;
+
+import org.junit.jupiter.api.Test;
+import tsystems.janus.sourcecodeconverter.domain.model.CodeQLResult;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FindingDeduplicatorTest {
+
+    private static final String SQL = "SELECT * FROM users FETCH FIRST 1 ROWS ONLY";
+
+    private final FindingDeduplicator deduplicator = new FindingDeduplicator();
+
+    @Test
+    void mapsBuildResourcesBackToSources() {
+        assertEquals("/app/project/src/main/resources/mapper/UserMapper.xml",
+                FindingDeduplicator.canonicalPath("/app/project/target/classes/mapper/UserMapper.xml"));
+        assertEquals("/app/project/src/main/java/UserDao.java",
+                FindingDeduplicator.canonicalPath("\\app\\project\\src\\main\\java\\UserDao.java"));
+        assertNull(FindingDeduplicator.canonicalPath(null));
+    }
+
+    @Test
+    void keyIgnoresLineEndingsAndSurroundingWhitespaceOfTheCode() {
+        String key = deduplicator.keyOf("/app/project/src/UserDao.java", 12, 25, 12, 60, SQL);
+
+        assertEquals(key, deduplicator.keyOf("/app/project/src/UserDao.java", 12, 25, 12, 60, "  " + SQL + "\r\n"));
+        assertNotEquals(key, deduplicator.keyOf("/app/project/src/UserDao.java", 12, 25, 12, 61, SQL));
+        assertNotEquals(key, deduplicator.keyOf("/app/project/src/UserDao.java", 12, 25, 12, 60, SQL + " WITH UR"));
+        assertNotEquals(key, deduplicator.keyOf("/app/project/src/OrderDao.java", 12, 25, 12, 60, SQL));
+    }
+
+    @Test
+    void keepsFirstFindingOfEveryKeyWithCanonicalPathAndId() {
+        CodeQLResult source = finding("/app/project/src/main/resources/mapper/UserMapper.xml", "static");
+        CodeQLResult buildCopy = finding("/app/project/target/classes/mapper/UserMapper.xml", "static");
+        CodeQLResult sameCodeOtherId = finding("/app/project/src/main/resources/mapper/UserMapper.xml", "dynamic");
+        sameCodeOtherId.setId("tainted-sql#7");
+        CodeQLResult otherLine = finding("/app/project/target/classes/mapper/UserMapper.xml", "static");
+        otherLine.setStartLine(40);
+        otherLine.setEndLine(40);
+
+        FindingDeduplicator.Result result = deduplicator.deduplicate(List.of(buildCopy, source, sameCodeOtherId, otherLine));
+
+        assertEquals(2, result.removed());
+        assertEquals(List.of(buildCopy, otherLine), result.findings());
+        assertEquals("/app/project/src/main/resources/mapper/UserMapper.xml", buildCopy.getPath());
+        assertEquals("/app/project/src/main/resources/mapper/UserMapper.xml:12:25:12:60", buildCopy.getId());
+        assertEquals("/app/project/src/main/resources/mapper/UserMapper.xml:40:25:40:60", otherLine.getId());
+    }
+
+    @Test
+    void streamedDeduplicationMatchesTheBatch() {
+        FindingDeduplicator.UniqueFindings unique = deduplicator.uniqueFindings();
+
+        assertTrue(unique.add(finding("/app/project/src/UserDao.java", "static")));
+        assertFalse(unique.add(finding("/app/project/src/UserDao.java", "dynamic")));
+        assertTrue(unique.add(finding("/app/project/src/OrderDao.java", "static")));
+        assertEquals(1, unique.removed());
+    }
+
+    private static CodeQLResult finding(String path, String type) {
+        CodeQLResult finding = new CodeQLResult();
+        finding.setId(path + "#" + type);
+        finding.setPath(path);
+        finding.setStartLine(12);
+        finding.setStartColumn(25);
+        finding.setEndLine(12);
+        finding.setEndColumn(60);
+        finding.setCode(SQL);
+        finding.setType(type);
+        return finding;
+    }
+}
@@ -0,0 +1,253 @@
+package tsystems.janus.sourcecodeconverter.infrastructure.codeQL;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tsystems.janus.sourcecodeconverter.infrastructure.docker.CodeQLDockerConfig;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IncrementalAnalysisTest {
+
+    private static final String PROJECT_ID = "https://example.com/acme/orders.git#scope-all";
+    private static final AnalysisScope WHOLE_PROJECT = new AnalysisScope(List.of(), List.of("**/target/**"));
+    private static final PersonIdent AUTHOR = new PersonIdent("Converter", "converter@example.com");
+
+    @TempDir
+    Path tempDir;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private IncrementalAnalysis incrementalAnalysis;
+    private Path projectDir;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        incrementalAnalysis = new IncrementalAnalysis(objectMapper, new CodeQLDockerConfig(), 0.2,
+                tempDir.resolve("history").toString());
+        projectDir = Files.createDirectories(tempDir.resolve("project"));
+    }
+
+    @Test
+    void mergeReplacesFindingsOfChangedFilesAndRebasesPartialPaths() throws Exception {
+        File retained = writeJson("retained.json", """
+                [
+                  {"id": "/app/project/src/A.java:10", "path": "/app/project/src/A.java"},
+                  {"id": "/app/project/src/B.java:20", "path": "/app/project/src/B.java"},
+                  {"id": "/app/project/src/C.java:30", "path": "/app/project/src/C.java"}
+                ]
+                """);
+        File partial = writeJson("partial.json", """
+                [
+                  {"id": "/app/output/incremental-src/src/B.java:25", "path": "/app/output/incremental-src/src/B.java"}
+                ]
+                """);
+        IncrementalAnalysis.Plan plan = new IncrementalAnalysis.Plan("base", "head",
+                Set.of("src/B.java"), Set.of("src/C.java"), retained.toPath());
+
+        File merged = incrementalAnalysis.merge(plan, partial, tempDir.resolve("merged.json").toFile());
+
+        List<String> ids = ids(merged);
+        assertEquals(List.of("/app/project/src/A.java:10", "/app/project/src/B.java:25"), ids);
+        assertEquals("/app/project/src/B.java", objectMapper.readTree(merged).get(1).path("path").asText());
+    }
+
+    @Test
+    void mergeWithoutPartialResultsKeepsRemainingFiles() throws Exception {
+        File retained = writeJson("retained.json", """
+                [
+                  {"id": "/app/project/src/A.java:10", "path": "/app/project/src/A.java"},
+                  {"id": "/app/project/src/Gone.java:5", "path": "/app/project/src/Gone.java"}
+                ]
+                """);
+        IncrementalAnalysis.Plan plan = new IncrementalAnalysis.Plan("base", "head",
+                Set.of(), Set.of("src/Gone.java"), retained.toPath());
+
+        File merged = incrementalAnalysis.merge(plan, null, tempDir.resolve("merged.json").toFile());
+
+        assertEquals(List.of("/app/project/src/A.java:10"), ids(merged));
+    }
+
+    @Test
+    void mergeDropsXmlFindingsReachedFromChangedOrDeletedCode() throws Exception {
+        File retained = writeJson("retained.json", """
+                [
+                  {"id": "/app/project/src/sql.xml:3", "path": "/app/project/src/sql.xml", "callerPath": "/app/project/src/A.java"},
+                  {"id": "/app/project/src/sql.xml:7", "path": "/app/project/src/sql.xml", "callerPath": "/app/project/src/B.java"},
+                  {"id": "/app/project/src/sql.xml:9", "path": "/app/project/src/sql.xml", "callerPath": "/app/project/src/C.java"}
+                ]
+                """);
+        File partial = writeJson("partial.json", """
+                [
+                  {"id": "/app/output/incremental-src/src/sql.xml:7", "path": "/app/output/incremental-src/src/sql.xml",
+                   "callerPath": "/app/output/incremental-src/src/B.java"}
+                ]
+                """);
+        IncrementalAnalysis.Plan plan = new IncrementalAnalysis.Plan("base", "head",
+                Set.of("src/B.java"), Set.of("src/C.java"), retained.toPath());
+
+        File merged = incrementalAnalysis.merge(plan, partial, tempDir.resolve("merged.json").toFile());
+
+        assertEquals(List.of("/app/project/src/sql.xml:3", "/app/project/src/sql.xml:7"), ids(merged));
+        assertEquals("/app/project/src/B.java", objectMapper.readTree(merged).get(1).path("callerPath").asText());
+    }
+
+    @Test
+    void mergeOnlyMatchesTheLeadingProjectRoot() throws Exception {
+        File retained = writeJson("retained.json", """
+                [
+                  {"id": "/app/project/app/project/B.java:1", "path": "/app/project/app/project/B.java"},
+                  {"id": "/app/project/B.java:1", "path": "/app/project/B.java"}
+                ]
+                """);
+        IncrementalAnalysis.Plan plan = new IncrementalAnalysis.Plan("base", "head",
+                Set.of(), Set.of("B.java"), retained.toPath());
+
+        File merged = incrementalAnalysis.merge(plan, null, tempDir.resolve("merged.json").toFile());
+
+        assertEquals(List.of("/app/project/app/project/B.java:1"), ids(merged));
+    }
+
+    @Test
+    void planWithoutPreviousAnalysisIsFull() throws Exception {
+        try (Git git = Git.init().setDirectory(projectDir.toFile()).call()) {
+            String head = commitSources(git, 10, "initial");
+
+            assertTrue(incrementalAnalysis.plan(PROJECT_ID, head, projectDir.toFile(), WHOLE_PROJECT, line -> {
+            }).isEmpty());
+        }
+    }
+
+    @Test
+    void planListsChangedAndDeletedSources() throws Exception {
+        try (Git git = Git.init().setDirectory(projectDir.toFile()).call()) {
+            String base = commitSources(git, 20, "initial");
+            recordBase(base);
+
+            Files.writeString(projectDir.resolve("src/Dao0.java"), "class Dao0 { int changed; }\n");
+            Files.delete(projectDir.resolve("src/Dao1.java"));
+            git.add().addFilepattern(".").call();
+            git.rm().addFilepattern("src/Dao1.java").call();
+            String head = commit(git, "change one, delete one");
+
+            Optional<IncrementalAnalysis.Plan> plan = plan(head);
+
+            assertTrue(plan.isPresent());
+            assertEquals(base, plan.get().baseCommit());
+            assertEquals(Set.of("src/Dao0.java"), plan.get().changed());
+            assertEquals(Set.of("src/Dao1.java"), plan.get().deleted());
+        }
+    }
+
+    @Test
+    void planFallsBackToFullAnalysisAboveChangedRatio() throws Exception {
+        try (Git git = Git.init().setDirectory(projectDir.toFile()).call()) {
+            recordBase(commitSources(git, 10, "initial"));
+
+            // 3 of 10 sources is above the 0.2 cutoff
+            for (int i = 0; i < 3; i++) {
+                Files.writeString(projectDir.resolve("src/Dao" + i + ".java"), "class Dao" + i + " { int changed; }\n");
+            }
+            git.add().addFilepattern(".").call();
+
+            assertTrue(plan(commit(git, "change three")).isEmpty());
+        }
+    }
+
+    @Test
+    void planAtChangedRatioIsIncremental() throws Exception {
+        try (Git git = Git.init().setDirectory(projectDir.toFile()).call()) {
+            recordBase(commitSources(git, 10, "initial"));
+
+            for (int i = 0; i < 2; i++) {
+                Files.writeString(projectDir.resolve("src/Dao" + i + ".java"), "class Dao" + i + " { int changed; }\n");
+            }
+            git.add().addFilepattern(".").call();
+
+            assertEquals(2, plan(commit(git, "change two")).orElseThrow().changed().size());
+        }
+    }
+
+    @Test
+    void planFallsBackToFullAnalysisWhenBuildOrXmlFilesChange() throws Exception {
+        try (Git git = Git.init().setDirectory(projectDir.toFile()).call()) {
+            recordBase(commitSources(git, 10, "initial"));
+
+            Files.writeString(projectDir.resolve("pom.xml"), "<project><version>2</version></project>\n");
+            git.add().addFilepattern(".").call();
+            String buildChange = commit(git, "bump version");
+            assertTrue(plan(buildChange).isEmpty());
+
+            recordBase(buildChange);
+            Files.writeString(projectDir.resolve("src/queries.xml"), "<queries><query id=\"q\"/></queries>\n");
+            git.add().addFilepattern(".").call();
+            assertTrue(plan(commit(git, "change statements")).isEmpty());
+        }
+    }
+
+    @Test
+    void planIgnoresChangesOutsideTheScope() throws Exception {
+        try (Git git = Git.init().setDirectory(projectDir.toFile()).call()) {
+            recordBase(commitSources(git, 10, "initial"));
+
+            Files.createDirectories(projectDir.resolve("target/generated"));
+            Files.writeString(projectDir.resolve("target/generated/Gen.java"), "class Gen {}\n");
+            Files.writeString(projectDir.resolve("target/generated/mapper.xml"), "<mapper/>\n");
+            git.add().addFilepattern(".").call();
+
+            IncrementalAnalysis.Plan plan = plan(commit(git, "generated sources")).orElseThrow();
+            assertFalse(plan.hasChanges());
+        }
+    }
+
+    private Optional<IncrementalAnalysis.Plan> plan(String head) throws Exception {
+        return incrementalAnalysis.plan(PROJECT_ID, head, projectDir.toFile(), WHOLE_PROJECT, line -> {
+        });
+    }
+
+    private void recordBase(String commit) throws Exception {
+        File results = writeJson("base-results.json", "[]");
+        incrementalAnalysis.record(PROJECT_ID, commit, results);
+    }
+
+    private String commitSources(Git git, int count, String message) throws Exception {
+        Files.createDirectories(projectDir.resolve("src"));
+        Files.writeString(projectDir.resolve("pom.xml"), "<project/>\n");
+        for (int i = 0; i < count; i++) {
+            Files.writeString(projectDir.resolve("src/Dao" + i + ".java"), "class Dao" + i + " {}\n");
+        }
+        git.add().addFilepattern(".").call();
+        return commit(git, message);
+    }
+
+    private static String commit(Git git, String message) throws Exception {
+        return git.commit().setMessage(message).setAuthor(AUTHOR).setCommitter(AUTHOR).setSign(false).call().name();
+    }
+
+    private File writeJson(String name, String json) throws Exception {
+        Path file = tempDir.resolve(name);
+        Files.writeString(file, json);
+        return file.toFile();
+    }
+
+    private List<String> ids(File results) throws Exception {
+        List<String> ids = new ArrayList<>();
+        for (JsonNode finding : objectMapper.readTree(results)) {
+            ids.add(finding.path("id").asText());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,75 @@
+package tsystems.janus.sourcecodeconverter.infrastructure.codeQL;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MavenModulesTest {
+
+    private static final AnalysisScope WHOLE_PROJECT = new AnalysisScope(List.of(), List.of("**/target/**"));
+    private static final String AGGREGATOR = "<project><packaging>pom</packaging></project>\n";
+    private static final String JAR = "<project><packaging>jar</packaging></project>\n";
+
+    private final MavenModules mavenModules = new MavenModules();
+
+    @TempDir
+    Path projectDir;
+
+    @Test
+    void skipsAggregatorsAndOrdersModulesLargestFirst() throws Exception {
+        Files.writeString(projectDir.resolve("pom.xml"), AGGREGATOR);
+        module("billing", 3);
+        module("shipping", 5);
+        module("api", 3);
+        // A jar module without sources holds nothing to analyse
+        Files.createDirectories(projectDir.resolve("docs"));
+        Files.writeString(projectDir.resolve("docs/pom.xml"), JAR);
+
+        assertEquals(List.of("shipping", "api", "billing"), mavenModules.detect(projectDir, WHOLE_PROJECT));
+    }
+
+    @Test
+    void rootModuleWithSourcesHoldsEveryOtherModule() throws Exception {
+        module("", 2);
+        module("plugin", 4);
+
+        assertEquals(List.of(""), mavenModules.detect(projectDir, WHOLE_PROJECT));
+    }
+
+    @Test
+    void nestedModuleIsPartOfItsParent() throws Exception {
+        module("billing", 1);
+        module("billing/generated", 6);
+        module("shipping", 2);
+
+        // billing is extracted with the sources of its nested module, which makes it the largest
+        assertEquals(List.of("billing", "shipping"), mavenModules.detect(projectDir, WHOLE_PROJECT));
+    }
+
+    @Test
+    void leavesOutExcludedPathsAndModulesTheIncludesDoNotReach() throws Exception {
+        Files.writeString(projectDir.resolve("pom.xml"), AGGREGATOR);
+        module("billing", 2);
+        module("shipping", 2);
+        module("target/copied", 9);
+
+        AnalysisScope billingOnly = new AnalysisScope(List.of("billing/**"), List.of("**/target/**"));
+
+        assertEquals(List.of("billing", "shipping"), mavenModules.detect(projectDir, WHOLE_PROJECT));
+        assertEquals(List.of("billing"), mavenModules.detect(projectDir, billingOnly));
+    }
+
+    private void module(String dir, int sources) throws Exception {
+        Path moduleDir = Files.createDirectories(projectDir.resolve(dir));
+        Files.writeString(moduleDir.resolve("pom.xml"), JAR);
+        Path sourceDir = Files.createDirectories(moduleDir.resolve("src/main/java"));
+        for (int i = 0; i < sources; i++) {
+            Files.writeString(sourceDir.resolve("Dao" + i + ".java"), "class Dao" + i + " {}\n");
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package tsystems.janus.sourcecodeconverter.infrastructure.codeQL;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tsystems.janus.sourcecodeconverter.infrastructure.docker.ResourceProfile;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PagedBqrsDecoderTest {
+
+    private static final ResourceProfile PROFILE = new ResourceProfile("small", 2, 4L * 1024 * 1024 * 1024);
+    private static final String BQRS = "/opt/results/java-sql.bqrs";
+
+    @TempDir
+    Path resultsDir;
+
+    @Test
+    void followsTheNextOffsetUntilTheLastPage() throws Exception {
+        FakeRunner runner = new FakeRunner(3);
+        List<String> consumed = new ArrayList<>();
+
+        int pages = decoder(runner, 2).decode("container-1", PROFILE, BQRS, resultsDir.toFile(),
+                page -> consumed.add(Files.readString(page.toPath())));
+
+        assertEquals(3, pages);
+        assertEquals(3, consumed.size());
+        assertTrue(consumed.get(2).contains("\"row-2\""));
+        // The first page starts at the beginning, every other one where the previous one stopped
+        assertEquals(Collections.singletonList(null), runner.startOffsets.subList(0, 1));
+        assertEquals(List.of(100L, 200L), runner.startOffsets.subList(1, 3));
+        assertEquals(List.of("java-sql.page-0.json", "java-sql.page-1.json", "java-sql.page-2.json"), runner.outputs);
+        assertEmpty(resultsDir);
+    }
+
+    @Test
+    void failingConsumerStopsThePrefetchAndDeletesItsPages() throws Exception {
+        FakeRunner runner = new FakeRunner(Integer.MAX_VALUE);
+        IOException failure = new IOException("could not store findings");
+
+        IOException thrown = assertThrows(IOException.class, () -> decoder(runner, 2).decode("container-1", PROFILE, BQRS,
+                resultsDir.toFile(), page -> {
+                    // Lets the producer fill the queue and block on the next page first
+                    while (runner.outputs.size() < 4) {
+                        LockSupport.parkNanos(5_000_000);
+                    }
+                    throw failure;
+                }));
+
+        assertSame(failure, thrown);
+        int decodedPages = runner.outputs.size();
+        Thread.sleep(50);
+        assertEquals(decodedPages, runner.outputs.size());
+        assertEmpty(resultsDir);
+    }
+
+    @Test
+    void decodeFailureReachesTheCaller() {
+        FakeRunner runner = new FakeRunner(5);
+        runner.failAtPage = 1;
+        List<File> consumed = new ArrayList<>();
+
+        IOException thrown = assertThrows(IOException.class, () -> decoder(runner, 1).decode("container-1", PROFILE, BQRS,
+                resultsDir.toFile(), consumed::add));
+
+        assertEquals("Command failed with exit code 2: bqrs decode", thrown.getMessage());
+        assertEquals(1, consumed.size());
+    }
+
+    private PagedBqrsDecoder decoder(FakeRunner runner, int prefetchPages) {
+        return new PagedBqrsDecoder(runner, new ObjectMapper(), 1, prefetchPages);
+    }
+
+    private static void assertEmpty(Path dir) throws IOException {
+        try (var files = Files.list(dir)) {
+            assertEquals(List.of(), files.toList());
+        }
+    }
+
+    /**
+     * Writes one row per page into the results directory the way {@code bqrs decode --rows} does, with a
+     * {@code next} offset on every page but the last.
+     */
+    private class FakeRunner extends CodeQLRunner {
+
+        private final int totalPages;
+        private final List<Long> startOffsets = Collections.synchronizedList(new ArrayList<>());
+        private final List<String> outputs = Collections.synchronizedList(new ArrayList<>());
+        private int failAtPage = -1;
+
+        FakeRunner(int totalPages) {
+            super(null, null, null);
+            this.totalPages = totalPages;
+        }
+
+        @Override
+        public void decodeResultPageInContainer(String containerName, String bqrsPathInContainer, String resultSet, int rows, Long startAt,
+                                                String jsonOutputPathInContainer, ResourceProfile profile, Consumer<String> logConsumer) throws IOException {
+            int index = outputs.size();
+            if (index == failAtPage) {
+                throw new IOException("Command failed with exit code 2: bqrs decode");
+            }
+            assertEquals("#select", resultSet);
+            assertTrue(jsonOutputPathInContainer.startsWith("/opt/results/"));
+            String fileName = jsonOutputPathInContainer.substring("/opt/results/".length());
+            startOffsets.add(startAt);
+            String next = index + 1 < totalPages ? ",\"next\":" + (index + 1) * 100 : "";
+            Files.writeString(resultsDir.resolve(fileName),
+                    "{\"#select\":{\"columns\":[{\"kind\":\"String\"}],\"tuples\":[[\"row-" + index + "\"]]}" + next + "}");
+            outputs.add(fileName);
+        }
+    }
+}
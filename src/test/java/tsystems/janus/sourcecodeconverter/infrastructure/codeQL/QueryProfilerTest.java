@@ -0,0 +1,65 @@
+package tsystems.janus.sourcecodeconverter.infrastructure.codeQL;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class QueryProfilerTest {
+
+    private final QueryProfiler profiler = new QueryProfiler(null, null, null, new ObjectMapper(), 2);
+
+    @TempDir
+    Path outputDir;
+
+    @Test
+    void foldsRepeatedPredicatesAndKeepsTheSlowest() throws Exception {
+        // The summary separates its events with blank lines, and only evaluations carry a predicate and millis
+        Path summary = Files.writeString(outputDir.resolve("evaluator-summary.jsonl"), """
+                {"summaryLogVersion": "0.4", "codeqlVersion": "2.20.0", "startTime": "2025-01-01T00:00:00Z"}
+
+                {"predicateName": "TaintTracking::flow#ff", "queryCausingWork": "/opt/query-pack/tainted-sql.ql",
+                 "evaluationStrategy": "COMPUTE_RECURSIVE", "millis": 120, "resultSize": 40,
+                 "pipelineRuns": [{"raReference": "base", "counts": [10, 30]}, {"raReference": "standard", "counts": [5]}]}
+
+                {"predicateName": "XmlSql::mapperStatement#f", "queryCausingWork": "/opt/query-pack/xml-sql.ql",
+                 "evaluationStrategy": "COMPUTE_SIMPLE", "millis": 90, "resultSize": 7,
+                 "pipelineRuns": [{"counts": [7]}]}
+
+                {"predicateName": "TaintTracking::flow#ff", "queryCausingWork": "/opt/query-pack/xml-sql.ql",
+                 "evaluationStrategy": "COMPUTE_RECURSIVE", "millis": 60, "resultSize": 55,
+                 "pipelineRuns": [{"counts": [15]}]}
+
+                {"predicateName": "Files::file#f", "evaluationStrategy": "EXTENSIONAL", "resultSize": 300}
+
+                {"predicateName": "Sql::sink#f", "millis": 3, "resultSize": 2}
+                """);
+
+        QueryProfiler.QueryProfile profile = profiler.parseSummary(summary.toFile());
+
+        assertEquals(3, profile.predicates());
+        assertEquals(273, profile.totalMillis());
+        // A predicate evaluated again adds its time and work, and keeps the query that needed it first
+        assertEquals(List.of(
+                new QueryProfiler.PredicateProfile("TaintTracking::flow#ff", "tainted-sql.ql", "COMPUTE_RECURSIVE", 2, 180, 55, 60),
+                new QueryProfiler.PredicateProfile("XmlSql::mapperStatement#f", "xml-sql.ql", "COMPUTE_SIMPLE", 1, 90, 7, 7)),
+                profile.slowest());
+    }
+
+    @Test
+    void equalTimesAreOrderedByTheWorkBehindThem() throws Exception {
+        Path summary = Files.writeString(outputDir.resolve("evaluator-summary.jsonl"), """
+                {"predicateName": "cheap", "millis": 5, "pipelineRuns": [{"counts": [1]}]}
+                {"predicateName": "expensive", "millis": 5, "pipelineRuns": [{"counts": [1000]}]}
+                """);
+
+        QueryProfiler.QueryProfile profile = profiler.parseSummary(summary.toFile());
+
+        assertEquals(List.of("expensive", "cheap"), profile.slowest().stream().map(QueryProfiler.PredicateProfile::name).toList());
+    }
+}
@@ -0,0 +1,80 @@
+package tsystems.janus.sourcecodeconverter.infrastructure.codeQL;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShardedAnalysisTest {
+
+    @Test
+    void everyModuleIsAnalysedOnceAcrossTheWorkers() throws Exception {
+        List<String> modules = IntStream.range(0, 20).mapToObj(i -> "module-" + i).toList();
+        Map<String, String> analysedBy = new ConcurrentHashMap<>();
+
+        ShardedAnalysis.drain(List.of("container-1", "container-2", "container-3"), modules, (container, module) -> {
+            assertNull(analysedBy.put(module, container));
+            Thread.sleep(2);
+        });
+
+        assertEquals(modules.size(), analysedBy.size());
+    }
+
+    @Test
+    void singleWorkerTakesModulesInListOrder() throws Exception {
+        List<String> analysed = new ArrayList<>();
+
+        ShardedAnalysis.drain(List.of("container-1"), List.of("shipping", "api", "billing"),
+                (container, module) -> analysed.add(module));
+
+        assertEquals(List.of("shipping", "api", "billing"), analysed);
+    }
+
+    @Test
+    void firstFailureStopsTheOtherWorkersAndIsRethrown() {
+        IOException failure = new IOException("database create failed for billing");
+        CountDownLatch slowModuleStarted = new CountDownLatch(1);
+        List<String> analysed = Collections.synchronizedList(new ArrayList<>());
+        List<String> interrupted = Collections.synchronizedList(new ArrayList<>());
+        long startedAt = System.nanoTime();
+
+        IOException thrown = assertThrows(IOException.class, () -> ShardedAnalysis.drain(
+                List.of("slow", "failing"), List.of("shipping", "billing", "api", "orders", "users"),
+                (container, module) -> {
+                    if (container.equals("slow")) {
+                        slowModuleStarted.countDown();
+                        try {
+                            Thread.sleep(Duration.ofSeconds(30));
+                        } catch (InterruptedException e) {
+                            interrupted.add(module);
+                            throw e;
+                        }
+                    }
+                    assertTrue(slowModuleStarted.await(5, TimeUnit.SECONDS));
+                    analysed.add(module);
+                    throw failure;
+                }));
+
+        assertSame(failure, thrown);
+        // The slow worker was interrupted instead of being waited for, and no module was started afterwards
+        assertEquals(1, interrupted.size());
+        assertEquals(1, analysed.size());
+        assertFalse(analysed.contains(interrupted.get(0)));
+        assertTrue(Duration.ofNanos(System.nanoTime() - startedAt).compareTo(Duration.ofSeconds(10)) < 0);
+    }
+}
@@ -0,0 +1,39 @@
+package tsystems.janus.sourcecodeconverter.infrastructure.docker;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DockerCommandExecutorTest {
+
+    private final DockerCommandExecutor executor = new DockerCommandExecutor(new CommandMetrics(), Duration.ofMillis(500), 1024);
+
+    @Test
+    void runBinaryPipesStdinToStdout() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        int exitCode = executor.runBinary(List.of("cat"), "tar bytes".getBytes(StandardCharsets.UTF_8), stdout -> stdout.transferTo(output));
+
+        assertEquals(0, exitCode);
+        assertEquals("tar bytes", output.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void runBinaryFailsWhenTheStreamHangsPastTheDeadline() {
+        long startedAt = System.nanoTime();
+
+        // Writes a little, then keeps stdout open without ever finishing
+        RuntimeException timeout = assertThrows(RuntimeException.class, () -> executor.runBinary(
+                List.of("bash", "-c", "printf partial; exec sleep 30"), null, stdout -> stdout.transferTo(new ByteArrayOutputStream())));
+
+        assertTrue(timeout.getMessage().startsWith("Command timed out after PT0.5S"), timeout.getMessage());
+        assertTrue(Duration.ofNanos(System.nanoTime() - startedAt).compareTo(Duration.ofSeconds(10)) < 0);
+    }
+}
@@ -0,0 +1,400 @@
+package tsystems.janus.sourcecodeconverter.infrastructure.docker;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tsystems.janus.sourcecodeconverter.infrastructure.util.TarArchive;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EngineApiContainerBackendTest {
+
+    @TempDir
+    Path tempDir;
+
+    private FakeDockerDaemon daemon;
+    private DockerEngineClient client;
+    private EngineApiContainerBackend backend;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        daemon = new FakeDockerDaemon(tempDir.resolve("docker.sock"));
+        client = new DockerEngineClient(daemon.socketPath, 2, new ObjectMapper());
+        backend = new EngineApiContainerBackend(client, Duration.ofSeconds(5), 1024 * 1024);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        client.close();
+        daemon.close();
+    }
+
+    @Test
+    void reusesPooledConnectionForKeepAliveRequests() throws Exception {
+        daemon.respond("GET /volumes/present", 200, "{\"Name\":\"present\"}");
+        daemon.respond("GET /volumes/missing", 404, "{\"message\":\"get missing: no such volume\"}");
+        daemon.respondChunked("GET /images/codeql-runner-image/json", 200, "{\"Id\":\"sha256:abc\"}");
+
+        assertTrue(backend.volumeExists("present"));
+        assertFalse(backend.volumeExists("missing"));
+        assertTrue(backend.imageExists("codeql-runner-image"));
+        assertTrue(backend.volumeExists("present"));
+
+        assertEquals(1, daemon.acceptedConnections.get());
+    }
+
+    @Test
+    void retriesOnFreshConnectionWhenIdleConnectionWasDropped() throws Exception {
+        daemon.respondThenHangUp("GET /volumes/present", 200, "{\"Name\":\"present\"}");
+
+        assertTrue(backend.volumeExists("present"));
+        assertTrue(backend.volumeExists("present"));
+
+        assertEquals(2, daemon.requestCount("GET /volumes/present"));
+        assertEquals(2, daemon.acceptedConnections.get());
+    }
+
+    @Test
+    void doesNotRepeatRequestWhoseResponseWasCutOff() throws Exception {
+        daemon.respond("GET /volumes/present", 200, "{\"Name\":\"present\"}");
+        daemon.respondTruncated("POST /containers/analysis/kill?signal=KILL", "HTTP/1.1 204 No Con");
+
+        assertTrue(backend.volumeExists("present"));
+        assertThrows(IOException.class, () -> client.postJson("/containers/analysis/kill?signal=KILL", null));
+
+        assertEquals(1, daemon.requestCount("POST /containers/analysis/kill?signal=KILL"));
+    }
+
+    @Test
+    void demultiplexesExecOutputAndReportsExitCode() throws Exception {
+        daemon.respond("POST /containers/analysis/exec", 201, "{\"Id\":\"exec-1\"}");
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        stream.writeBytes(frame(1, "compiling\npartial "));
+        stream.writeBytes(frame(2, "warning: deprecated\n"));
+        stream.writeBytes(frame(1, "line\n"));
+        daemon.respondRawStream("POST /exec/exec-1/start", stream.toByteArray());
+        daemon.respond("GET /exec/exec-1/json", 200, "{\"Running\":false,\"ExitCode\":3}");
+
+        List<String> lines = new ArrayList<>();
+        ExecResult result = backend.exec("analysis", "/app/project", List.of("mvn", "compile"), lines::add);
+
+        assertEquals(3, result.exitCode());
+        assertEquals("compiling\npartial line\n", result.stdout());
+        assertEquals("warning: deprecated\n", result.stderr());
+        assertTrue(lines.containsAll(List.of("compiling", "warning: deprecated", "partial line")));
+        assertTrue(daemon.requestBodies.get(0).contains("\"WorkingDir\":\"/app/project\""));
+    }
+
+    @Test
+    void keepsOnlyTheTailOfLargeExecOutput() throws Exception {
+        daemon.respond("POST /containers/analysis/exec", 201, "{\"Id\":\"exec-big\"}");
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        for (int i = 0; i < 100; i++) {
+            stream.writeBytes(frame(1, "progress line " + i + "\n"));
+        }
+        daemon.respondRawStream("POST /exec/exec-big/start", stream.toByteArray());
+        daemon.respond("GET /exec/exec-big/json", 200, "{\"Running\":false,\"ExitCode\":0}");
+
+        EngineApiContainerBackend bounded = new EngineApiContainerBackend(client, Duration.ofSeconds(5), 64);
+        List<String> lines = new ArrayList<>();
+        ExecResult result = bounded.exec("analysis", null, List.of("mvn", "compile"), lines::add);
+
+        assertEquals(100, lines.size());
+        assertTrue(result.stdout().length() <= 64);
+        assertTrue(result.stdout().endsWith("progress line 99\n"));
+    }
+
+    @Test
+    void killsExecThatRunsPastTheCommandTimeout() throws Exception {
+        daemon.respondInOrder("POST /containers/analysis/exec", 201, "{\"Id\":\"exec-hung\"}", "{\"Id\":\"exec-kill\"}");
+        daemon.respondHangingStream("POST /exec/exec-hung/start", frame(1, "resolving dependencies\n"));
+        daemon.respondRawStream("POST /exec/exec-kill/start", new byte[0]);
+        daemon.respond("GET /exec/exec-kill/json", 200, "{\"Running\":false,\"ExitCode\":0}");
+
+        EngineApiContainerBackend impatient = new EngineApiContainerBackend(client, Duration.ofMillis(300), 1024);
+        RuntimeException timeout = assertThrows(RuntimeException.class,
+                () -> impatient.exec("analysis", null, List.of("mvn", "compile"), line -> {
+                }));
+
+        assertTrue(timeout.getMessage().contains("timed out"));
+        assertEquals(1, daemon.requestCount("POST /exec/exec-kill/start"));
+        assertTrue(daemon.requestBodies.stream().anyMatch(body -> body.contains("\"Cmd\":[\"kill\",\"-9\",\"-1\"]")));
+    }
+
+    @Test
+    void copiesFilesThroughArchiveEndpoint() throws Exception {
+        byte[] content = "line one\r\nline two\n".getBytes(StandardCharsets.UTF_8);
+        daemon.respondBinary("GET /containers/analysis/archive?path=%2Fapp%2Fproject%2F0001.patch", 200,
+                TarArchive.singleFile("0001.patch", content));
+        daemon.respond("PUT /containers/analysis/archive?path=%2Fapp%2Fproject", 200, "");
+
+        Path hostCopy = tempDir.resolve("copied.patch");
+        backend.copyFromContainer("analysis", "/app/project/0001.patch", hostCopy.toString());
+        assertArrayEquals(content, Files.readAllBytes(hostCopy));
+
+        backend.copyToContainer("analysis", hostCopy.toString(), "/app/project/Restored.java");
+        TarArchive.Reader reader = new TarArchive.Reader(new ByteArrayInputStream(daemon.lastBinaryBody));
+        TarArchive.Entry entry = reader.nextEntry();
+        assertEquals("Restored.java", entry.name());
+        assertArrayEquals(content, reader.readContent());
+    }
+
+    @Test
+    void transfersManyFilesAsOneTarStream() throws Exception {
+        byte[] crlfSource = "class A {\r\n}\r\n".getBytes(StandardCharsets.UTF_8);
+        byte[] noTrailingNewline = "class B {}".getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        try (TarArchive.Writer writer = new TarArchive.Writer(archive)) {
+            writer.addFile("app/project/src/A.java", crlfSource);
+            writer.addFile("app/project/src/B.java", noTrailingNewline);
+        }
+
+        daemon.respond("POST /containers/analysis/exec", 201, "{\"Id\":\"exec-tar\"}");
+        daemon.respondRawStream("POST /exec/exec-tar/start", frame(1, archive.toByteArray()));
+        daemon.respond("GET /exec/exec-tar/json", 200, "{\"Running\":false,\"ExitCode\":0}");
+        daemon.respond("PUT /containers/analysis/archive?path=%2F", 200, "");
+
+        Map<String, byte[]> files = backend.readFiles("analysis", List.of("/app/project/src/A.java", "/app/project/src/B.java"));
+        assertArrayEquals(crlfSource, files.get("/app/project/src/A.java"));
+        assertArrayEquals(noTrailingNewline, files.get("/app/project/src/B.java"));
+        assertTrue(daemon.requestBodies.get(0).contains("\"app/project/src/A.java\",\"app/project/src/B.java\""));
+
+        backend.writeFiles("analysis", files);
+        TarArchive.Reader reader = new TarArchive.Reader(new ByteArrayInputStream(daemon.lastBinaryBody));
+        assertEquals("app/project/src/A.java", reader.nextEntry().name());
+        assertArrayEquals(crlfSource, reader.readContent());
+        assertEquals("app/project/src/B.java", reader.nextEntry().name());
+        assertArrayEquals(noTrailingNewline, reader.readContent());
+    }
+
+    @Test
+    void readsTarSplitAcrossFramesWithStderrInBetween() throws Exception {
+        byte[] source = "class A {}\n".repeat(200).getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        try (TarArchive.Writer writer = new TarArchive.Writer(archive)) {
+            writer.addFile("app/project/src/A.java", source);
+        }
+        byte[] tar = archive.toByteArray();
+        ByteArrayOutputStream multiplexed = new ByteArrayOutputStream();
+        multiplexed.writeBytes(frame(1, Arrays.copyOfRange(tar, 0, 700)));
+        multiplexed.writeBytes(frame(2, "tar: Removing leading `/'\n"));
+        multiplexed.writeBytes(frame(1, Arrays.copyOfRange(tar, 700, tar.length)));
+
+        daemon.respond("POST /containers/analysis/exec", 201, "{\"Id\":\"exec-tar\"}");
+        daemon.respondRawStream("POST /exec/exec-tar/start", multiplexed.toByteArray());
+        daemon.respond("GET /exec/exec-tar/json", 200, "{\"Running\":false,\"ExitCode\":0}");
+
+        Map<String, byte[]> files = backend.readFiles("analysis", List.of("/app/project/src/A.java"));
+
+        assertEquals(Set.of("/app/project/src/A.java"), files.keySet());
+        assertArrayEquals(source, files.get("/app/project/src/A.java"));
+    }
+
+    private static byte[] frame(int streamType, String payload) {
+        return frame(streamType, payload.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] frame(int streamType, byte[] bytes) {
+        byte[] frame = new byte[8 + bytes.length];
+        frame[0] = (byte) streamType;
+        frame[4] = (byte) (bytes.length >>> 24);
+        frame[5] = (byte) (bytes.length >>> 16);
+        frame[6] = (byte) (bytes.length >>> 8);
+        frame[7] = (byte) bytes.length;
+        System.arraycopy(bytes, 0, frame, 8, bytes.length);
+        return frame;
+    }
+
+    private static class FakeDockerDaemon implements AutoCloseable {
+        private final Path socketPath;
+        private final ServerSocketChannel server;
+        private final Map<String, byte[]> responses = new ConcurrentHashMap<>();
+        private final List<String> requestBodies = new CopyOnWriteArrayList<>();
+        private final AtomicInteger acceptedConnections = new AtomicInteger();
+        private final Map<String, AtomicInteger> requestCounts = new ConcurrentHashMap<>();
+        private final Set<String> hangUpAfter = ConcurrentHashMap.newKeySet();
+        private final Set<String> hanging = ConcurrentHashMap.newKeySet();
+        private final Map<String, Deque<byte[]>> queuedResponses = new ConcurrentHashMap<>();
+        private volatile byte[] lastBinaryBody;
+
+        FakeDockerDaemon(Path socketPath) throws IOException {
+            this.socketPath = socketPath;
+            this.server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            server.bind(UnixDomainSocketAddress.of(socketPath));
+            Thread.ofVirtual().start(this::acceptLoop);
+        }
+
+        void respond(String request, int status, String json) {
+            byte[] body = json.getBytes(StandardCharsets.UTF_8);
+            responses.put(request, concat(head(status, "application/json", "Content-Length: " + body.length), body));
+        }
+
+        void respondBinary(String request, int status, byte[] body) {
+            responses.put(request, concat(head(status, "application/x-tar", "Content-Length: " + body.length), body));
+        }
+
+        void respondChunked(String request, int status, String json) {
+            byte[] body = json.getBytes(StandardCharsets.UTF_8);
+            int half = body.length / 2;
+            String chunked = Integer.toHexString(half) + "\r\n" + new String(body, 0, half, StandardCharsets.UTF_8) + "\r\n"
+                    + Integer.toHexString(body.length - half) + "\r\n" + new String(body, half, body.length - half, StandardCharsets.UTF_8) + "\r\n"
+                    + "0\r\n\r\n";
+            responses.put(request, concat(head(status, "application/json", "Transfer-Encoding: chunked"),
+                    chunked.getBytes(StandardCharsets.UTF_8)));
+        }
+
+        void respondThenHangUp(String request, int status, String json) {
+            // A keep-alive response after which the daemon drops the connection, like an idle timeout
+            respond(request, status, json);
+            hangUpAfter.add(request);
+        }
+
+        void respondTruncated(String request, String partialResponse) {
+            responses.put(request, partialResponse.getBytes(StandardCharsets.US_ASCII));
+            hangUpAfter.add(request);
+        }
+
+        void respondInOrder(String request, int status, String... jsons) {
+            Deque<byte[]> queue = new ConcurrentLinkedDeque<>();
+            for (String json : jsons) {
+                byte[] body = json.getBytes(StandardCharsets.UTF_8);
+                queue.add(concat(head(status, "application/json", "Content-Length: " + body.length), body));
+            }
+            queuedResponses.put(request, queue);
+        }
+
+        void respondHangingStream(String request, byte[] multiplexed) {
+            // An exec whose process never ends, the stream stays open until the client closes it
+            respondRawStream(request, multiplexed);
+            hanging.add(request);
+        }
+
+        int requestCount(String request) {
+            AtomicInteger count = requestCounts.get(request);
+            return count == null ? 0 : count.get();
+        }
+
+        void respondRawStream(String request, byte[] multiplexed) {
+            // Docker hijacks the connection for exec output and closes it when the process ends
+            responses.put(request, concat(head(200, "application/vnd.docker.raw-stream", "Connection: close"), multiplexed));
+        }
+
+        private void acceptLoop() {
+            while (server.isOpen()) {
+                try {
+                    SocketChannel channel = server.accept();
+                    acceptedConnections.incrementAndGet();
+                    Thread.ofVirtual().start(() -> serve(channel));
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+
+        private void serve(SocketChannel channel) {
+            try (channel) {
+                InputStream in = new BufferedInputStream(Channels.newInputStream(channel));
+                OutputStream out = Channels.newOutputStream(channel);
+                while (true) {
+                    String requestLine = readLine(in);
+                    if (requestLine == null) {
+                        return;
+                    }
+                    int contentLength = 0;
+                    String header;
+                    while (!(header = readLine(in)).isEmpty()) {
+                        if (header.toLowerCase().startsWith("content-length:")) {
+                            contentLength = Integer.parseInt(header.substring(15).trim());
+                        }
+                    }
+                    byte[] body = in.readNBytes(contentLength);
+                    requestBodies.add(new String(body, StandardCharsets.UTF_8));
+                    if (requestLine.startsWith("PUT")) {
+                        lastBinaryBody = body;
+                    }
+
+                    String key = requestLine.substring(0, requestLine.lastIndexOf(' '));
+                    requestCounts.computeIfAbsent(key, ignored -> new AtomicInteger()).incrementAndGet();
+                    Deque<byte[]> queue = queuedResponses.get(key);
+                    byte[] queued = queue == null ? null : queue.pollFirst();
+                    byte[] response = queued != null ? queued : responses.getOrDefault(key,
+                            concat(head(404, "application/json", "Content-Length: 2"), "{}".getBytes(StandardCharsets.UTF_8)));
+                    out.write(response);
+                    out.flush();
+                    if (hanging.contains(key)) {
+                        while (in.read() != -1) {
+                            // Wait for the client to hang up
+                        }
+                        return;
+                    }
+                    if (hangUpAfter.contains(key) || new String(response, StandardCharsets.ISO_8859_1).contains("Connection: close")) {
+                        return;
+                    }
+                }
+            } catch (IOException e) {
+                // Client went away
+            }
+        }
+
+        private static String readLine(InputStream in) throws IOException {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            int b;
+            while ((b = in.read()) != -1 && b != '\n') {
+                if (b != '\r') {
+                    line.write(b);
+                }
+            }
+            return b == -1 && line.size() == 0 ? null : line.toString(StandardCharsets.US_ASCII);
+        }
+
+        private static byte[] head(int status, String contentType, String framing) {
+            return ("HTTP/1.1 " + status + " Status\r\nContent-Type: " + contentType + "\r\n" + framing + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+        }
+
+        private static byte[] concat(byte[] first, byte[] second) {
+            byte[] result = new byte[first.length + second.length];
+            System.arraycopy(first, 0, result, 0, first.length);
+            System.arraycopy(second, 0, result, first.length, second.length);
+            return result;
+        }
+
+        @Override
+        public void close() throws IOException {
+            server.close();
+            Files.deleteIfExists(socketPath);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package tsystems.janus.sourcecodeconverter.infrastructure.git;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the generated scripts with the local git against a repository laid out like a ZIP upload: {@code git init}
+ * on a directory full of untracked project files.
+ */
+class GitPatchTransactionTest {
+
+    private static final String ORIGINAL = "class UserDao {\n    String sql = \"SELECT * FROM users FETCH FIRST 1 ROWS ONLY\";\n}\n";
+    private static final String CONVERTED = "class UserDao {\n    String sql = \"SELECT * FROM users LIMIT 1\";\n}";
+
+    @TempDir
+    Path projectDir;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Files.createDirectories(projectDir.resolve("src"));
+        Files.writeString(projectDir.resolve("src/UserDao.java"), ORIGINAL);
+        Files.writeString(projectDir.resolve("pom.xml"), "<project/>\n");
+        run("git init -q && git config user.email 'converter@example.com' && git config user.name 'Converter'");
+    }
+
+    @Test
+    void initialCommitTracksWholeProject() throws Exception {
+        run(PatchApplierService.projectTreeCommit().toScript());
+
+        assertEquals("", run("git status --porcelain").stdout());
+        assertTrue(run("git ls-files").stdout().contains("src/UserDao.java"));
+    }
+
+    @Test
+    void patchOnTemporaryBranchIsAModificationAndLeavesTheFileInPlace() throws Exception {
+        run(PatchApplierService.projectTreeCommit().toScript());
+        String baseBranch = run("git rev-parse --abbrev-ref HEAD").stdout().trim();
+        // PatchService copies the patched file into the working tree before the transaction runs
+        Files.writeString(projectDir.resolve("src/UserDao.java"), CONVERTED);
+
+        ScriptResult result = run(new GitPatchTransaction()
+                .onTemporaryBranch("patch-branch-1")
+                .add("src/UserDao.java")
+                .commit(PatchApplierService.COMMIT_SUBJECT, "Convert FETCH FIRST to LIMIT")
+                .formatPatch()
+                .toScript());
+
+        String patchFile = result.patchFile();
+        assertNotNull(patchFile);
+        String patch = Files.readString(projectDir.resolve(patchFile));
+        assertFalse(patch.contains("new file mode"));
+        assertTrue(patch.contains("-    String sql = \"SELECT * FROM users FETCH FIRST 1 ROWS ONLY\";"));
+        assertTrue(patch.contains("+    String sql = \"SELECT * FROM users LIMIT 1\";"));
+
+        assertEquals(ORIGINAL, Files.readString(projectDir.resolve("src/UserDao.java")));
+        assertEquals(baseBranch, run("git rev-parse --abbrev-ref HEAD").stdout().trim());
+        assertEquals("", run("git branch --list patch-branch-1").stdout().trim());
+    }
+
+    @Test
+    void revertRestoresTheCommittedFile() throws Exception {
+        run(PatchApplierService.projectTreeCommit().toScript());
+        Files.writeString(projectDir.resolve("src/UserDao.java"), CONVERTED);
+
+        run(new GitPatchTransaction().revert("src/UserDao.java").toScript());
+
+        assertEquals(ORIGINAL, Files.readString(projectDir.resolve("src/UserDao.java")));
+    }
+
+    @Test
+    void failingStepStillReturnsToBaseBranch() throws Exception {
+        run(PatchApplierService.projectTreeCommit().toScript());
+        String baseBranch = run("git rev-parse --abbrev-ref HEAD").stdout().trim();
+
+        ScriptResult result = runAllowingFailure(new GitPatchTransaction()
+                .onTemporaryBranch("patch-branch-2")
+                .add("src/Missing.java")
+                .commit(PatchApplierService.COMMIT_SUBJECT, null)
+                .toScript());
+
+        assertNotEquals(0, result.exitCode());
+        assertEquals(baseBranch, run("git rev-parse --abbrev-ref HEAD").stdout().trim());
+        assertEquals("", run("git branch --list patch-branch-2").stdout().trim());
+    }
+
+    private ScriptResult run(String script) throws IOException, InterruptedException {
+        ScriptResult result = runAllowingFailure(script);
+        assertEquals(0, result.exitCode(), "Script failed: " + script + "\n" + result.stdout());
+        return result;
+    }
+
+    private ScriptResult runAllowingFailure(String script) throws IOException, InterruptedException {
+        Process process = new ProcessBuilder(List.of("bash", "-c", script))
+                .directory(projectDir.toFile())
+                .redirectErrorStream(true)
+                .start();
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        return new ScriptResult(process.waitFor(), output);
+    }
+
+    private record ScriptResult(int exitCode, String stdout) {
+
+        String patchFile() {
+            return stdout.lines()
+                    .filter(line -> line.startsWith(GitPatchTransaction.PATCH_FILE_MARKER))
+                    .map(line -> line.substring(GitPatchTransaction.PATCH_FILE_MARKER.length()).trim())
+                    .findFirst()
+                    .orElse(null);
+        }
+    }
+}